@@ -9,6 +9,7 @@ import io.surisoft.capi.utils.HttpUtils;
 import io.surisoft.capi.utils.RouteUtils;
 import org.apache.camel.CamelContext;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.model.LoadBalanceDefinition;
 import org.apache.camel.model.RouteDefinition;
 import org.apache.camel.model.rest.RestDefinition;
 import org.cache2k.Cache;
@@ -29,6 +30,7 @@ public class DirectRouteProcessor extends RouteBuilder {
     private Cache<String, Service> serviceCache;
     private final ContentTypeValidator contentTypeValidator;
     private final ThrottleProcessor throttleProcessor;
+    private ConcurrencyLimitProcessor concurrencyLimitProcessor;
 
     public DirectRouteProcessor(CamelContext camelContext,
                                 Service service,
@@ -55,6 +57,7 @@ public class DirectRouteProcessor extends RouteBuilder {
         log.trace("Trying to build and deploy route {}", routeId);
 
         RouteDefinition routeDefinition = from(Constants.CAMEL_DIRECT + routeId);
+        routeDefinition.setProperty(Constants.CAPI_SERVICE_ID, constant(service.getId()));
         if(reverseProxyHost != null) {
             routeDefinition
                     .setHeader(Constants.X_FORWARDED_HOST, constant(reverseProxyHost));
@@ -62,6 +65,11 @@ public class DirectRouteProcessor extends RouteBuilder {
                     .setHeader(Constants.X_FORWARDED_PREFIX, constant(capiContext + service.getContext()));
         }
 
+        //Streaming services keep the raw servlet and backend streams as body, nothing in the route may read it
+        if(service.getServiceMeta().isStreaming()) {
+            routeDefinition.streamCache("false");
+        }
+
         if(service.getServiceMeta().isKeepGroup()) {
             routeDefinition.setHeader(Constants.CAPI_GROUP_HEADER, constant(service.getContext()));
         }
@@ -69,8 +77,11 @@ public class DirectRouteProcessor extends RouteBuilder {
         //For failing over enabled routes we want to build the route with try catch
         if(service.isFailOverEnabled()) {
             log.debug("Fail over enabled for route {}", routeId);
+            OpenApiProcessor openApiProcessor = routeUtils.openApiProcessor(service, opaService, serviceCache);
+            int maximumFailoverAttempts = service.getServiceMeta().isStreaming() ? 0 : 1;
+            LatencyAwareLoadBalancer latencyAwareLoadBalancer = routeUtils.createLoadBalancer(service, maximumFailoverAttempts);
 
-            routeDefinition
+            LoadBalanceDefinition loadBalanceDefinition = routeDefinition
                 .doTry()
                     .process(metricsProcessor)
                     .process(contentTypeValidator)
@@ -81,7 +92,6 @@ public class DirectRouteProcessor extends RouteBuilder {
                         }
                     })
                     .process(exchange -> {
-                        OpenApiProcessor openApiProcessor = routeUtils.openApiProcessor(service, opaService, serviceCache);
                         if (openApiProcessor != null) {
                             openApiProcessor.process(exchange);
                         }
@@ -91,9 +101,26 @@ public class DirectRouteProcessor extends RouteBuilder {
                             throttleProcessor.process(exchange);
                         }
                     })
-                    .loadBalance()
-                    .failover(1, false, service.isRoundRobinEnabled(), false)
-                    .to(routeUtils.buildEndpoints(service))
+                    .process(exchange -> {
+                        if(service.getServiceMeta().isConcurrencyLimit() && concurrencyLimitProcessor != null) {
+                            concurrencyLimitProcessor.process(exchange, service);
+                        }
+                    })
+                    //Throttled and shed calls already carry their response
+                    .filter(exchangeProperty(Constants.CAPI_REQUEST_REJECTED).isNull())
+                        .loadBalance()
+                        .id(routeId + Constants.LOAD_BALANCER_ID_SUFFIX);
+
+            if(latencyAwareLoadBalancer != null) {
+                loadBalanceDefinition.loadBalance(latencyAwareLoadBalancer);
+            } else {
+                loadBalanceDefinition.failover(maximumFailoverAttempts, false, service.isRoundRobinEnabled(), false);
+            }
+
+            loadBalanceDefinition
+                        .to(routeUtils.buildEndpoints(service))
+                        .end()
+                    .end()
                 .endDoTry()
                 .doCatch(SSLHandshakeException.class, SocketException.class, UnknownHostException.class, AuthorizationException.class)
                     .setHeader(Constants.ERROR_API_SHOW_TRACE_ID, constant(service.getServiceMeta().isB3TraceId()))
@@ -107,6 +134,11 @@ public class DirectRouteProcessor extends RouteBuilder {
                     .removeHeader(Constants.CAPI_URI_IN_ERROR)
                     .removeHeader(Constants.ROUTE_ID_HEADER)
                 .end()
+                    .process(exchange -> {
+                        if(service.getServiceMeta().isThrottle() && throttleProcessor != null) {
+                            throttleProcessor.addRateLimitHeaders(exchange);
+                        }
+                    })
                     .removeHeader(Constants.X_FORWARDED_HOST)
                     .removeHeader(Constants.X_FORWARDED_PREFIX)
                     .removeHeader(Constants.AUTHORIZATION_HEADER)
@@ -149,8 +181,19 @@ public class DirectRouteProcessor extends RouteBuilder {
                         throttleProcessor.process(exchange);
                     }
                 })
-                .to(routeUtils.buildEndpoints(service))
+                .process(exchange -> {
+                    if(service.getServiceMeta().isConcurrencyLimit() && concurrencyLimitProcessor != null) {
+                        concurrencyLimitProcessor.process(exchange, service);
+                    }
+                })
+                .filter(exchangeProperty(Constants.CAPI_REQUEST_REJECTED).isNull())
+                    .to(routeUtils.buildEndpoints(service))
                 .end()
+                .process(exchange -> {
+                    if(service.getServiceMeta().isThrottle() && throttleProcessor != null) {
+                        throttleProcessor.addRateLimitHeaders(exchange);
+                    }
+                })
                 .removeHeader(Constants.X_FORWARDED_HOST)
                 .removeHeader(Constants.X_FORWARDED_PREFIX)
                 .removeHeader(Constants.AUTHORIZATION_HEADER)
@@ -188,6 +231,14 @@ public class DirectRouteProcessor extends RouteBuilder {
         this.serviceCache = serviceCache;
     }
 
+    public void setConcurrencyLimitProcessor(ConcurrencyLimitProcessor concurrencyLimitProcessor) {
+        this.concurrencyLimitProcessor = concurrencyLimitProcessor;
+    }
+
+    private String getStreamingOption(Service service) {
+        return service.getServiceMeta().isStreaming() ? Constants.DISABLE_STREAM_CACHE : "";
+    }
+
     private RestDefinition getRestDefinition(Service service) {
         RestDefinition restDefinition;
         service.setMatchOnUriPrefix(true);
@@ -195,21 +246,26 @@ public class DirectRouteProcessor extends RouteBuilder {
         switch (routeUtils.getMethodFromRouteId(routeId)) {
             case "get" -> restDefinition = rest().get(routeUtils.buildFrom(service)
                     + Constants.MATCH_ON_URI_PREFIX
-                    + service.isMatchOnUriPrefix());
+                    + service.isMatchOnUriPrefix()
+                    + getStreamingOption(service));
             case "post" -> restDefinition = rest().post(routeUtils.buildFrom(service)
                     + Constants.MATCH_ON_URI_PREFIX
                     + service.isMatchOnUriPrefix()
-                    + Constants.MAP_HTTP_MESSAGE_FORM_URL_ENCODED_BODY);
+                    + Constants.MAP_HTTP_MESSAGE_FORM_URL_ENCODED_BODY
+                    + getStreamingOption(service));
             case "put" -> restDefinition = rest().put(routeUtils.buildFrom(service)
                     + Constants.MATCH_ON_URI_PREFIX
                     + service.isMatchOnUriPrefix()
-                    + Constants.MAP_HTTP_MESSAGE_FORM_URL_ENCODED_BODY);
+                    + Constants.MAP_HTTP_MESSAGE_FORM_URL_ENCODED_BODY
+                    + getStreamingOption(service));
             case "delete" -> restDefinition = rest().delete(routeUtils.buildFrom(service)
                     + Constants.MATCH_ON_URI_PREFIX
-                    + service.isMatchOnUriPrefix());
+                    + service.isMatchOnUriPrefix()
+                    + getStreamingOption(service));
             case "patch" -> restDefinition = rest().patch(routeUtils.buildFrom(service)
                     + Constants.MATCH_ON_URI_PREFIX
-                    + service.isMatchOnUriPrefix());
+                    + service.isMatchOnUriPrefix()
+                    + getStreamingOption(service));
             default -> {
                 return null;
             }
@@ -1,14 +1,32 @@
 package io.surisoft.capi.builder;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.kafka.CapiKafkaEvent;
+import io.surisoft.capi.schema.CapiEvent;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Component
 @ConditionalOnProperty(prefix = "capi.kafka", name = "enabled", havingValue = "true")
 public class KafkaProcessor extends RouteBuilder {
 
+    private static final String CONSUMER_LAG_METRIC = "capi_kafka_consumer_lag_milliseconds";
+    //Partitions revoked from this instance stop receiving records, their gauges go after this long
+    private static final long IDLE_PARTITION_TIMEOUT = 300000;
+
     @Value("${capi.kafka.host}")
     private String capiKafkaHost;
 
@@ -21,6 +39,12 @@ public class KafkaProcessor extends RouteBuilder {
     @Value("${capi.kafka.group-id}")
     private String capiKafkaGroupId;
 
+    @Value("${capi.kafka.consumer.count}")
+    private int capiKafkaConsumerCount;
+
+    @Value("${capi.kafka.consumer.max-poll-records}")
+    private int capiKafkaMaxPollRecords;
+
     @Value("${capi.kafka.ssl.enabled}")
     private boolean capiKafkaSslEnabled;
 
@@ -36,32 +60,103 @@ public class KafkaProcessor extends RouteBuilder {
     @Value("${capi.kafka.ssl.truststore.password}")
     private String capiKafkaSslTruststorePassword;
 
+    private final CapiKafkaEvent capiKafkaEvent;
+    private final MeterRegistry meterRegistry;
+    private final Map<Integer, PartitionLag> consumerLagByPartition = new ConcurrentHashMap<>();
+
+    public KafkaProcessor(@Qualifier("capiKafkaEventProcessor") CapiKafkaEvent capiKafkaEvent, MeterRegistry meterRegistry) {
+        this.capiKafkaEvent = capiKafkaEvent;
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     public void configure() {
-        from("kafka:" + buildEndpoint()).to("bean:capiKafkaEventProcessor?method=process(${body})");
+        //Records are polled in batches and handed straight to the event processor, without bean binding
+        from("kafka:" + buildEndpoint())
+                .process(this::processBatch)
+                .routeId("capi-kafka-consumer");
+    }
+
+    private void processBatch(Exchange exchange) {
+        if(exchange.getIn().getBody() instanceof List<?> records) {
+            for(Object record : records) {
+                if(record instanceof Exchange recordExchange) {
+                    processRecord(recordExchange.getIn());
+                }
+            }
+        } else {
+            processRecord(exchange.getIn());
+        }
+        removeIdlePartitions(System.currentTimeMillis());
+    }
+
+    private void processRecord(Message message) {
+        CapiEvent capiEvent = message.getBody(CapiEvent.class);
+        if(capiEvent != null) {
+            capiKafkaEvent.process(capiEvent);
+        }
+        Integer partition = message.getHeader(KafkaConstants.PARTITION, Integer.class);
+        Long timestamp = message.getHeader(KafkaConstants.TIMESTAMP, Long.class);
+        if(partition != null && timestamp != null) {
+            long now = System.currentTimeMillis();
+            PartitionLag partitionLag = consumerLag(partition);
+            partitionLag.lastRecord = now;
+            partitionLag.lag.set(Math.max(0, now - timestamp));
+        }
+    }
+
+    //How old the last record consumed from a partition was, a growing lag means a stale throttling view
+    private PartitionLag consumerLag(int partition) {
+        return consumerLagByPartition.computeIfAbsent(partition, k -> {
+            AtomicLong consumerLag = new AtomicLong();
+            Meter gauge = Gauge.builder(CONSUMER_LAG_METRIC, consumerLag, AtomicLong::get)
+                    .tag("topic", capiKafkaTopic)
+                    .tag("partition", String.valueOf(partition))
+                    .strongReference(true)
+                    .register(meterRegistry);
+            return new PartitionLag(consumerLag, gauge);
+        });
+    }
+
+    private void removeIdlePartitions(long now) {
+        consumerLagByPartition.values().removeIf(partitionLag -> {
+            if(now - partitionLag.lastRecord < IDLE_PARTITION_TIMEOUT) {
+                return false;
+            }
+            meterRegistry.remove(partitionLag.gauge);
+            return true;
+        });
     }
 
     private String buildEndpoint() {
+        String endpoint = capiKafkaTopic +
+                "?brokers=" + capiKafkaHost +
+                "&groupId=" + capiKafkaGroupId +
+                "&autoOffsetReset=latest" +
+                "&consumersCount=" + capiKafkaConsumerCount +
+                "&batching=true" +
+                "&maxPollRecords=" + capiKafkaMaxPollRecords +
+                "&valueDeserializer=io.surisoft.capi.kafka.CapiKafkaEventDeserializer";
         if(capiKafkaSslEnabled) {
-           return capiKafkaTopic +
-                    "?brokers=" + capiKafkaHost +
-                    "&securityProtocol=SSL" +
+            endpoint += "&securityProtocol=SSL" +
                     "&sslKeystoreLocation=" + capiKafkaSslKeystoreLocation +
                     "&sslKeystorePassword=" + capiKafkaSslKeystorePassword +
                     "&sslKeyPassword=" +  capiKafkaSslKeystorePassword +
                     "&sslTruststoreLocation=" + capiKafkaSslTruststoreLocation +
                     "&sslTruststorePassword=" + capiKafkaSslTruststorePassword +
-                    "&groupInstanceId=" + capiKafkaGroupInstance +
-                    "&autoOffsetReset=latest" +
-                    "&groupId=" + capiKafkaGroupId +
-                    "&valueDeserializer=io.surisoft.capi.kafka.CapiKafkaEventDeserializer";
-        } else {
-            return capiKafkaTopic +
-                    "?brokers=" + capiKafkaHost +
-                    "&groupId=" + capiKafkaGroupId +
-                    "&autoOffsetReset=latest" +
-                    "&consumersCount=1" +
-                    "&valueDeserializer=io.surisoft.capi.kafka.CapiKafkaEventDeserializer";
+                    "&groupInstanceId=" + capiKafkaGroupInstance;
+        }
+        return endpoint;
+    }
+
+    private static final class PartitionLag {
+        private final AtomicLong lag;
+        private final Meter gauge;
+        private volatile long lastRecord = System.currentTimeMillis();
+
+        private PartitionLag(AtomicLong lag, Meter gauge) {
+            this.lag = lag;
+            this.gauge = gauge;
         }
     }
-}
\ No newline at end of file
+}
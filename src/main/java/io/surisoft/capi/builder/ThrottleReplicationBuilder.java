@@ -0,0 +1,25 @@
+package io.surisoft.capi.builder;
+
+import org.apache.camel.builder.RouteBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(prefix = "capi.throttling", name = "enabled", havingValue = "true")
+public class ThrottleReplicationBuilder extends RouteBuilder {
+
+    private final int interval;
+
+    public ThrottleReplicationBuilder(@Value("${capi.throttling.replication.interval}") int interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public void configure() {
+        log.debug("Creating CAPI Throttle Replication");
+        from("timer:throttle-replication?period=" + interval)
+                .to("bean:throttleReplicator?method=flush")
+                .routeId("throttle-replication");
+    }
+}
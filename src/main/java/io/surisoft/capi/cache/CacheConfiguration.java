@@ -1,11 +1,18 @@
 package io.surisoft.capi.cache;
 
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.surisoft.capi.schema.ConsulKeyStoreEntry;
 import io.surisoft.capi.schema.Service;
-import io.surisoft.capi.schema.ThrottleServiceObject;
+import io.surisoft.capi.schema.SlidingWindowCounter;
 import io.surisoft.capi.utils.Constants;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.event.CacheEntryEvictedListener;
+import org.cache2k.event.CacheEntryExpiredListener;
+import org.cache2k.operation.CacheControl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -16,6 +23,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class CacheConfiguration {
@@ -70,12 +78,50 @@ public class CacheConfiguration {
 
     @Bean
     @ConditionalOnProperty(prefix = "capi.throttling", name = "enabled", havingValue = "true")
-    public Cache<String, ThrottleServiceObject> createLocalThrottleCache() {
+    public Cache<String, SlidingWindowCounter> createLocalThrottleCache(@Value("${capi.throttling.cache.max-bytes}") long throttleCacheMaxBytes,
+                                                                        MeterRegistry meterRegistry) {
         log.debug("Creating Throttle Cache");
-        return new Cache2kBuilder<String, ThrottleServiceObject>(){}
-                .name("throttleServiceObject-" + hashCode())
-                .eternal(true)
-                .entryCapacity(10000)
+        Counter evictions = meterRegistry.counter("capi_throttle_cache_evictions");
+        Counter expirations = meterRegistry.counter("capi_throttle_cache_expirations");
+        //Counters expire once their windows are over, the byte budget only evicts under memory pressure
+        Cache<String, SlidingWindowCounter> throttleCache = new Cache2kBuilder<String, SlidingWindowCounter>(){}
+                .name("throttleCounter-" + hashCode())
+                .expiryPolicy((key, slidingWindowCounter, startTime, currentEntry) -> slidingWindowCounter.expiryTime(startTime))
+                .sharpExpiry(false)
+                .weigher((key, slidingWindowCounter) -> slidingWindowCounter.estimatedSize())
+                .maximumWeight(throttleCacheMaxBytes)
+                .addListener((CacheEntryEvictedListener<String, SlidingWindowCounter>) (cache, entry) -> evictions.increment())
+                .addListener((CacheEntryExpiredListener<String, SlidingWindowCounter>) (cache, entry) -> expirations.increment())
+                .storeByReference(true)
+                .build();
+
+        CacheControl cacheControl = CacheControl.of(throttleCache);
+        Gauge.builder("capi_throttle_cache_bytes", cacheControl, CacheControl::getTotalWeight)
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("capi_throttle_cache_entries", cacheControl, CacheControl::getSize)
+                .strongReference(true)
+                .register(meterRegistry);
+        return throttleCache;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "capi.oauth2.provider", name = "enabled", havingValue = "true")
+    public Cache<String, JWTClaimsSet> verifiedTokenCache(@Value("${capi.oauth2.provider.cache.size}") long verifiedTokenCacheSize,
+                                                          @Value("${capi.oauth2.provider.cache.ttl}") long verifiedTokenCacheTtl) {
+        log.debug("Creating Verified Token Cache");
+        return new Cache2kBuilder<String, JWTClaimsSet>(){}
+                .name("verifiedTokenCache-" + hashCode())
+                .entryCapacity(verifiedTokenCacheSize)
+                .expireAfterWrite(verifiedTokenCacheTtl, TimeUnit.MILLISECONDS)
+                .expiryPolicy((key, jwtClaimsSet, startTime, currentEntry) -> {
+                    Date expirationTime = jwtClaimsSet.getExpirationTime();
+                    if(expirationTime == null) {
+                        return startTime + verifiedTokenCacheTtl;
+                    }
+                    return Math.min(startTime + verifiedTokenCacheTtl, expirationTime.getTime());
+                })
+                .sharpExpiry(true)
                 .storeByReference(true)
                 .build();
     }
@@ -42,6 +42,9 @@ public class KafkaConfig {
     //@Value("${capi.kafka.group-id}")
     //private String capiKafkaGroupId;
 
+    @Value("${capi.kafka.serialization}")
+    private String capiKafkaSerialization;
+
     @Value("${capi.kafka.ssl.enabled}")
     private boolean capiKafkaSslEnabled;
 
@@ -76,6 +79,9 @@ public class KafkaConfig {
         configProps.put(
                 ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
                 CapiEventSerializer.class);
+        configProps.put(
+                CapiEventSerializer.SERIALIZATION_CONFIG,
+                capiKafkaSerialization);
         if(capiKafkaSslEnabled) {
             configProps.put(
                     SECURITY_PROTOCOL_CONFIG,
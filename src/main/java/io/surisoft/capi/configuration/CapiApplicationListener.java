@@ -2,6 +2,7 @@ package io.surisoft.capi.configuration;
 
 import io.surisoft.capi.schema.Service;
 import io.surisoft.capi.undertow.GrpcGateway;
+import io.surisoft.capi.undertow.NativeGateway;
 import io.surisoft.capi.undertow.SSEGateway;
 import io.surisoft.capi.undertow.WebsocketGateway;
 import org.cache2k.Cache;
@@ -24,12 +25,14 @@ public class CapiApplicationListener implements ApplicationListener<ApplicationE
     private final Optional<WebsocketGateway> websocketGateway;
     private final Optional<SSEGateway> sseGateway;
     private final Optional<GrpcGateway> grpcGateway;
+    private final Optional<NativeGateway> nativeGateway;
 
-    public CapiApplicationListener(Cache<String, Service> serviceCache, Optional<WebsocketGateway> websocketGateway, Optional<SSEGateway> sseGateway, Optional<GrpcGateway> grpcGateway) {
+    public CapiApplicationListener(Cache<String, Service> serviceCache, Optional<WebsocketGateway> websocketGateway, Optional<SSEGateway> sseGateway, Optional<GrpcGateway> grpcGateway, Optional<NativeGateway> nativeGateway) {
         this.serviceCache = serviceCache;
         this.websocketGateway = websocketGateway;
         this.sseGateway = sseGateway;
         this.grpcGateway = grpcGateway;
+        this.nativeGateway = nativeGateway;
     }
 
     @Override
@@ -47,6 +50,10 @@ public class CapiApplicationListener implements ApplicationListener<ApplicationE
                 log.info("Capi gRPC Gateway starting.");
                 grpcGateway.get().runProxy();
             }
+            if(nativeGateway.isPresent()) {
+                log.info("Capi Native Gateway starting.");
+                nativeGateway.get().runProxy();
+            }
         }
         if(applicationEvent instanceof ContextClosedEvent) {
             log.info("Capi is shutting down, time to clear all cache info.");
@@ -1,18 +1,18 @@
 package io.surisoft.capi.configuration;
 
 import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.proc.JWSKeySelector;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import io.micrometer.core.instrument.util.HierarchicalNameMapper;
 import io.micrometer.jmx.JmxMeterRegistry;
 import io.surisoft.capi.exception.RestTemplateErrorHandler;
+import io.surisoft.capi.oidc.CapiJWKSource;
 import io.surisoft.capi.schema.*;
 import io.surisoft.capi.service.*;
 import io.surisoft.capi.utils.Constants;
@@ -25,6 +25,8 @@ import org.apache.camel.component.micrometer.DistributionStatisticConfigFilter;
 import org.apache.camel.spring.boot.CamelContextConfiguration;
 import org.apache.camel.support.jsse.SSLContextParameters;
 import org.apache.camel.support.jsse.TrustManagersParameters;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
@@ -32,6 +34,7 @@ import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.ssl.DefaultClientTlsStrategy;
 import org.apache.hc.core5.ssl.SSLContextBuilder;
 import org.apache.hc.core5.ssl.TrustStrategy;
+import org.apache.hc.core5.util.TimeValue;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.slf4j.Logger;
@@ -52,18 +55,12 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.text.ParseException;
 import java.time.Duration;
 import java.util.*;
 
@@ -86,7 +83,14 @@ public class CapiConfiguration {
     private final boolean capiDisableRedirect;
     private final int consulTimerInterval;
     private final boolean capiConsulEnabled;
+    private final boolean consulBlockingQueriesEnabled;
     private final Cache<String, Service> serviceCache;
+    private final boolean routePoolEnabled;
+    private final int routePoolMaxPerRoute;
+    private final int routePoolMaxTotal;
+    private final long routePoolIdleEviction;
+    private final long routePoolValidateAfterInactivity;
+    private final long routePoolKeepAlive;
 
     public CapiConfiguration(CamelContext camelContext,
                              ResourceLoader resourceLoader,
@@ -100,7 +104,14 @@ public class CapiConfiguration {
                              @Value("${capi.disable.redirect}") boolean capiDisableRedirect,
                              @Value("${capi.consul.discovery.timer.interval}") int consulTimerInterval,
                              @Value("${capi.consul.discovery.enabled}") boolean capiConsulEnabled,
-                             Cache<String, Service> serviceCache) {
+                             @Value("${capi.consul.discovery.blocking.enabled}") boolean consulBlockingQueriesEnabled,
+                             Cache<String, Service> serviceCache,
+                             @Value("${capi.route.pool.enabled}") boolean routePoolEnabled,
+                             @Value("${capi.route.pool.max-per-route}") int routePoolMaxPerRoute,
+                             @Value("${capi.route.pool.max-total}") int routePoolMaxTotal,
+                             @Value("${capi.route.pool.idle-eviction}") long routePoolIdleEviction,
+                             @Value("${capi.route.pool.validate-after-inactivity}") long routePoolValidateAfterInactivity,
+                             @Value("${capi.route.pool.keep-alive}") long routePoolKeepAlive) {
 
 
         this.camelContext = camelContext;
@@ -115,7 +126,14 @@ public class CapiConfiguration {
         this.capiDisableRedirect = capiDisableRedirect;
         this.consulTimerInterval = consulTimerInterval;
         this.capiConsulEnabled = capiConsulEnabled;
+        this.consulBlockingQueriesEnabled = consulBlockingQueriesEnabled;
         this.serviceCache = serviceCache;
+        this.routePoolEnabled = routePoolEnabled;
+        this.routePoolMaxPerRoute = routePoolMaxPerRoute;
+        this.routePoolMaxTotal = routePoolMaxTotal;
+        this.routePoolIdleEviction = routePoolIdleEviction;
+        this.routePoolValidateAfterInactivity = routePoolValidateAfterInactivity;
+        this.routePoolKeepAlive = routePoolKeepAlive;
 
         if(capiTrustStoreEnabled) {
             capiTrustManager = createTrustMaterial();
@@ -129,7 +147,9 @@ public class CapiConfiguration {
             public void beforeApplicationStart(CamelContext context) {
                 try {
                     log.debug("Initializing CamelContext Startup Listener");
-                    camelContext.addStartupListener(new CamelStartupListener(consulTimerInterval, capiConsulEnabled));
+                    //With blocking queries the discovery call itself waits for changes, so the timer only spaces the calls
+                    long consulDiscoveryInterval = consulBlockingQueriesEnabled ? Constants.CONSUL_BLOCKING_QUERY_TIMER_INTERVAL : consulTimerInterval;
+                    camelContext.addStartupListener(new CamelStartupListener(consulDiscoveryInterval, capiConsulEnabled));
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
@@ -142,26 +162,45 @@ public class CapiConfiguration {
 
     @Bean
     @ConditionalOnProperty(prefix = "capi.websocket", name = "enabled", havingValue = "true")
-    public Map<String, WebsocketClient> websocketClients() {
-        return new HashMap<>();
+    public ClientRegistry<WebsocketClient> websocketClients() {
+        return new ClientRegistry<>();
     }
 
     @Bean
     @ConditionalOnProperty(prefix = "capi.sse", name = "enabled", havingValue = "true")
-    public Map<String, SSEClient> sseClients() {
-        return new HashMap<>();
+    public ClientRegistry<SSEClient> sseClients() {
+        return new ClientRegistry<>();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "capi.native", name = "enabled", havingValue = "true")
+    public ClientRegistry<NativeClient> nativeClients() {
+        return new ClientRegistry<>();
     }
 
     @Bean
     @ConditionalOnProperty(prefix = "capi.grpc", name = "enabled", havingValue = "true")
-    public Map<String, GrpcClient> grpcClients() {
-        return new HashMap<>();
+    public ClientRegistry<GrpcClient> grpcClients() {
+        return new ClientRegistry<>();
     }
 
     @Bean
-    public HttpComponent disableFollowRedirect(CamelContext camelContext) {
+    public HttpComponent disableFollowRedirect(CamelContext camelContext, Optional<SSLContextParameters> sslContextParameters) throws Exception {
         HttpComponent httpComponent = (HttpComponent) camelContext.getComponent("http");
 
+        if(routePoolEnabled) {
+            log.info("CAPI route connection pool enabled (max per route: {}, max total: {})", routePoolMaxPerRoute, routePoolMaxTotal);
+            //http and https routes share one pool, the https connections trust the CAPI trust store when it is enabled
+            SSLContext sslContext = sslContextParameters.isPresent() ? sslContextParameters.get().createSSLContext(camelContext) : null;
+            HttpClientConnectionManager routeConnectionManager = createRouteConnectionManager(sslContext);
+            HttpComponent httpsComponent = (HttpComponent) camelContext.getComponent("https");
+            for(HttpComponent component : List.of(httpComponent, httpsComponent)) {
+                component.setClientConnectionManager(routeConnectionManager);
+                component.setHttpClientConfigurer(createPooledHttpClientConfigurer());
+            }
+            return httpComponent;
+        }
+
         HttpClientConfigurer httpClientConfigurer = clientBuilder -> {
             if(capiDisableRedirect) {
                 clientBuilder.disableAuthCaching();
@@ -173,6 +212,40 @@ public class CapiConfiguration {
         return httpComponent;
     }
 
+    private HttpClientConnectionManager createRouteConnectionManager(SSLContext sslContext) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setValidateAfterInactivity(TimeValue.ofMilliseconds(routePoolValidateAfterInactivity))
+                .build();
+        PoolingHttpClientConnectionManagerBuilder connectionManagerBuilder = PoolingHttpClientConnectionManagerBuilder
+                .create()
+                .setMaxConnPerRoute(routePoolMaxPerRoute)
+                .setMaxConnTotal(routePoolMaxTotal)
+                .setDefaultConnectionConfig(connectionConfig);
+        if(sslContext != null) {
+            connectionManagerBuilder.setTlsSocketStrategy(new DefaultClientTlsStrategy(sslContext));
+        }
+        return connectionManagerBuilder.build();
+    }
+
+    private HttpClientConfigurer createPooledHttpClientConfigurer() {
+        return clientBuilder -> {
+            if(capiDisableRedirect) {
+                clientBuilder.disableAuthCaching();
+            }
+            // The pool is owned by the component, endpoints must not close it when they stop.
+            clientBuilder.setConnectionManagerShared(true);
+            clientBuilder.evictExpiredConnections();
+            clientBuilder.evictIdleConnections(TimeValue.ofMilliseconds(routePoolIdleEviction));
+            clientBuilder.setKeepAliveStrategy((response, context) -> {
+                TimeValue keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                if(keepAlive == null || keepAlive.toMilliseconds() <= 0 || keepAlive.toMilliseconds() > routePoolKeepAlive) {
+                    return TimeValue.ofMilliseconds(routePoolKeepAlive);
+                }
+                return keepAlive;
+            });
+        };
+    }
+
     @Bean
     public CompositeMeterRegistry metrics() {
 
@@ -263,7 +336,9 @@ public class CapiConfiguration {
 
     @Bean("sslContextParameters")
     @ConditionalOnProperty(prefix = "capi.trust.store", name = "enabled", havingValue = "true")
-    public SSLContextParameters createSSLContextParameters() throws Exception {
+    public SSLContextParameters createSSLContextParameters(MeterRegistry meterRegistry,
+                                                           @Value("${capi.trust.store.session.cache-size}") int sessionCacheSize,
+                                                           @Value("${capi.trust.store.session.timeout}") int sessionTimeout) throws Exception {
         HttpComponent httpComponent = (HttpComponent) camelContext.getComponent("https");
         CapiTrustManager capiTrustManager;
 
@@ -278,9 +353,8 @@ public class CapiConfiguration {
         TrustManagersParameters trustManagersParameters = new TrustManagersParameters();
         trustManagersParameters.setTrustManager(capiTrustManager);
 
-        SSLContextParameters sslContextParameters = new SSLContextParameters();
+        SSLContextParameters sslContextParameters = new CapiSslContextParameters(sessionCacheSize, sessionTimeout, meterRegistry);
         sslContextParameters.setTrustManagers(trustManagersParameters);
-        sslContextParameters.setSessionTimeout("1");
 
         sslContextParameters.createSSLContext(camelContext);
         httpComponent.setSslContextParameters(sslContextParameters);
@@ -350,32 +424,21 @@ public class CapiConfiguration {
 
     @Bean
     @ConditionalOnProperty(prefix = "capi.oauth2.provider", name = "enabled", havingValue = "true")
-    public List<DefaultJWTProcessor<SecurityContext>> getJwtProcessor(Optional<CapiSslContextHolder> capiSslContextHolder) throws IOException, ParseException {
+    public CapiJWKSource capiJWKSource(Optional<CapiSslContextHolder> capiSslContextHolder,
+                                       @Value("${capi.oauth2.provider.jwks.refresh-interval}") long jwksRefreshInterval,
+                                       @Value("${capi.oauth2.provider.jwks.min-refetch-interval}") long jwksMinRefetchInterval) {
+        log.trace("Starting CAPI JWK Source");
+        return new CapiJWKSource(getOauth2ProviderKeys(), capiSslContextHolder, jwksRefreshInterval, jwksMinRefetchInterval);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "capi.oauth2.provider", name = "enabled", havingValue = "true")
+    public List<DefaultJWTProcessor<SecurityContext>> getJwtProcessor(CapiJWKSource capiJWKSource) {
         log.trace("Starting CAPI JWT Processor");
-        List<DefaultJWTProcessor<SecurityContext>> jwtProcessorList = new ArrayList<>();
-        for(String jwkEndpoint : getOauth2ProviderKeys()) {
-            HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
-            capiSslContextHolder.ifPresent(sslContextHolder -> httpClientBuilder.sslContext(sslContextHolder.getSslContext()));
-            httpClientBuilder.connectTimeout(Duration.ofSeconds(10));
-            try {
-                HttpClient httpClient = httpClientBuilder.build();
-                HttpRequest request = HttpRequest.newBuilder().uri(new URI(jwkEndpoint)).build();
-                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-                if (response.statusCode() == 200) {
-                    InputStream responseInputStream = response.body();
-                    DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
-                    JWKSet jwkSet = JWKSet.load(responseInputStream);
-                    ImmutableJWKSet<SecurityContext> keySource = new ImmutableJWKSet<>(jwkSet);
-                    JWSAlgorithm expectedJWSAlg = JWSAlgorithm.RS256;
-                    JWSKeySelector<SecurityContext> keySelector = new JWSVerificationKeySelector<>(expectedJWSAlg, keySource);
-                    jwtProcessor.setJWSKeySelector(keySelector);
-                    jwtProcessorList.add(jwtProcessor);
-                }
-            } catch (URISyntaxException | InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        return jwtProcessorList;
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        JWSKeySelector<SecurityContext> keySelector = new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, capiJWKSource);
+        jwtProcessor.setJWSKeySelector(keySelector);
+        return List.of(jwtProcessor);
     }
 
     @Bean
@@ -0,0 +1,223 @@
+package io.surisoft.capi.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.jsse.SSLContextParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyManagementException;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+//Every SSLContext keeps a bounded TLS session cache so backends can resume sessions
+public class CapiSslContextParameters extends SSLContextParameters {
+
+    private static final Logger log = LoggerFactory.getLogger(CapiSslContextParameters.class);
+    private final int sessionCacheSize;
+    private final Set<SSLContext> sslContexts = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    private final Counter fullHandshakes;
+    private final Counter resumedHandshakes;
+
+    public CapiSslContextParameters(int sessionCacheSize, int sessionTimeout, MeterRegistry meterRegistry) {
+        this.sessionCacheSize = sessionCacheSize;
+        setSessionTimeout(String.valueOf(sessionTimeout));
+        //Read from the session caches on scrape, nothing is added to the handshakes
+        Gauge.builder("capi_tls_resumable_sessions", this, CapiSslContextParameters::getResumableSessions)
+                .strongReference(true)
+                .register(meterRegistry);
+        fullHandshakes = Counter.builder("capi_tls_handshakes").tag("type", "full").register(meterRegistry);
+        resumedHandshakes = Counter.builder("capi_tls_handshakes").tag("type", "resumed").register(meterRegistry);
+    }
+
+    @Override
+    public SSLContext createSSLContext(CamelContext camelContext) throws GeneralSecurityException, IOException {
+        SSLContext sslContext = super.createSSLContext(camelContext);
+        sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+        sslContexts.add(sslContext);
+        return new HandshakeCountingSSLContext(sslContext);
+    }
+
+    //Drops every cached TLS session, the SSLContexts stay in use
+    public void invalidateSessions() {
+        int invalidated = 0;
+        synchronized(sslContexts) {
+            for(SSLContext sslContext : sslContexts) {
+                SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+                for(byte[] sessionId : Collections.list(sessionContext.getIds())) {
+                    SSLSession sslSession = sessionContext.getSession(sessionId);
+                    if(sslSession != null) {
+                        sslSession.invalidate();
+                        invalidated++;
+                    }
+                }
+            }
+        }
+        log.debug("Invalidated {} cached TLS sessions", invalidated);
+    }
+
+    //Valid sessions in the client caches, each one saves a full handshake to its backend
+    public int getResumableSessions() {
+        int resumableSessions = 0;
+        synchronized(sslContexts) {
+            for(SSLContext sslContext : sslContexts) {
+                SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+                for(byte[] sessionId : Collections.list(sessionContext.getIds())) {
+                    SSLSession sslSession = sessionContext.getSession(sessionId);
+                    if(sslSession != null && sslSession.isValid()) {
+                        resumableSessions++;
+                    }
+                }
+            }
+        }
+        return resumableSessions;
+    }
+
+    public double getFullHandshakes() {
+        return fullHandshakes.count();
+    }
+
+    public double getResumedHandshakes() {
+        return resumedHandshakes.count();
+    }
+
+    //A resumed session was created by an earlier connection, a full handshake creates it after the socket
+    private Socket countHandshakes(Socket socket) {
+        if(socket instanceof SSLSocket sslSocket) {
+            long socketCreationTime = System.currentTimeMillis();
+            sslSocket.addHandshakeCompletedListener(event -> {
+                if(event.getSession().getCreationTime() < socketCreationTime) {
+                    resumedHandshakes.increment();
+                } else {
+                    fullHandshakes.increment();
+                }
+            });
+        }
+        return socket;
+    }
+
+    //The http components open sockets only, the engines are handed out as they are
+    private class HandshakeCountingSSLContext extends SSLContext {
+        HandshakeCountingSSLContext(SSLContext sslContext) {
+            super(new HandshakeCountingSSLContextSpi(sslContext), sslContext.getProvider(), sslContext.getProtocol());
+        }
+    }
+
+    private class HandshakeCountingSSLContextSpi extends SSLContextSpi {
+
+        private final SSLContext sslContext;
+
+        HandshakeCountingSSLContextSpi(SSLContext sslContext) {
+            this.sslContext = sslContext;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] keyManagers, TrustManager[] trustManagers, SecureRandom secureRandom) throws KeyManagementException {
+            sslContext.init(keyManagers, trustManagers, secureRandom);
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return new HandshakeCountingSocketFactory(sslContext.getSocketFactory());
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return sslContext.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return sslContext.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            return sslContext.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return sslContext.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return sslContext.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return sslContext.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return sslContext.getSupportedSSLParameters();
+        }
+    }
+
+    private class HandshakeCountingSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory socketFactory;
+
+        HandshakeCountingSocketFactory(SSLSocketFactory socketFactory) {
+            this.socketFactory = socketFactory;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return socketFactory.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return socketFactory.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return countHandshakes(socketFactory.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return countHandshakes(socketFactory.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, InputStream consumed, boolean autoClose) throws IOException {
+            return countHandshakes(socketFactory.createSocket(socket, consumed, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return countHandshakes(socketFactory.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return countHandshakes(socketFactory.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return countHandshakes(socketFactory.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return countHandshakes(socketFactory.createSocket(address, port, localAddress, localPort));
+        }
+    }
+}
@@ -50,6 +50,7 @@ public class CapiTracerConfiguration {
         excludePatterns.add("timer://");
         excludePatterns.add("bean://consulNodeDiscovery");
         excludePatterns.add("bean://consistencyChecker");
+        excludePatterns.add("bean://throttleReplicator");
 
         CapiTracer capiTracer = new CapiTracer(httpUtils, capiNamespace, serviceCache);
 
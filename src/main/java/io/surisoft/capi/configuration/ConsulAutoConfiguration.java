@@ -1,13 +1,18 @@
 package io.surisoft.capi.configuration;
 
+import io.surisoft.capi.processor.ConcurrencyLimitProcessor;
 import io.surisoft.capi.processor.ContentTypeValidator;
 import io.surisoft.capi.processor.ThrottleProcessor;
 import io.surisoft.capi.processor.MetricsProcessor;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.GrpcClient;
+import io.surisoft.capi.schema.NativeClient;
 import io.surisoft.capi.schema.SSEClient;
 import io.surisoft.capi.schema.Service;
 import io.surisoft.capi.schema.WebsocketClient;
 import io.surisoft.capi.service.ConsulNodeDiscovery;
 import io.surisoft.capi.service.OpaService;
+import io.surisoft.capi.service.OutlierDetector;
 import io.surisoft.capi.utils.*;
 import org.apache.camel.CamelContext;
 import org.cache2k.Cache;
@@ -17,7 +22,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import java.util.Map;
 import java.util.Optional;
 
 @Configuration
@@ -28,51 +32,81 @@ public class ConsulAutoConfiguration {
     private final String capiContext;
     private final boolean reverseProxyEnabled;
     private final String reverseProxyHost;
-    private final Map<String, WebsocketClient> websocketClientMap;
-    private final Map<String, SSEClient> sseClientMap;
+    private final Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry;
+    private final Optional<ClientRegistry<SSEClient>> sseClientRegistry;
+    private final Optional<ClientRegistry<GrpcClient>> grpcClientRegistry;
     private final Optional<WebsocketUtils> websocketUtils;
     private final Optional<SSEUtils> sseUtils;
+    private final Optional<GrpcUtils> grpcUtils;
+    private final Optional<ClientRegistry<NativeClient>> nativeClientRegistry;
+    private final Optional<NativeUtils> nativeUtils;
     private final Optional<OpaService> opaService;
     private final String capiNamespace;
     private final boolean strictNamespace;
     private final String capiRunningMode;
     private final ContentTypeValidator contentTypeValidator;
     private final Optional<ThrottleProcessor> globalThrottleProcessor;
+    private final Optional<ConcurrencyLimitProcessor> concurrencyLimitProcessor;
+    private final Optional<OutlierDetector> outlierDetector;
     private final Optional<CapiSslContextHolder> capiSslContextHolder;
     private final String serviceMetaExtrasPrefix;
+    private final boolean consulBlockingQueriesEnabled;
+    private final int consulBlockingQueryWait;
+    private final int consulFetchConcurrency;
+    private final long consulFetchDeadline;
 
     public ConsulAutoConfiguration(ConsulHosts capiConsulHosts,
                                    @Value("${camel.servlet.mapping.context-path}") String capiContext,
                                    @Value("${capi.reverse.proxy.enabled}") boolean reverseProxyEnabled,
                                    @Value("${capi.reverse.proxy.host}") String reverseProxyHost,
-                                   Map<String, WebsocketClient> websocketClientMap,
-                                   Map<String, SSEClient> sseClientMap,
+                                   Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry,
+                                   Optional<ClientRegistry<SSEClient>> sseClientRegistry,
+                                   Optional<ClientRegistry<GrpcClient>> grpcClientRegistry,
                                    Optional<WebsocketUtils> websocketUtils,
                                    Optional<SSEUtils> sseUtils,
+                                   Optional<GrpcUtils> grpcUtils,
+                                   Optional<ClientRegistry<NativeClient>> nativeClientRegistry,
+                                   Optional<NativeUtils> nativeUtils,
                                    Optional<OpaService> opaService,
                                    @Value("${capi.namespace}") String capiNamespace,
                                    @Value("${capi.strict}") boolean strictNamespace,
                                    @Value("${capi.mode}") String capiRunningMode,
                                    ContentTypeValidator contentTypeValidator,
                                    Optional<ThrottleProcessor> globalThrottleProcessor,
+                                   Optional<ConcurrencyLimitProcessor> concurrencyLimitProcessor,
+                                   Optional<OutlierDetector> outlierDetector,
                                    Optional<CapiSslContextHolder> capiSslContextHolder,
-                                   @Value("${capi.traces.extra.metadata.prefix}") String serviceMetaExtrasPrefix) {
+                                   @Value("${capi.traces.extra.metadata.prefix}") String serviceMetaExtrasPrefix,
+                                   @Value("${capi.consul.discovery.blocking.enabled}") boolean consulBlockingQueriesEnabled,
+                                   @Value("${capi.consul.discovery.blocking.wait}") int consulBlockingQueryWait,
+                                   @Value("${capi.consul.discovery.fetch.concurrency}") int consulFetchConcurrency,
+                                   @Value("${capi.consul.discovery.fetch.deadline}") long consulFetchDeadline) {
         this.capiConsulHosts = capiConsulHosts;
         this.capiContext = capiContext;
         this.reverseProxyEnabled = reverseProxyEnabled;
         this.reverseProxyHost = reverseProxyHost;
-        this.websocketClientMap = websocketClientMap;
-        this.sseClientMap = sseClientMap;
+        this.websocketClientRegistry = websocketClientRegistry;
+        this.sseClientRegistry = sseClientRegistry;
+        this.grpcClientRegistry = grpcClientRegistry;
         this.websocketUtils = websocketUtils;
         this.sseUtils = sseUtils;
+        this.grpcUtils = grpcUtils;
+        this.nativeClientRegistry = nativeClientRegistry;
+        this.nativeUtils = nativeUtils;
         this.opaService = opaService;
         this.capiNamespace = capiNamespace;
         this.strictNamespace = strictNamespace;
         this.capiRunningMode = capiRunningMode;
         this.contentTypeValidator = contentTypeValidator;
         this.globalThrottleProcessor = globalThrottleProcessor;
+        this.concurrencyLimitProcessor = concurrencyLimitProcessor;
+        this.outlierDetector = outlierDetector;
         this.capiSslContextHolder = capiSslContextHolder;
         this.serviceMetaExtrasPrefix = serviceMetaExtrasPrefix;
+        this.consulBlockingQueriesEnabled = consulBlockingQueriesEnabled;
+        this.consulBlockingQueryWait = consulBlockingQueryWait;
+        this.consulFetchConcurrency = consulFetchConcurrency;
+        this.consulFetchDeadline = consulFetchDeadline;
     }
 
     @Bean(name = "consulNodeDiscovery")
@@ -84,12 +118,18 @@ public class ConsulAutoConfiguration {
                                                    HttpUtils httpUtils,
                                                    Cache<String, Service> serviceCache) {
 
-        ConsulNodeDiscovery consulNodeDiscovery = new ConsulNodeDiscovery(camelContext, serviceUtils, routeUtils, metricsProcessor, serviceCache, websocketClientMap, sseClientMap, contentTypeValidator, globalThrottleProcessor.orElse(null), capiSslContextHolder.orElse(null));
+        ConsulNodeDiscovery consulNodeDiscovery = new ConsulNodeDiscovery(camelContext, serviceUtils, routeUtils, metricsProcessor, serviceCache, websocketClientRegistry.orElse(null), sseClientRegistry.orElse(null), contentTypeValidator, globalThrottleProcessor.orElse(null), capiSslContextHolder.orElse(null));
         consulNodeDiscovery.setHttpUtils(httpUtils);
 
         opaService.ifPresent(consulNodeDiscovery::setOpaService);
+        concurrencyLimitProcessor.ifPresent(consulNodeDiscovery::setConcurrencyLimitProcessor);
+        outlierDetector.ifPresent(consulNodeDiscovery::setOutlierDetector);
         consulNodeDiscovery.setWebsocketUtils(websocketUtils.orElse(null));
         consulNodeDiscovery.setSSEUtils(sseUtils.orElse(null));
+        consulNodeDiscovery.setGrpcUtils(grpcUtils.orElse(null));
+        grpcClientRegistry.ifPresent(consulNodeDiscovery::setGrpcClientRegistry);
+        consulNodeDiscovery.setNativeUtils(nativeUtils.orElse(null));
+        nativeClientRegistry.ifPresent(consulNodeDiscovery::setNativeClientRegistry);
         consulNodeDiscovery.setCapiContext(httpUtils.getCapiContext(capiContext));
 
         consulNodeDiscovery.setConsulHosts(capiConsulHosts);
@@ -103,6 +143,8 @@ public class ConsulAutoConfiguration {
         }
 
         consulNodeDiscovery.setCapiRunningMode(capiRunningMode);
+        consulNodeDiscovery.setBlockingQueries(consulBlockingQueriesEnabled, consulBlockingQueryWait);
+        consulNodeDiscovery.setFetchLimits(consulFetchConcurrency, consulFetchDeadline);
         if(serviceMetaExtrasPrefix != null && !serviceMetaExtrasPrefix.isEmpty()) {
             consulNodeDiscovery.setServiceMetaExtrasPrefix(serviceMetaExtrasPrefix);
         }
@@ -0,0 +1,99 @@
+package io.surisoft.capi.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+//Tuning of the Undertow servers of the websocket, SSE, gRPC and native gateways
+@ConfigurationProperties(prefix = "capi.undertow")
+public class UndertowProperties {
+
+    private int ioThreads;
+    private int workerThreads;
+    private int bufferSize;
+    private Boolean directBuffers;
+    private int backlog;
+    private boolean http2;
+    private int idleTimeout;
+    private int noRequestTimeout;
+    private long maxEntitySize = -1;
+    private boolean sharedWorker;
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public Boolean getDirectBuffers() {
+        return directBuffers;
+    }
+
+    public void setDirectBuffers(Boolean directBuffers) {
+        this.directBuffers = directBuffers;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getNoRequestTimeout() {
+        return noRequestTimeout;
+    }
+
+    public void setNoRequestTimeout(int noRequestTimeout) {
+        this.noRequestTimeout = noRequestTimeout;
+    }
+
+    public long getMaxEntitySize() {
+        return maxEntitySize;
+    }
+
+    public void setMaxEntitySize(long maxEntitySize) {
+        this.maxEntitySize = maxEntitySize;
+    }
+
+    public boolean isSharedWorker() {
+        return sharedWorker;
+    }
+
+    public void setSharedWorker(boolean sharedWorker) {
+        this.sharedWorker = sharedWorker;
+    }
+}
@@ -0,0 +1,253 @@
+package io.surisoft.capi.kafka;
+
+import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.ThrottleServiceObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Compact binary format of the CAPI events, a magic byte and a version followed by tagged fields
+public final class CapiEventCodec {
+
+    public static final byte MAGIC = (byte) 0xCE;
+    public static final byte VERSION = 1;
+
+    private static final int VARINT = 0;
+    private static final int LENGTH_DELIMITED = 2;
+
+    private static final int EVENT_ID = 1;
+    private static final int EVENT_TYPE = 2;
+    private static final int EVENT_KEY = 3;
+    private static final int EVENT_VALUE = 4;
+    private static final int EVENT_NODE_INDEX = 5;
+    private static final int EVENT_INSTANCE_ID = 6;
+    private static final int EVENT_THROTTLE_SERVICE_OBJECT = 7;
+    private static final int EVENT_THROTTLE_SERVICE_OBJECTS = 8;
+
+    private static final int THROTTLE_SERVICE_ID = 1;
+    private static final int THROTTLE_CONSUMER_KEY = 2;
+    private static final int THROTTLE_TOTAL_CALLS_ALLOWED = 3;
+    private static final int THROTTLE_CURRENT_CALLS = 4;
+    private static final int THROTTLE_EXPIRATION_TIME = 5;
+    private static final int THROTTLE_LEASE = 6;
+
+    private CapiEventCodec() {}
+
+    public static boolean isBinary(byte[] data) {
+        return data.length > 1 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(CapiEvent capiEvent) {
+        Writer writer = new Writer(64);
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeString(EVENT_ID, capiEvent.getId());
+        writer.writeString(EVENT_TYPE, capiEvent.getType());
+        writer.writeString(EVENT_KEY, capiEvent.getKey());
+        writer.writeString(EVENT_VALUE, capiEvent.getValue());
+        writer.writeNumber(EVENT_NODE_INDEX, capiEvent.getNodeIndex());
+        writer.writeString(EVENT_INSTANCE_ID, capiEvent.getInstanceId());
+        if(capiEvent.getThrottleServiceObject() != null) {
+            writer.writeThrottleServiceObject(EVENT_THROTTLE_SERVICE_OBJECT, capiEvent.getThrottleServiceObject());
+        }
+        if(capiEvent.getThrottleServiceObjects() != null) {
+            for(ThrottleServiceObject throttleServiceObject : capiEvent.getThrottleServiceObjects()) {
+                writer.writeThrottleServiceObject(EVENT_THROTTLE_SERVICE_OBJECTS, throttleServiceObject);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static CapiEvent decode(byte[] data) {
+        if(!isBinary(data)) {
+            throw new IllegalArgumentException("Not a binary CAPI event");
+        }
+        if(data[1] > VERSION) {
+            throw new IllegalArgumentException("Unsupported CAPI event version " + data[1]);
+        }
+        Reader reader = new Reader(data, 2, data.length);
+        CapiEvent capiEvent = new CapiEvent();
+        List<ThrottleServiceObject> throttleServiceObjects = null;
+        while(reader.hasRemaining()) {
+            int tag = (int) reader.readVarint();
+            switch(tag >>> 3) {
+                case EVENT_ID -> capiEvent.setId(reader.readString());
+                case EVENT_TYPE -> capiEvent.setType(reader.readString());
+                case EVENT_KEY -> capiEvent.setKey(reader.readString());
+                case EVENT_VALUE -> capiEvent.setValue(reader.readString());
+                case EVENT_NODE_INDEX -> capiEvent.setNodeIndex((int) reader.readNumber());
+                case EVENT_INSTANCE_ID -> capiEvent.setInstanceId(reader.readString());
+                case EVENT_THROTTLE_SERVICE_OBJECT -> capiEvent.setThrottleServiceObject(reader.readThrottleServiceObject());
+                case EVENT_THROTTLE_SERVICE_OBJECTS -> {
+                    if(throttleServiceObjects == null) {
+                        throttleServiceObjects = new ArrayList<>();
+                    }
+                    throttleServiceObjects.add(reader.readThrottleServiceObject());
+                }
+                default -> reader.skip(tag & 0x7);
+            }
+        }
+        capiEvent.setThrottleServiceObjects(throttleServiceObjects);
+        return capiEvent;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        private Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[position++] = value;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeTag(int field, int wireType) {
+            writeVarint(((long) field << 3) | wireType);
+        }
+
+        private void writeNumber(int field, long value) {
+            if(value != 0) {
+                writeTag(field, VARINT);
+                writeVarint((value << 1) ^ (value >> 63));
+            }
+        }
+
+        private void writeString(int field, String value) {
+            if(value != null) {
+                writeBytes(field, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+            }
+        }
+
+        private void writeBytes(int field, byte[] bytes, int offset, int length) {
+            if(length < 0) {
+                length = bytes.length;
+            }
+            writeTag(field, LENGTH_DELIMITED);
+            writeVarint(length);
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        private void writeThrottleServiceObject(int field, ThrottleServiceObject throttleServiceObject) {
+            Writer writer = new Writer(32);
+            writer.writeString(THROTTLE_SERVICE_ID, throttleServiceObject.getServiceId());
+            writer.writeString(THROTTLE_CONSUMER_KEY, throttleServiceObject.getConsumerKey());
+            writer.writeNumber(THROTTLE_TOTAL_CALLS_ALLOWED, throttleServiceObject.getTotalCallsAllowed());
+            writer.writeNumber(THROTTLE_CURRENT_CALLS, throttleServiceObject.getCurrentCalls());
+            writer.writeNumber(THROTTLE_EXPIRATION_TIME, throttleServiceObject.getExpirationTime());
+            writer.writeNumber(THROTTLE_LEASE, throttleServiceObject.getLease());
+            writeBytes(field, writer.buffer, 0, writer.position);
+        }
+
+        private void ensureCapacity(int length) {
+            if(position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private final int limit;
+        private int position;
+
+        private Reader(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        private boolean hasRemaining() {
+            return position < limit;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                if(position >= limit) {
+                    throw new IllegalArgumentException("Truncated CAPI event");
+                }
+                byte current = data[position++];
+                value |= (long) (current & 0x7F) << shift;
+                if((current & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in CAPI event");
+        }
+
+        private long readNumber() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readLength() {
+            long length = readVarint();
+            if(length < 0 || length > limit - position) {
+                throw new IllegalArgumentException("Truncated CAPI event");
+            }
+            return (int) length;
+        }
+
+        private String readString() {
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private ThrottleServiceObject readThrottleServiceObject() {
+            int length = readLength();
+            Reader reader = new Reader(data, position, position + length);
+            position += length;
+            String serviceId = null;
+            String consumerKey = null;
+            long totalCallsAllowed = 0;
+            long currentCalls = 0;
+            long expirationTime = 0;
+            long lease = 0;
+            while(reader.hasRemaining()) {
+                int tag = (int) reader.readVarint();
+                switch(tag >>> 3) {
+                    case THROTTLE_SERVICE_ID -> serviceId = reader.readString();
+                    case THROTTLE_CONSUMER_KEY -> consumerKey = reader.readString();
+                    case THROTTLE_TOTAL_CALLS_ALLOWED -> totalCallsAllowed = reader.readNumber();
+                    case THROTTLE_CURRENT_CALLS -> currentCalls = reader.readNumber();
+                    case THROTTLE_EXPIRATION_TIME -> expirationTime = reader.readNumber();
+                    case THROTTLE_LEASE -> lease = reader.readNumber();
+                    default -> reader.skip(tag & 0x7);
+                }
+            }
+            return new ThrottleServiceObject(serviceId, consumerKey, totalCallsAllowed, currentCalls, expirationTime, lease);
+        }
+
+        private void skip(int wireType) {
+            if(wireType == VARINT) {
+                readVarint();
+            } else if(wireType == LENGTH_DELIMITED) {
+                position += readLength();
+            } else {
+                throw new IllegalArgumentException("Unknown wire type " + wireType + " in CAPI event");
+            }
+        }
+    }
+}
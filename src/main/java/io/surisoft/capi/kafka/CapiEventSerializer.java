@@ -7,9 +7,20 @@ import org.apache.kafka.common.serialization.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+
 public class CapiEventSerializer implements Serializer<CapiEvent> {
+    public static final String SERIALIZATION_CONFIG = "capi.kafka.serialization";
+    public static final String BINARY_SERIALIZATION = "binary";
     private static final Logger log = LoggerFactory.getLogger(CapiEventSerializer.class);
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private boolean binary;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        binary = BINARY_SERIALIZATION.equals(configs.get(SERIALIZATION_CONFIG));
+        log.debug("CAPI events are serialized as {}", binary ? "binary" : "json");
+    }
 
     @Override
     public byte[] serialize(String topic, CapiEvent data) {
@@ -18,9 +29,12 @@ public class CapiEventSerializer implements Serializer<CapiEvent> {
                 log.warn("Null received at serializing");
                 return null;
             }
+            if(binary) {
+                return CapiEventCodec.encode(data);
+            }
             return objectMapper.writeValueAsBytes(data);
         } catch (Exception e) {
             throw new SerializationException("Error when serializing MessageDto to byte[]");
         }
     }
-}
\ No newline at end of file
+}
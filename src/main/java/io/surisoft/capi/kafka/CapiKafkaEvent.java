@@ -1,6 +1,7 @@
 package io.surisoft.capi.kafka;
 
 import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.SlidingWindowCounter;
 import io.surisoft.capi.schema.ThrottleServiceObject;
 import org.cache2k.Cache;
 import org.slf4j.Logger;
@@ -14,14 +15,15 @@ import org.springframework.context.annotation.Configuration;
 public class CapiKafkaEvent {
 
     public static final String THROTTLING_EVENT_TYPE = "throttling";
+    public static final String THROTTLING_BATCH_EVENT_TYPE = "throttling-batch";
 
     private final CapiInstance capiInstance;
-    private final Cache<String, ThrottleServiceObject> throttleServiceObjectCache;
+    private final Cache<String, SlidingWindowCounter> throttleCounterCache;
 
     public CapiKafkaEvent(CapiInstance capiInstance,
-                          Cache<String, ThrottleServiceObject> throttleServiceObjectCache) {
+                          Cache<String, SlidingWindowCounter> throttleCounterCache) {
         this.capiInstance = capiInstance;
-        this.throttleServiceObjectCache = throttleServiceObjectCache;
+        this.throttleCounterCache = throttleCounterCache;
 
         log.trace("CAPI Instance ID: {}", capiInstance.uuid());
 
@@ -42,12 +44,26 @@ public class CapiKafkaEvent {
             log.trace("{}", incomingEvent.getThrottleServiceObject().getCurrentCalls());
             log.trace("{}", incomingEvent.getThrottleServiceObject().getExpirationTime());
 
-            throttleServiceObjectCache.put(incomingEvent.getKey(), incomingEvent.getThrottleServiceObject());
+            mergeThrottleServiceObject(incomingEvent.getInstanceId(), incomingEvent.getThrottleServiceObject());
+            return;
+        }
+        if(incomingEvent.getType().equals(THROTTLING_BATCH_EVENT_TYPE) && incomingEvent.getThrottleServiceObjects() != null) {
+            log.trace("Event {} carries {} throttling counters", incomingEvent.getId(), incomingEvent.getThrottleServiceObjects().size());
+            incomingEvent.getThrottleServiceObjects().forEach(throttleServiceObject -> mergeThrottleServiceObject(incomingEvent.getInstanceId(), throttleServiceObject));
             return;
         }
         log.trace("Received event: {}", incomingEvent);
     }
 
+    private void mergeThrottleServiceObject(String instanceId, ThrottleServiceObject throttleServiceObject) {
+        //Counters are created on the first local call, as only then the window duration is known
+        SlidingWindowCounter slidingWindowCounter = throttleCounterCache.peek(throttleServiceObject.getCacheKey());
+        if(slidingWindowCounter != null && slidingWindowCounter.merge(instanceId, throttleServiceObject)) {
+            //The weight is only computed on writes, the counter grew with the new instance
+            throttleCounterCache.replaceIfEquals(throttleServiceObject.getCacheKey(), slidingWindowCounter, slidingWindowCounter);
+        }
+    }
+
     @Bean(name = "capiKafkaEventProcessor")
     public CapiKafkaEvent capiKafkaEvent() {
         return this;
@@ -8,7 +8,6 @@ import org.apache.kafka.common.serialization.Deserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class CapiKafkaEventDeserializer implements Deserializer<CapiEvent> {
@@ -26,7 +25,11 @@ public class CapiKafkaEventDeserializer implements Deserializer<CapiEvent> {
                 log.warn("Null received at deserializing");
                 return null;
             }
-            return objectMapper.readValue(new String(data, StandardCharsets.UTF_8), CapiEvent.class);
+            //Binary events are recognized by their first byte, JSON is still accepted from instances not using it
+            if(CapiEventCodec.isBinary(data)) {
+                return CapiEventCodec.decode(data);
+            }
+            return objectMapper.readValue(data, CapiEvent.class);
         } catch (Exception e) {
             throw new SerializationException("Error when deserializing byte[] to MessageDto");
         }
@@ -0,0 +1,152 @@
+package io.surisoft.capi.kafka;
+
+import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.SlidingWindowCounter;
+import io.surisoft.capi.schema.ThrottleServiceObject;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.common.PartitionInfo;
+import org.cache2k.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Replicates the throttling counters of this instance to the other CAPI instances
+@Component
+@ConditionalOnProperty(prefix = "capi.throttling", name = "enabled", havingValue = "true")
+public class ThrottleReplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ThrottleReplicator.class);
+    private static final long PARTITION_COUNT_REFRESH_INTERVAL = 60000;
+    private final Cache<String, SlidingWindowCounter> throttleCounterCache;
+    private final KafkaTemplate<String, CapiEvent> kafkaTemplate;
+    private final String capiKafkaTopic;
+    private final CapiInstance capiInstance;
+    private final int batchSize;
+    private final boolean legacyEvents;
+    private final Set<String> changedKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    //Full batches are sent from here, the request threads never wait on Kafka
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "capi-throttle-replication");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Only read and written while flushing
+    private int partitionCount;
+    private long partitionCountRefreshAt;
+
+    public ThrottleReplicator(Cache<String, SlidingWindowCounter> throttleCounterCache,
+                              KafkaTemplate<String, CapiEvent> kafkaTemplate,
+                              @Value("${capi.kafka.topic}") String capiKafkaTopic,
+                              CapiInstance capiInstance,
+                              @Value("${capi.throttling.replication.batch-size}") int batchSize,
+                              @Value("${capi.throttling.replication.legacy-events}") boolean legacyEvents) {
+        this.throttleCounterCache = throttleCounterCache;
+        this.kafkaTemplate = kafkaTemplate;
+        this.capiKafkaTopic = capiKafkaTopic;
+        this.capiInstance = capiInstance;
+        this.batchSize = Math.max(1, batchSize);
+        this.legacyEvents = legacyEvents;
+    }
+
+    public void markChanged(String cacheKey) {
+        changedKeys.add(cacheKey);
+        if(changedKeys.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+    }
+
+    public void flush() {
+        if(!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            int partitionCount = partitionCount(now);
+            Map<Integer, List<ThrottleServiceObject>> batches = new HashMap<>();
+            Iterator<String> changedKeysIterator = changedKeys.iterator();
+            while(changedKeysIterator.hasNext()) {
+                //Removed before the snapshot, so a call after the snapshot marks the key again
+                String cacheKey = changedKeysIterator.next();
+                changedKeysIterator.remove();
+                SlidingWindowCounter slidingWindowCounter = throttleCounterCache.peek(cacheKey);
+                if(slidingWindowCounter == null) {
+                    continue;
+                }
+                int partition = partitionCount > 0 ? Math.floorMod(cacheKey.hashCode(), partitionCount) : -1;
+                if(legacyEvents) {
+                    sendToKafka(partition, slidingWindowCounter.snapshot(now));
+                    continue;
+                }
+                List<ThrottleServiceObject> throttleServiceObjects = batches.computeIfAbsent(partition, k -> new ArrayList<>());
+                throttleServiceObjects.add(slidingWindowCounter.snapshot(now));
+                if(throttleServiceObjects.size() == batchSize) {
+                    sendToKafka(partition, throttleServiceObjects);
+                    batches.remove(partition);
+                }
+            }
+            batches.forEach(this::sendToKafka);
+        } catch(Exception e) {
+            log.warn(e.getMessage(), e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    //The metadata lookup can block, so the partitions of the topic are only read again after a while
+    private int partitionCount(long now) {
+        if(now < partitionCountRefreshAt) {
+            return partitionCount;
+        }
+        partitionCountRefreshAt = now + PARTITION_COUNT_REFRESH_INTERVAL;
+        try {
+            List<PartitionInfo> partitionInfos = kafkaTemplate.partitionsFor(capiKafkaTopic);
+            partitionCount = partitionInfos == null ? 0 : partitionInfos.size();
+        } catch(Exception e) {
+            log.debug("Partitions of topic {} not available: {}", capiKafkaTopic, e.getMessage());
+            partitionCount = 0;
+        }
+        return partitionCount;
+    }
+
+    private void sendToKafka(int partition, List<ThrottleServiceObject> throttleServiceObjects) {
+        CapiEvent capiEvent = new CapiEvent();
+        capiEvent.setId(UUID.randomUUID().toString());
+        capiEvent.setInstanceId(capiInstance.uuid());
+        capiEvent.setType(CapiKafkaEvent.THROTTLING_BATCH_EVENT_TYPE);
+        capiEvent.setThrottleServiceObjects(throttleServiceObjects);
+        log.trace("Sending Kafka CAPI event: {} with {} throttling counters", capiEvent.getId(), throttleServiceObjects.size());
+        kafkaTemplate.send(capiKafkaTopic, partition < 0 ? null : partition, null, capiEvent);
+    }
+
+    private void sendToKafka(int partition, ThrottleServiceObject throttleServiceObject) {
+        CapiEvent capiEvent = new CapiEvent();
+        capiEvent.setId(UUID.randomUUID().toString());
+        capiEvent.setInstanceId(capiInstance.uuid());
+        capiEvent.setKey(throttleServiceObject.getCacheKey());
+        //Without the lease, older instances fail on properties they do not know
+        capiEvent.setThrottleServiceObject(new ThrottleServiceObject(throttleServiceObject.getServiceId(), throttleServiceObject.getConsumerKey(),
+                throttleServiceObject.getTotalCallsAllowed(), throttleServiceObject.getCurrentCalls(), throttleServiceObject.getExpirationTime()));
+        capiEvent.setType(CapiKafkaEvent.THROTTLING_EVENT_TYPE);
+        log.trace("Sending Kafka CAPI event: {}", capiEvent.getId());
+        kafkaTemplate.send(capiKafkaTopic, partition < 0 ? null : partition, null, capiEvent);
+    }
+}
@@ -0,0 +1,143 @@
+package io.surisoft.capi.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.schema.Mapping;
+import org.apache.camel.CamelContext;
+import org.apache.camel.component.http.HttpEndpoint;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+@Component
+@Endpoint(id = "routepool")
+@ConditionalOnProperty(prefix = "capi.route.pool", name = "enabled", havingValue = "true")
+public class RoutePool {
+
+    private static final String LEASED_METRIC = "capi_route_pool_leased";
+    private static final String AVAILABLE_METRIC = "capi_route_pool_available";
+    private static final String PENDING_METRIC = "capi_route_pool_pending";
+    private static final long SNAPSHOT_TTL = 1000;
+    private final MeterRegistry meterRegistry;
+    private final CamelContext camelContext;
+    private final Map<String, Set<String>> hostsByService = new HashMap<>();
+    private final Map<String, List<Meter>> gaugesByHost = new HashMap<>();
+    private volatile StatsSnapshot statsSnapshot = new StatsSnapshot(0, List.of());
+
+    public RoutePool(MeterRegistry meterRegistry,
+                     CamelContext camelContext) {
+        this.meterRegistry = meterRegistry;
+        this.camelContext = camelContext;
+    }
+
+    //Registers the gauges of the hosts a service routes to, and removes the ones no service routes to anymore
+    public synchronized void registerHosts(String serviceId, Collection<Mapping> mappings) {
+        Set<String> hostTags = new HashSet<>();
+        for(Mapping mapping : mappings) {
+            String host = mapping.getHostname();
+            int port = mapping.getPort();
+            String hostTag = port > -1 ? host + ":" + port : host;
+            hostTags.add(hostTag);
+            gaugesByHost.computeIfAbsent(hostTag, k -> List.of(
+                    registerGauge(LEASED_METRIC, hostTag, host, port, PoolStats::getLeased),
+                    registerGauge(AVAILABLE_METRIC, hostTag, host, port, PoolStats::getAvailable),
+                    registerGauge(PENDING_METRIC, hostTag, host, port, PoolStats::getPending)));
+        }
+        hostsByService.put(serviceId, hostTags);
+        removeUnusedGauges();
+    }
+
+    public synchronized void unregisterHosts(String serviceId) {
+        if(hostsByService.remove(serviceId) != null) {
+            removeUnusedGauges();
+        }
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Integer>> getRoutePoolStats() {
+        Map<String, Map<String, Integer>> routePoolStats = new TreeMap<>();
+        for(ConnPoolControl<HttpRoute> connPoolControl : getConnectionPools()) {
+            for(HttpRoute httpRoute : connPoolControl.getRoutes()) {
+                PoolStats poolStats = connPoolControl.getStats(httpRoute);
+                Map<String, Integer> hostStats = routePoolStats.computeIfAbsent(httpRoute.getTargetHost().toHostString(), k -> new LinkedHashMap<>());
+                hostStats.merge("leased", poolStats.getLeased(), Integer::sum);
+                hostStats.merge("available", poolStats.getAvailable(), Integer::sum);
+                hostStats.merge("pending", poolStats.getPending(), Integer::sum);
+            }
+        }
+        return routePoolStats;
+    }
+
+    private void removeUnusedGauges() {
+        Set<String> usedHosts = new HashSet<>();
+        hostsByService.values().forEach(usedHosts::addAll);
+        gaugesByHost.entrySet().removeIf(entry -> {
+            if(usedHosts.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().forEach(meterRegistry::remove);
+            return true;
+        });
+    }
+
+    private Meter registerGauge(String name, String hostTag, String host, int port, ToIntFunction<PoolStats> statsFunction) {
+        return Gauge.builder(name, this, routePool -> routePool.sumStats(host, port, statsFunction))
+                .tag("host", hostTag)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    private int sumStats(String host, int port, ToIntFunction<PoolStats> statsFunction) {
+        int total = 0;
+        for(RouteStats routeStats : getStatsSnapshot()) {
+            if(routeStats.host().equalsIgnoreCase(host) && (port < 0 || routeStats.port() == port)) {
+                total += statsFunction.applyAsInt(routeStats.poolStats());
+            }
+        }
+        return total;
+    }
+
+    //The pool stats of every route, read once for all the gauges of a scrape
+    List<RouteStats> getStatsSnapshot() {
+        StatsSnapshot currentSnapshot = statsSnapshot;
+        long now = System.currentTimeMillis();
+        if(now - currentSnapshot.createdAt() < SNAPSHOT_TTL) {
+            return currentSnapshot.routeStats();
+        }
+        List<RouteStats> routeStats = new ArrayList<>();
+        for(ConnPoolControl<HttpRoute> connPoolControl : getConnectionPools()) {
+            for(HttpRoute httpRoute : connPoolControl.getRoutes()) {
+                routeStats.add(new RouteStats(httpRoute.getTargetHost().getHostName(), httpRoute.getTargetHost().getPort(), connPoolControl.getStats(httpRoute)));
+            }
+        }
+        statsSnapshot = new StatsSnapshot(now, routeStats);
+        return routeStats;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<ConnPoolControl<HttpRoute>> getConnectionPools() {
+        Set<ConnPoolControl<HttpRoute>> connectionPools = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(org.apache.camel.Endpoint endpoint : camelContext.getEndpoints()) {
+            if(endpoint instanceof HttpEndpoint httpEndpoint) {
+                HttpClientConnectionManager connectionManager = httpEndpoint.getClientConnectionManager();
+                if(connectionManager instanceof ConnPoolControl<?> connPoolControl) {
+                    connectionPools.add((ConnPoolControl<HttpRoute>) connPoolControl);
+                }
+            }
+        }
+        return connectionPools;
+    }
+
+    record RouteStats(String host, int port, PoolStats poolStats) {}
+
+    private record StatsSnapshot(long createdAt, List<RouteStats> routeStats) {}
+}
@@ -4,6 +4,7 @@ import io.surisoft.capi.processor.MetricsProcessor;
 import io.surisoft.capi.schema.RouteDetailsEndpointInfo;
 import io.surisoft.capi.schema.RouteEndpointInfo;
 import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.service.OutlierDetector;
 import io.surisoft.capi.utils.Constants;
 import io.surisoft.capi.utils.RouteUtils;
 import io.surisoft.capi.utils.ServiceUtils;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Component
 @Endpoint(id = "routes")
@@ -26,17 +28,20 @@ public class Routes {
     private final CamelContext camelContext;
     private final RouteUtils routeUtils;
     private final MetricsProcessor metricsProcessor;
+    private final Optional<OutlierDetector> outlierDetector;
 
     public Routes(ServiceUtils serviceUtils,
                   Cache<String, Service> serviceCache,
                   CamelContext camelContext,
                   RouteUtils routeUtils,
-                  MetricsProcessor metricsProcessor) {
+                  MetricsProcessor metricsProcessor,
+                  Optional<OutlierDetector> outlierDetector) {
         this.serviceUtils = serviceUtils;
         this.serviceCache = serviceCache;
         this.camelContext = camelContext;
         this.routeUtils = routeUtils;
         this.metricsProcessor = metricsProcessor;
+        this.outlierDetector = outlierDetector;
     }
 
     @ReadOperation
@@ -55,9 +60,18 @@ public class Routes {
                 .toList();
         for(RouteEndpointInfo routeEndpointInfo : routeEndpointInfoList) {
             if(!Constants.CAPI_INTERNAL_ROUTES_PREFIX.contains(routeEndpointInfo.getId()))  {
-                detailInfoList.add(new RouteDetailsEndpointInfo(camelContext, camelContext.getRoute(routeEndpointInfo.getId())));
+                RouteDetailsEndpointInfo routeDetailsEndpointInfo = new RouteDetailsEndpointInfo(camelContext, camelContext.getRoute(routeEndpointInfo.getId()));
+                outlierDetector.ifPresent(detector -> routeDetailsEndpointInfo.setEjectedHosts(detector.getEjectedHosts(getServiceId(routeEndpointInfo.getId()))));
+                detailInfoList.add(routeDetailsEndpointInfo);
             }
         }
         return detailInfoList;
     }
+
+    //Route ids are [rd_]name:group:method, the service id is name:group
+    private String getServiceId(String routeId) {
+        String serviceRouteId = routeId.startsWith(Constants.CAMEL_REST_PREFIX) ? routeId.substring(Constants.CAMEL_REST_PREFIX.length()) : routeId;
+        int methodSeparator = serviceRouteId.lastIndexOf(':');
+        return methodSeparator > 0 ? serviceRouteId.substring(0, methodSeparator) : serviceRouteId;
+    }
 }
\ No newline at end of file
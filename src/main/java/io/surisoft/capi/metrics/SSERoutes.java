@@ -1,5 +1,6 @@
 package io.surisoft.capi.metrics;
 
+import io.surisoft.capi.schema.ClientRegistry;
 import io.surisoft.capi.schema.SSEClient;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
@@ -12,14 +13,14 @@ import java.util.Optional;
 @Endpoint(id = "sseroutes")
 public class SSERoutes {
 
-    private final Optional<Map<String, SSEClient>> sseClientMap;
+    private final Optional<ClientRegistry<SSEClient>> sseClientRegistry;
 
-    public SSERoutes(Optional<Map<String, SSEClient>> sseClientMap) {
-        this.sseClientMap = sseClientMap;
+    public SSERoutes(Optional<ClientRegistry<SSEClient>> sseClientRegistry) {
+        this.sseClientRegistry = sseClientRegistry;
     }
 
     @ReadOperation
     public Map<String, SSEClient> getAllSSERoutesInfo() {
-        return sseClientMap.orElse(null);
+        return sseClientRegistry.map(ClientRegistry::getClients).orElse(null);
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package io.surisoft.capi.metrics;
 
+import io.surisoft.capi.schema.ClientRegistry;
 import io.surisoft.capi.schema.WebsocketClient;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
@@ -12,14 +13,14 @@ import java.util.Optional;
 @Endpoint(id = "wsroutes")
 public class WSRoutes {
 
-    private final Optional<Map<String, WebsocketClient>> websocketClientMap;
+    private final Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry;
 
-    public WSRoutes(Optional<Map<String, WebsocketClient>> websocketClientMap) {
-        this.websocketClientMap = websocketClientMap;
+    public WSRoutes(Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry) {
+        this.websocketClientRegistry = websocketClientRegistry;
     }
 
     @ReadOperation
     public Map<String, WebsocketClient> getAllWebsocketRoutesInfo() {
-        return websocketClientMap.orElse(null);
+        return websocketClientRegistry.map(ClientRegistry::getClients).orElse(null);
     }
 }
\ No newline at end of file
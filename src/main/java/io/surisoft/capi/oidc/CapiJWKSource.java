@@ -0,0 +1,190 @@
+package io.surisoft.capi.oidc;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.surisoft.capi.configuration.CapiSslContextHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Keys of every oauth2 provider indexed by kid, refreshed in the background honoring ETag and Cache-Control
+public class CapiJWKSource implements JWKSource<SecurityContext>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CapiJWKSource.class);
+    private static final Pattern MAX_AGE_PATTERN = Pattern.compile("max-age=(\\d+)");
+    private final List<ProviderKeys> providerKeysList = new ArrayList<>();
+    private final HttpClient httpClient;
+    private final long refreshInterval;
+    private final long minRefetchInterval;
+    private final AtomicLong lastForcedRefresh = new AtomicLong();
+    private final ScheduledExecutorService scheduledExecutorService;
+    private volatile Map<String, JWK> keyIdIndex = Collections.emptyMap();
+    private volatile JWKSet jwkSet = new JWKSet();
+
+    public CapiJWKSource(List<String> jwkEndpoints, Optional<CapiSslContextHolder> capiSslContextHolder, long refreshInterval, long minRefetchInterval) {
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10));
+        capiSslContextHolder.ifPresent(sslContextHolder -> httpClientBuilder.sslContext(sslContextHolder.getSslContext()));
+        this.httpClient = httpClientBuilder.build();
+        this.refreshInterval = refreshInterval;
+        this.minRefetchInterval = minRefetchInterval;
+        for(String jwkEndpoint : jwkEndpoints) {
+            providerKeysList.add(new ProviderKeys(jwkEndpoint));
+        }
+        refresh(true);
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capi-jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutorService.scheduleWithFixedDelay(() -> refresh(false), minRefetchInterval, minRefetchInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext securityContext) {
+        JWKMatcher jwkMatcher = jwkSelector.getMatcher();
+        Set<String> keyIds = jwkMatcher.getKeyIDs();
+        if(keyIds == null || keyIds.size() != 1) {
+            return jwkSelector.select(jwkSet);
+        }
+        String keyId = keyIds.iterator().next();
+        JWK jwk = keyIdIndex.get(keyId);
+        if(jwk == null) {
+            //Answered right away, tokens of a rotated key verify once the background refetch is done
+            forceRefresh(keyId);
+            return Collections.emptyList();
+        }
+        if(jwkMatcher.matches(jwk)) {
+            return List.of(jwk);
+        }
+        return Collections.emptyList();
+    }
+
+    public int getKeyCount() {
+        return jwkSet.getKeys().size();
+    }
+
+    @Override
+    public void close() {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    private void forceRefresh(String keyId) {
+        long now = System.currentTimeMillis();
+        long lastRefresh = lastForcedRefresh.get();
+        if(now - lastRefresh < minRefetchInterval || !lastForcedRefresh.compareAndSet(lastRefresh, now)) {
+            return;
+        }
+        //Never on the calling thread, it can be a request or an Undertow IO thread
+        try {
+            scheduledExecutorService.execute(() -> {
+                log.info("Unknown key id {}, refreshing the JWKS", keyId);
+                refresh(true);
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("JWKS refresh rejected, the source is closed");
+        }
+    }
+
+    private synchronized void refresh(boolean force) {
+        boolean changed = false;
+        long now = System.currentTimeMillis();
+        for(ProviderKeys providerKeys : providerKeysList) {
+            if(force || now >= providerKeys.nextRefresh) {
+                changed |= fetch(providerKeys, now);
+            }
+        }
+        if(changed) {
+            rebuildIndex();
+        }
+    }
+
+    private boolean fetch(ProviderKeys providerKeys, long now) {
+        try {
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                    .uri(new URI(providerKeys.jwkEndpoint))
+                    .timeout(Duration.ofSeconds(10));
+            if(providerKeys.eTag != null) {
+                requestBuilder.header("If-None-Match", providerKeys.eTag);
+            }
+            HttpResponse<InputStream> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+            providerKeys.nextRefresh = now + getRefreshDelay(response);
+            try(InputStream responseInputStream = response.body()) {
+                if(response.statusCode() == 304) {
+                    return false;
+                }
+                if(response.statusCode() == 200) {
+                    providerKeys.jwkSet = JWKSet.load(responseInputStream);
+                    providerKeys.eTag = response.headers().firstValue("ETag").orElse(null);
+                    log.debug("Loaded {} keys from {}", providerKeys.jwkSet.getKeys().size(), providerKeys.jwkEndpoint);
+                    return true;
+                }
+            }
+            log.warn("Unexpected status {} while loading keys from {}", response.statusCode(), providerKeys.jwkEndpoint);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(Exception e) {
+            log.warn("Could not load keys from {}: {}", providerKeys.jwkEndpoint, e.getMessage());
+            providerKeys.nextRefresh = now + minRefetchInterval;
+        }
+        return false;
+    }
+
+    private long getRefreshDelay(HttpResponse<?> response) {
+        Optional<String> cacheControl = response.headers().firstValue("Cache-Control");
+        if(cacheControl.isPresent()) {
+            Matcher matcher = MAX_AGE_PATTERN.matcher(cacheControl.get());
+            if(matcher.find()) {
+                long maxAge = TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+                return Math.min(Math.max(maxAge, minRefetchInterval), refreshInterval);
+            }
+        }
+        return refreshInterval;
+    }
+
+    private void rebuildIndex() {
+        List<JWK> jwkList = new ArrayList<>();
+        Map<String, JWK> newKeyIdIndex = new HashMap<>();
+        for(ProviderKeys providerKeys : providerKeysList) {
+            if(providerKeys.jwkSet != null) {
+                for(JWK jwk : providerKeys.jwkSet.getKeys()) {
+                    jwkList.add(jwk);
+                    if(jwk.getKeyID() != null) {
+                        newKeyIdIndex.putIfAbsent(jwk.getKeyID(), jwk);
+                    }
+                }
+            }
+        }
+        jwkSet = new JWKSet(jwkList);
+        keyIdIndex = Map.copyOf(newKeyIdIndex);
+    }
+
+    private static class ProviderKeys {
+        private final String jwkEndpoint;
+        private volatile JWKSet jwkSet;
+        private volatile String eTag;
+        private volatile long nextRefresh;
+
+        ProviderKeys(String jwkEndpoint) {
+            this.jwkEndpoint = jwkEndpoint;
+        }
+    }
+}
@@ -7,7 +7,9 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import io.surisoft.capi.schema.SSEClient;
 import io.surisoft.capi.schema.WebsocketClient;
+import io.surisoft.capi.utils.Constants;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
 import io.undertow.util.HttpString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,8 @@ import java.util.Objects;
 
 public class SSEAuthorization {
     private static final Logger log = LoggerFactory.getLogger(SSEAuthorization.class);
+    //The azp of a validated token, the SSE stream limits count the streams of each consumer
+    public static final AttachmentKey<String> CONSUMER = AttachmentKey.create(String.class);
     private final List<DefaultJWTProcessor<SecurityContext>> jwtProcessorList;
 
     public SSEAuthorization(List<DefaultJWTProcessor<SecurityContext>> jwtProcessorList) {
@@ -52,7 +56,11 @@ public class SSEAuthorization {
         }
         try {
             JWTClaimsSet jwtClaimsSet = tryToValidateToken(bearerToken);
-            Map<String, Object> claimSetMap = Objects.requireNonNull(jwtClaimsSet).getJSONObjectClaim(Oauth2Constants.REALMS_CLAIM);
+            String consumer = Objects.requireNonNull(jwtClaimsSet).getStringClaim(Constants.AUTHORIZED_PARTY);
+            if(consumer != null) {
+                httpServerExchange.putAttachment(CONSUMER, consumer);
+            }
+            Map<String, Object> claimSetMap = jwtClaimsSet.getJSONObjectClaim(Oauth2Constants.REALMS_CLAIM);
             if(claimSetMap != null && claimSetMap.containsKey(Oauth2Constants.ROLES_CLAIM)) {
                 List<String> roleList = (List<String>) claimSetMap.get(Oauth2Constants.ROLES_CLAIM);
                 for(String claimRole : roleList) {
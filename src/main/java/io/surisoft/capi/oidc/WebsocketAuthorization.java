@@ -5,6 +5,7 @@ import com.nimbusds.jose.proc.BadJOSEException;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.surisoft.capi.schema.GrpcClient;
 import io.surisoft.capi.schema.WebsocketClient;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HttpString;
@@ -26,12 +27,21 @@ public class WebsocketAuthorization {
     }
 
     public boolean isAuthorized(WebsocketClient websocketClient, HttpServerExchange httpServerExchange) {
-        if(!websocketClient.requiresSubscription()) {
+        return isAuthorized(websocketClient.requiresSubscription(), websocketClient.getSubscriptionRole(), httpServerExchange);
+    }
+
+    //The gRPC gateway applies the same token checks as the websocket gateway
+    public boolean isAuthorized(GrpcClient grpcClient, HttpServerExchange httpServerExchange) {
+        return isAuthorized(grpcClient.requiresSubscription(), grpcClient.getSubscriptionRole(), httpServerExchange);
+    }
+
+    private boolean isAuthorized(boolean requiresSubscription, String subscriptionRole, HttpServerExchange httpServerExchange) {
+        if(!requiresSubscription) {
             return true;
         }
         if(httpServerExchange.getRequestHeaders().contains(Oauth2Constants.AUTHORIZATION_HEADER)
                 || httpServerExchange.getQueryParameters().containsKey(Oauth2Constants.AUTHORIZATION_QUERY)) {
-            return isApiSubscribed(httpServerExchange, websocketClient.getSubscriptionRole());
+            return isApiSubscribed(httpServerExchange, subscriptionRole);
         }
         return false;
     }
@@ -42,7 +42,7 @@ public class AuthorizationProcessor implements Processor {
             assert service != null;
 
             if(accessToken != null) {
-                if(!httpUtils.isAuthorized(accessToken, contextPath, service, (opaService.orElse(null)))) {
+                if(!httpUtils.isAuthorized(exchange, accessToken, contextPath, service, (opaService.orElse(null)))) {
                     sendException(exchange, "Not subscribed");
                 }
                 httpUtils.propagateAuthorization(exchange, accessToken);
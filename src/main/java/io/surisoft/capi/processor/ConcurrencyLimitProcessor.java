@@ -0,0 +1,147 @@
+package io.surisoft.capi.processor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.schema.CapiRestError;
+import io.surisoft.capi.schema.ConcurrencyLimiter;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.HttpUtils;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.support.SynchronizationAdapter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Caps the in-flight calls of the services flagged with concurrencyLimit
+@Component
+@ConditionalOnProperty(prefix = "capi.concurrency.limit", name = "enabled", havingValue = "true")
+public class ConcurrencyLimitProcessor {
+
+    private final HttpUtils httpUtils;
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+    private final Map<String, List<Meter>> limiterGauges = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+    private final Map<String, String> rejectionBodies = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitProcessor(HttpUtils httpUtils,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${capi.concurrency.limit.initial}") int initialLimit,
+                                     @Value("${capi.concurrency.limit.min}") int minLimit,
+                                     @Value("${capi.concurrency.limit.max}") int maxLimit,
+                                     @Value("${capi.concurrency.limit.latency-tolerance}") double latencyTolerance) {
+        this.httpUtils = httpUtils;
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public void process(Exchange exchange, Service service) {
+        if(exchange.getProperty(Constants.CAPI_REQUEST_REJECTED) != null) {
+            return;
+        }
+        ConcurrencyLimiter concurrencyLimiter = acquire(service);
+        if(concurrencyLimiter == null) {
+            Message message = exchange.getIn();
+            message.setBody(rejectionBody(service));
+            message.setHeader(Exchange.HTTP_RESPONSE_CODE, HttpStatus.SERVICE_UNAVAILABLE.value());
+            message.setHeader(Exchange.CONTENT_TYPE, "application/json");
+            exchange.setProperty(Constants.CAPI_REQUEST_REJECTED, true);
+            return;
+        }
+        long start = System.nanoTime();
+        exchange.getExchangeExtension().addOnCompletion(new SynchronizationAdapter() {
+            @Override
+            public void onDone(Exchange completedExchange) {
+                concurrencyLimiter.release(System.nanoTime() - start, isDropped(completedExchange));
+            }
+        });
+    }
+
+    //Returns the limiter to release the slot to, or null if the call must be shed
+    public ConcurrencyLimiter acquire(Service service) {
+        ConcurrencyLimiter concurrencyLimiter = getConcurrencyLimiter(service);
+        if(concurrencyLimiter.tryAcquire()) {
+            return concurrencyLimiter;
+        }
+        rejectedCounters.computeIfAbsent(service.getId(), serviceId -> Counter.builder("capi_concurrency_limit_rejected")
+                .tag("service", serviceId)
+                .register(meterRegistry)).increment();
+        return null;
+    }
+
+    public ConcurrencyLimiter getConcurrencyLimiter(Service service) {
+        int serviceMaxLimit = service.getServiceMeta().getConcurrencyLimitMax() > 0 ? service.getServiceMeta().getConcurrencyLimitMax() : maxLimit;
+        ConcurrencyLimiter concurrencyLimiter = concurrencyLimiters.computeIfAbsent(service.getId(), serviceId -> {
+            ConcurrencyLimiter newConcurrencyLimiter = new ConcurrencyLimiter(initialLimit, minLimit, serviceMaxLimit, latencyTolerance);
+            limiterGauges.put(serviceId, List.of(
+                    Gauge.builder("capi_concurrency_limit", newConcurrencyLimiter, ConcurrencyLimiter::getLimit)
+                            .tag("service", serviceId)
+                            .strongReference(true)
+                            .register(meterRegistry),
+                    Gauge.builder("capi_concurrency_inflight", newConcurrencyLimiter, ConcurrencyLimiter::getInFlight)
+                            .tag("service", serviceId)
+                            .strongReference(true)
+                            .register(meterRegistry)));
+            return newConcurrencyLimiter;
+        });
+        if(concurrencyLimiter.getMaxLimit() != Math.max(minLimit, serviceMaxLimit)) {
+            concurrencyLimiter.setMaxLimit(serviceMaxLimit);
+        }
+        return concurrencyLimiter;
+    }
+
+    //Drops the limiter and the meters of a service that is no longer deployed
+    public void removeService(String serviceId) {
+        concurrencyLimiters.computeIfPresent(serviceId, (k, concurrencyLimiter) -> {
+            List<Meter> gauges = limiterGauges.remove(serviceId);
+            if(gauges != null) {
+                gauges.forEach(meterRegistry::remove);
+            }
+            return null;
+        });
+        Counter rejectedCounter = rejectedCounters.remove(serviceId);
+        if(rejectedCounter != null) {
+            meterRegistry.remove(rejectedCounter);
+        }
+        rejectionBodies.remove(serviceId);
+    }
+
+    public String rejectionBody(Service service) {
+        return rejectionBodies.computeIfAbsent(service.getId(), serviceId -> {
+            CapiRestError capiRestError = new CapiRestError();
+            capiRestError.setRouteID(serviceId);
+            capiRestError.setErrorCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+            capiRestError.setErrorMessage("Service overloaded");
+            return httpUtils.proxyErrorMapper(capiRestError);
+        });
+    }
+
+    //Failures and gateway timeouts count as overload, other error codes are answers of a healthy backend
+    public static boolean isOverloaded(int responseCode) {
+        return responseCode == HttpStatus.SERVICE_UNAVAILABLE.value() || responseCode == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+    private boolean isDropped(Exchange exchange) {
+        if(exchange.isFailed() || exchange.getProperty(Exchange.EXCEPTION_CAUGHT) != null) {
+            return true;
+        }
+        Integer responseCode = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        return responseCode != null && isOverloaded(responseCode);
+    }
+}
@@ -0,0 +1,340 @@
+package io.surisoft.capi.processor;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.CamelContext;
+import org.apache.camel.CamelContextAware;
+import org.apache.camel.Exchange;
+import org.apache.camel.Traceable;
+import org.apache.camel.processor.loadbalancer.LoadBalancerSupport;
+import org.apache.camel.support.ExchangeHelper;
+import org.apache.camel.support.MessageHelper;
+import org.apache.camel.util.IOHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Fail over load balancer picking the less loaded of two random backends
+public class LatencyAwareLoadBalancer extends LoadBalancerSupport implements Traceable, CamelContextAware {
+    private static final Logger log = LoggerFactory.getLogger(LatencyAwareLoadBalancer.class);
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private CamelContext camelContext;
+    private final int maximumFailoverAttempts;
+    private final ScheduledExecutorService hedgingExecutor;
+    private final Executor callExecutor;
+    private final long minimumHedgingDelay;
+    private final Map<AsyncProcessor, EndpointStatistics> statistics = new ConcurrentHashMap<>();
+    private final LatencyWindow latencyWindow = new LatencyWindow();
+
+    public LatencyAwareLoadBalancer(int maximumFailoverAttempts, ScheduledExecutorService hedgingExecutor, Executor callExecutor, long minimumHedgingDelay) {
+        this.maximumFailoverAttempts = maximumFailoverAttempts;
+        this.hedgingExecutor = hedgingExecutor;
+        this.callExecutor = callExecutor;
+        this.minimumHedgingDelay = minimumHedgingDelay;
+    }
+
+    @Override
+    public boolean process(Exchange exchange, AsyncCallback callback) {
+        AsyncProcessor[] processors = doGetProcessors();
+        exchange.getContext().getCamelContextExtension().getReactiveExecutor()
+                .schedule(new State(exchange, callback, processors)::run);
+        return false;
+    }
+
+    @Override
+    public boolean isRunAllowed() {
+        // determine if we can still run, or the camel context is forcing a shutdown
+        boolean forceShutdown = camelContext.getShutdownStrategy().isForceShutdown();
+        if (forceShutdown) {
+            log.trace("Run not allowed as ShutdownStrategy is forcing shutting down");
+        }
+        return !forceShutdown && super.isRunAllowed();
+    }
+
+    @Override
+    public void removeProcessor(AsyncProcessor processor) {
+        super.removeProcessor(processor);
+        statistics.remove(processor);
+    }
+
+    protected class State {
+        final Exchange exchange;
+        final AsyncCallback callback;
+        final AsyncProcessor[] processors;
+        final boolean[] tried;
+        final boolean hedging;
+        int failoverAttempts;
+        int pending;
+        boolean done;
+        Exchange lastFailure;
+        Future<?> hedge;
+
+        public State(Exchange exchange, AsyncCallback callback, AsyncProcessor[] processors) {
+            this.exchange = exchange;
+            this.callback = callback;
+            this.processors = processors;
+            this.tried = new boolean[processors.length];
+            this.hedging = hedgingExecutor != null && processors.length > 1
+                    && "GET".equals(exchange.getIn().getHeader(Exchange.HTTP_METHOD, String.class));
+        }
+
+        public void run() {
+            int index;
+            synchronized(this) {
+                if(processors.length == 0 || !isRunAllowed()) {
+                    log.trace("Run not allowed, will reject executing exchange: {}", exchange);
+                    if(exchange.getException() == null) {
+                        exchange.setException(new RejectedExecutionException());
+                    }
+                    done = true;
+                    callback.done(false);
+                    return;
+                }
+                index = choose();
+                pending++;
+                if(hedging && failoverAttempts == 0) {
+                    long hedgingDelay = latencyWindow.getHedgingDelay(minimumHedgingDelay);
+                    if(hedgingDelay > 0) {
+                        hedge = hedgingExecutor.schedule(this::hedge, hedgingDelay, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+            send(index);
+        }
+
+        private void hedge() {
+            int index;
+            synchronized(this) {
+                if(done || !hasUntried()) {
+                    return;
+                }
+                index = choose();
+                pending++;
+            }
+            log.debug("Hedging exchangeId: {} to {}", exchange.getExchangeId(), processors[index]);
+            send(index);
+        }
+
+        private void send(int index) {
+            if(hedging) {
+                //The HTTP producer blocks, the calling thread must not make the call
+                try {
+                    callExecutor.execute(() -> call(index));
+                } catch (RejectedExecutionException e) {
+                    EndpointStatistics endpointStatistics = statistics.computeIfAbsent(processors[index], p -> new EndpointStatistics());
+                    Exchange copy = prepareExchange(exchange);
+                    copy.setException(e);
+                    onComplete(copy, endpointStatistics, endpointStatistics.start());
+                }
+            } else {
+                call(index);
+            }
+        }
+
+        private void call(int index) {
+            AsyncProcessor processor = processors[index];
+            EndpointStatistics endpointStatistics = statistics.computeIfAbsent(processor, p -> new EndpointStatistics());
+            Exchange copy = prepareExchange(exchange);
+            long start = endpointStatistics.start();
+            processor.process(copy, doneSync -> onComplete(copy, endpointStatistics, start));
+        }
+
+        private void onComplete(Exchange copy, EndpointStatistics endpointStatistics, long start) {
+            boolean failed = copy.getException() != null;
+            long latency = endpointStatistics.end(start, failed);
+            boolean failover = false;
+            synchronized(this) {
+                pending--;
+                if(done) {
+                    discard(copy);
+                    return;
+                }
+                if(!failed) {
+                    latencyWindow.record(latency);
+                    finish(copy);
+                    return;
+                }
+                if(lastFailure != null) {
+                    discard(lastFailure);
+                }
+                lastFailure = copy;
+                if(pending > 0) {
+                    //A hedged call is still running, it may still answer
+                    return;
+                }
+                if(failoverAttempts < maximumFailoverAttempts && hasUntried()) {
+                    failoverAttempts++;
+                    failover = true;
+                } else {
+                    finish(copy);
+                }
+            }
+            if(failover) {
+                log.debug("Failing over exchangeId: {} after {}", exchange.getExchangeId(), copy.getException().getMessage());
+                exchange.getContext().getCamelContextExtension().getReactiveExecutor().schedule(this::run);
+            }
+        }
+
+        private void finish(Exchange copy) {
+            done = true;
+            if(hedge != null) {
+                hedge.cancel(false);
+            }
+            ExchangeHelper.copyResults(exchange, copy);
+            callback.done(false);
+        }
+
+        private boolean hasUntried() {
+            for(boolean triedProcessor : tried) {
+                if(!triedProcessor) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //Power of two choices among the processors not tried yet
+        private int choose() {
+            int[] candidates = new int[processors.length];
+            int size = 0;
+            for(int i = 0; i < processors.length; i++) {
+                if(!tried[i]) {
+                    candidates[size++] = i;
+                }
+            }
+            if(size == 0) {
+                //Everything was tried, start over
+                Arrays.fill(tried, false);
+                return choose();
+            }
+            int chosen = candidates[0];
+            if(size > 1) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(size);
+                int second = random.nextInt(size - 1);
+                if(second >= first) {
+                    second++;
+                }
+                chosen = load(candidates[first]) <= load(candidates[second]) ? candidates[first] : candidates[second];
+            }
+            tried[chosen] = true;
+            return chosen;
+        }
+
+        private double load(int index) {
+            EndpointStatistics endpointStatistics = statistics.get(processors[index]);
+            return endpointStatistics == null ? 0 : endpointStatistics.load();
+        }
+    }
+
+    @Override
+    public CamelContext getCamelContext() {
+        return camelContext;
+    }
+
+    @Override
+    public void setCamelContext(CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    protected Exchange prepareExchange(Exchange exchange) {
+        Exchange copy = ExchangeHelper.createCopy(exchange, true);
+        MessageHelper.resetStreamCache(copy.getIn());
+        return copy;
+    }
+
+    //The answer of a losing call is never read, release its connection
+    private void discard(Exchange copy) {
+        if(copy.getMessage().getBody() instanceof Closeable closeable) {
+            IOHelper.close(closeable);
+        }
+    }
+
+    @Override
+    public String getTraceLabel() {
+        return "Latency Aware Load Balancer";
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        statistics.clear();
+    }
+
+    //Peak EWMA latency and outstanding calls of a backend
+    private static final class EndpointStatistics {
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private double latency;
+        private long stamp = System.nanoTime();
+
+        private long start() {
+            outstanding.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private long end(long start, boolean failed) {
+            outstanding.decrementAndGet();
+            long now = System.nanoTime();
+            long sample = failed ? Math.max(now - start, FAILURE_PENALTY_NANOS) : now - start;
+            synchronized(this) {
+                if(sample > latency) {
+                    latency = sample;
+                } else {
+                    double weight = Math.exp(-(now - stamp) / DECAY_NANOS);
+                    latency = latency * weight + sample * (1 - weight);
+                }
+                stamp = now;
+            }
+            return now - start;
+        }
+
+        private synchronized double load() {
+            return (latency + 1) * (outstanding.get() + 1);
+        }
+    }
+
+    //The latest latencies of the route, enough to tell its p95
+    private static final class LatencyWindow {
+        private static final int SIZE = 128;
+        private static final int REFRESH_MASK = 31;
+        private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long percentile95;
+
+        private void record(long latencyNanos) {
+            long current = count.getAndIncrement();
+            samples.set((int) (current % SIZE), latencyNanos);
+            if((current & REFRESH_MASK) == REFRESH_MASK) {
+                int size = (int) Math.min(current + 1, SIZE);
+                long[] sorted = new long[size];
+                for(int i = 0; i < size; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                percentile95 = sorted[(int) Math.ceil(size * 0.95) - 1];
+            }
+        }
+
+        //Milliseconds to wait before hedging, or 0 while there are not enough samples to know the p95
+        private long getHedgingDelay(long minimumHedgingDelay) {
+            if(percentile95 == 0) {
+                return 0;
+            }
+            return Math.max(minimumHedgingDelay, TimeUnit.NANOSECONDS.toMillis(percentile95));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.surisoft.capi.processor;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Immutable segment trie of the OpenAPI paths of a service, compiled once when the route is deployed
+public class OpenApiPathMatcher {
+
+    private static final int GET = 0;
+    private static final int POST = 1;
+    private static final int PUT = 2;
+    private static final int PATCH = 3;
+    private static final int DELETE = 4;
+    private final Node root;
+
+    public OpenApiPathMatcher(OpenAPI openAPI) {
+        BuilderNode builderRoot = new BuilderNode();
+        if(openAPI.getPaths() != null) {
+            for(Map.Entry<String, PathItem> pathEntry : openAPI.getPaths().entrySet()) {
+                BuilderNode builderNode = builderRoot;
+                String definedPath = stripSlashes(pathEntry.getKey());
+                if(!definedPath.isEmpty()) {
+                    for(String segment : definedPath.split("/", -1)) {
+                        builderNode = builderNode.child(segment);
+                    }
+                }
+                builderNode.addOperations(pathEntry.getValue());
+            }
+        }
+        this.root = builderRoot.build();
+    }
+
+    public Operation match(String requestPath, String method) {
+        int methodIndex = methodIndex(method);
+        if(methodIndex < 0) {
+            return null;
+        }
+        if(requestPath == null) {
+            requestPath = "";
+        }
+        int start = 0;
+        int end = requestPath.length();
+        while(start < end && requestPath.charAt(start) == '/') {
+            start++;
+        }
+        while(end > start && requestPath.charAt(end - 1) == '/') {
+            end--;
+        }
+        return find(root, requestPath, start, end, methodIndex);
+    }
+
+    private Operation find(Node node, String path, int position, int end, int methodIndex) {
+        if(position == end) {
+            return node.operations[methodIndex];
+        }
+        int segmentEnd = path.indexOf('/', position);
+        if(segmentEnd < 0 || segmentEnd > end) {
+            segmentEnd = end;
+        }
+        int nextPosition = segmentEnd == end ? end : segmentEnd + 1;
+        Node literalChild = node.literalChild(path, position, segmentEnd);
+        if(literalChild != null) {
+            Operation operation = find(literalChild, path, nextPosition, end, methodIndex);
+            if(operation != null) {
+                return operation;
+            }
+        }
+        if(node.parameterChild != null) {
+            return find(node.parameterChild, path, nextPosition, end, methodIndex);
+        }
+        return null;
+    }
+
+    private static int methodIndex(String method) {
+        if(method == null) {
+            return -1;
+        }
+        if(method.equalsIgnoreCase("get")) {
+            return GET;
+        } else if(method.equalsIgnoreCase("post")) {
+            return POST;
+        } else if(method.equalsIgnoreCase("put")) {
+            return PUT;
+        } else if(method.equalsIgnoreCase("patch")) {
+            return PATCH;
+        } else if(method.equalsIgnoreCase("delete")) {
+            return DELETE;
+        }
+        return -1;
+    }
+
+    private static String stripSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while(start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while(end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    private static boolean isPathParameter(String segment) {
+        return segment.length() >= 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+    }
+
+    private static final class Node {
+        private final String[] literalSegments;
+        private final Node[] literalChildren;
+        private final Node parameterChild;
+        private final Operation[] operations;
+
+        private Node(String[] literalSegments, Node[] literalChildren, Node parameterChild, Operation[] operations) {
+            this.literalSegments = literalSegments;
+            this.literalChildren = literalChildren;
+            this.parameterChild = parameterChild;
+            this.operations = operations;
+        }
+
+        private Node literalChild(String path, int start, int end) {
+            int low = 0;
+            int high = literalSegments.length - 1;
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(literalSegments[middle], path, start, end);
+                if(comparison < 0) {
+                    low = middle + 1;
+                } else if(comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return literalChildren[middle];
+                }
+            }
+            return null;
+        }
+
+        private static int compare(String segment, String path, int start, int end) {
+            int segmentLength = segment.length();
+            int regionLength = end - start;
+            int length = Math.min(segmentLength, regionLength);
+            for(int i = 0; i < length; i++) {
+                int difference = segment.charAt(i) - path.charAt(start + i);
+                if(difference != 0) {
+                    return difference;
+                }
+            }
+            return segmentLength - regionLength;
+        }
+    }
+
+    private static final class BuilderNode {
+        private final TreeMap<String, BuilderNode> literalChildren = new TreeMap<>();
+        private BuilderNode parameterChild;
+        private final Operation[] operations = new Operation[5];
+
+        private BuilderNode child(String segment) {
+            if(isPathParameter(segment)) {
+                if(parameterChild == null) {
+                    parameterChild = new BuilderNode();
+                }
+                return parameterChild;
+            }
+            return literalChildren.computeIfAbsent(segment, k -> new BuilderNode());
+        }
+
+        private void addOperations(PathItem pathItem) {
+            if(pathItem == null) {
+                return;
+            }
+            setIfAbsent(GET, pathItem.getGet());
+            setIfAbsent(POST, pathItem.getPost());
+            setIfAbsent(PUT, pathItem.getPut());
+            setIfAbsent(PATCH, pathItem.getPatch());
+            setIfAbsent(DELETE, pathItem.getDelete());
+        }
+
+        private void setIfAbsent(int methodIndex, Operation operation) {
+            if(operations[methodIndex] == null) {
+                operations[methodIndex] = operation;
+            }
+        }
+
+        private Node build() {
+            List<String> segments = new ArrayList<>(literalChildren.keySet());
+            Node[] children = new Node[segments.size()];
+            for(int i = 0; i < segments.size(); i++) {
+                children[i] = literalChildren.get(segments.get(i)).build();
+            }
+            return new Node(segments.toArray(String[]::new), children, parameterChild == null ? null : parameterChild.build(), operations.clone());
+        }
+    }
+}
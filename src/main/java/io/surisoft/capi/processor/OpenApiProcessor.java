@@ -18,13 +18,13 @@ import java.text.ParseException;
 
 public class OpenApiProcessor implements Processor {
     private static final Logger log = LoggerFactory.getLogger(OpenApiProcessor.class);
-    private final OpenAPI openAPI;
+    private final OpenApiPathMatcher openApiPathMatcher;
     private final HttpUtils httpUtils;
     private final Cache<String, Service> serviceCache;
     private final OpaService opaService;
 
     public OpenApiProcessor(OpenAPI openAPI, HttpUtils httpUtils, Cache<String, Service> serviceCache, OpaService opaService) {
-        this.openAPI = openAPI;
+        this.openApiPathMatcher = new OpenApiPathMatcher(openAPI);
         this.httpUtils = httpUtils;
         this.serviceCache = serviceCache;
         this.opaService = opaService;
@@ -38,94 +38,38 @@ public class OpenApiProcessor implements Processor {
     }
 
     public boolean validateRequest(Exchange exchange) {
-            String callingPath = (String) exchange.getIn().getHeader("CamelHttpPath");
-            String callingMethod = (String) exchange.getIn().getHeader("CamelHttpMethod");
+        String callingPath = (String) exchange.getIn().getHeader("CamelHttpPath");
+        String callingMethod = (String) exchange.getIn().getHeader("CamelHttpMethod");
 
-            for (String path : openAPI.getPaths().keySet()) {
-                // Check if the requestPath matches any of the defined paths
-                if (isPathMatch(callingPath, path)) {
-                    Operation operation = switch (callingMethod.toLowerCase()) {
-                        case "get" -> openAPI.getPaths().get(path).getGet();
-                        case "post" -> openAPI.getPaths().get(path).getPost();
-                        case "put" -> openAPI.getPaths().get(path).getPut();
-                        case "patch" -> openAPI.getPaths().get(path).getPatch();
-                        case "delete" -> openAPI.getPaths().get(path).getDelete();
-                        default -> null;
-                    };
-                    if (operation != null) {
-                        // The provided HTTP method is allowed for this path
-                        // You can also perform additional validation for the request here
-                        // (e.g., validate path parameters, request body, and response)
-                        if (operation.getSecurity() != null && !operation.getSecurity().isEmpty()) {
-                            String accessToken;
-                            try {
-                                accessToken = httpUtils.processAuthorizationAccessToken(exchange);
-                                if (accessToken != null) {
-                                    String contextPath = (String) exchange.getIn().getHeader(Oauth2Constants.CAMEL_SERVLET_CONTEXT_PATH);
-                                    Service service = serviceCache.get(httpUtils.contextToRole(contextPath));
-                                    if (service != null) {
-                                        if (!httpUtils.isAuthorized(accessToken, contextPath, service, opaService)) {
-                                            sendException("Invalid authentication", Constants.UNAUTHORIZED_CODE, exchange);
-                                        } else {
-                                            httpUtils.propagateAuthorization(exchange, accessToken);
-                                            httpUtils.prepareForThrottleIfNeeded(service, accessToken, exchange);
-                                        }
-                                    } else {
-                                        sendException("Call not allowed", Constants.UNAUTHORIZED_CODE, exchange);
-                                    }
-                                } else {
-                                    sendException("No authorization provided", Constants.UNAUTHORIZED_CODE, exchange);
-                                }
-                            } catch (AuthorizationException | ParseException e) {
-                                sendException(e.getMessage(), Constants.BAD_REQUEST_CODE, exchange);
-                            }
+        Operation operation = openApiPathMatcher.match(callingPath, callingMethod);
+        if(operation == null) {
+            return false;
+        }
+        if(operation.getSecurity() != null && !operation.getSecurity().isEmpty()) {
+            String accessToken;
+            try {
+                accessToken = httpUtils.processAuthorizationAccessToken(exchange);
+                if (accessToken != null) {
+                    String contextPath = (String) exchange.getIn().getHeader(Oauth2Constants.CAMEL_SERVLET_CONTEXT_PATH);
+                    Service service = serviceCache.get(httpUtils.contextToRole(contextPath));
+                    if (service != null) {
+                        if (!httpUtils.isAuthorized(exchange, accessToken, contextPath, service, opaService)) {
+                            sendException("Invalid authentication", Constants.UNAUTHORIZED_CODE, exchange);
+                        } else {
+                            httpUtils.propagateAuthorization(exchange, accessToken);
+                            httpUtils.prepareForThrottleIfNeeded(service, accessToken, exchange);
                         }
-                        return true;
+                    } else {
+                        sendException("Call not allowed", Constants.UNAUTHORIZED_CODE, exchange);
                     }
+                } else {
+                    sendException("No authorization provided", Constants.UNAUTHORIZED_CODE, exchange);
                 }
+            } catch (AuthorizationException | ParseException e) {
+                sendException(e.getMessage(), Constants.BAD_REQUEST_CODE, exchange);
             }
-        return false;
-    }
-
-    private boolean isPathMatch(String requestPath, String definedPath) {
-        // Remove leading slashes
-        while (requestPath.startsWith("/")) {
-            requestPath = requestPath.substring(1);
-        }
-
-        // Remove trailing slashes
-        while (requestPath.endsWith("/")) {
-            requestPath = requestPath.substring(0, requestPath.length() - 1);
-        }
-
-        while (definedPath.startsWith("/")) {
-            definedPath = definedPath.substring(1);
-        }
-
-        // Remove trailing slashes
-        while (definedPath.endsWith("/")) {
-            definedPath = definedPath.substring(0, definedPath.length() - 1);
         }
-
-        // Split paths by '/' to handle individual segments
-        String[] requestPathSegments = requestPath.split("/");
-        String[] definedPathSegments = definedPath.split("/");
-
-        if (requestPathSegments.length != definedPathSegments.length) {
-            return false; // Paths have different segment counts
-        }
-
-        for (int i = 0; i < requestPathSegments.length; i++) {
-            if (!definedPathSegments[i].equals(requestPathSegments[i]) && !isPathParameter(definedPathSegments[i])) {
-                return false; // Segment doesn't match and is not a path parameter
-            }
-        }
-        return true; // Request path matches the defined path
-    }
-
-    // Helper method to check if a path segment is a path parameter (contains curly braces)
-    private boolean isPathParameter(String pathSegment) {
-        return pathSegment.matches("\\{.*\\}");
+        return true;
     }
 
     private void sendException(String message, int errorCode, Exchange exchange) {
@@ -1,15 +1,17 @@
 package io.surisoft.capi.processor;
 
-import io.surisoft.capi.exception.AuthorizationException;
-import io.surisoft.capi.kafka.CapiInstance;
-import io.surisoft.capi.kafka.CapiKafkaEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.kafka.ThrottleReplicator;
 import io.surisoft.capi.oidc.Oauth2Constants;
-import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.CapiRestError;
+import io.surisoft.capi.schema.RateLimitState;
 import io.surisoft.capi.schema.Service;
-import io.surisoft.capi.schema.ThrottleServiceObject;
+import io.surisoft.capi.schema.SlidingWindowCounter;
 import io.surisoft.capi.utils.Constants;
 import io.surisoft.capi.utils.HttpUtils;
 import org.apache.camel.Exchange;
+import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.cache2k.Cache;
 import org.slf4j.Logger;
@@ -17,10 +19,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
-import java.util.UUID;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @ConditionalOnProperty(prefix = "capi.throttling", name = "enabled", havingValue = "true")
@@ -30,23 +32,26 @@ public class ThrottleProcessor implements Processor {
     private final Cache<String, Service> serviceCache;
     private final HttpUtils httpUtils;
 
-    private final Cache<String, ThrottleServiceObject> throttleServiceObjectCache;
-    private final KafkaTemplate<String, CapiEvent> kafkaTemplate;
-    private final String capiKafkaTopic;
-    private final CapiInstance capiInstance;
+    private final Cache<String, SlidingWindowCounter> throttleCounterCache;
+    private final ThrottleReplicator throttleReplicator;
+    private final boolean leasingEnabled;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Map<String, String> rejectionBodies = new ConcurrentHashMap<>();
 
     public ThrottleProcessor(Cache<String, Service> serviceCache,
-                             HttpUtils httpUtils, Cache<String,
-                             ThrottleServiceObject> throttleServiceObjectCache,
-                             KafkaTemplate<String, CapiEvent> kafkaTemplate,
-                             @Value("${capi.kafka.topic}") String capiKafkaTopic,
-                             CapiInstance capiInstance) {
+                             HttpUtils httpUtils,
+                             Cache<String, SlidingWindowCounter> throttleCounterCache,
+                             ThrottleReplicator throttleReplicator,
+                             @Value("${capi.throttling.leasing.enabled}") boolean leasingEnabled,
+                             MeterRegistry meterRegistry) {
         this.serviceCache = serviceCache;
         this.httpUtils = httpUtils;
-        this.throttleServiceObjectCache = throttleServiceObjectCache;
-        this.kafkaTemplate = kafkaTemplate;
-        this.capiKafkaTopic = capiKafkaTopic;
-        this.capiInstance = capiInstance;
+        this.throttleCounterCache = throttleCounterCache;
+        this.throttleReplicator = throttleReplicator;
+        this.leasingEnabled = leasingEnabled;
+        this.cacheHits = meterRegistry.counter("capi_throttle_cache_hits");
+        this.cacheMisses = meterRegistry.counter("capi_throttle_cache_misses");
     }
 
     @Override
@@ -55,28 +60,25 @@ public class ThrottleProcessor implements Processor {
             String contextPath = (String) exchange.getIn().getHeader(Oauth2Constants.CAMEL_SERVLET_CONTEXT_PATH);
             Service service = serviceCache.get(httpUtils.contextToRole(contextPath));
             if(service != null) {
+                RateLimitState rateLimitState = null;
                 if(service.getServiceMeta().isThrottleGlobal() &&
                         service.getServiceMeta().getThrottleDuration() > -1 &&
                         service.getServiceMeta().getThrottleTotalCalls() > -1) {
-                    if(!canContinue(exchange, service, null, false, -1, -1)) {
-                        exchange.setProperty(Constants.REASON_MESSAGE_HEADER, "Too Many requests");
-
-                        exchange.getIn().setHeader(Constants.REASON_MESSAGE_HEADER, "Too Many requests");
-                        exchange.getIn().setHeader(Constants.REASON_CODE_HEADER, HttpStatus.TOO_MANY_REQUESTS.value());
-                        exchange.setException(new AuthorizationException("Too Many requests"));
-                    }
+                    rateLimitState = acquire(service, null, false, -1, -1);
                 } else if(!service.getServiceMeta().isThrottleGlobal()) {
                     //Here we should expect token claims, that we should remove later, before returning to the client.
                     if(exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_CONSUMER_KEY) != null &&
                             exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_DURATION) != null &&
                             exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_TOTAL_CALLS_ALLOWED) != null) {
-                        if(!canContinue(exchange, service, (String) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_CONSUMER_KEY), true, (Long) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_TOTAL_CALLS_ALLOWED), (Long) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_DURATION))) {
-                            exchange.setProperty(Constants.REASON_MESSAGE_HEADER, "Too Many requests");
-
-                            exchange.getIn().setHeader(Constants.REASON_MESSAGE_HEADER, "Too Many requests");
-                            exchange.getIn().setHeader(Constants.REASON_CODE_HEADER, HttpStatus.TOO_MANY_REQUESTS.value());
-                            exchange.setException(new AuthorizationException("Too Many requests"));
-                        }
+                        rateLimitState = acquire(service, (String) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_CONSUMER_KEY), true, (Long) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_TOTAL_CALLS_ALLOWED), (Long) exchange.getIn().getHeader(Constants.CAPI_META_THROTTLE_DURATION));
+                    }
+                }
+                if(rateLimitState != null) {
+                    exchange.setProperty(Constants.CAPI_RATE_LIMIT_STATE, rateLimitState);
+                    if(rateLimitState.allowed()) {
+                        exchange.setProperty(Constants.CAPI_META_THROTTLE_CURRENT_CALL_NUMBER, rateLimitState.currentCalls());
+                    } else {
+                        reject(exchange, service, rateLimitState);
                     }
                 }
             }
@@ -85,47 +87,72 @@ public class ThrottleProcessor implements Processor {
         }
     }
 
-    public boolean canContinue(Exchange exchange, Service service, String consumerKey, boolean consumerThrottle, long totalCallsAllowed, long expirationDuration) {
+    //Answers a throttled call with the cached error body of the service
+    private void reject(Exchange exchange, Service service, RateLimitState rateLimitState) {
+        Message message = exchange.getIn();
+        message.setBody(rejectionBody(service));
+        message.setHeader(Exchange.HTTP_RESPONSE_CODE, HttpStatus.TOO_MANY_REQUESTS.value());
+        message.setHeader(Exchange.CONTENT_TYPE, "application/json");
+        message.setHeader(Constants.RETRY_AFTER_HEADER, rateLimitState.resetSeconds());
+        exchange.setProperty(Constants.CAPI_REQUEST_REJECTED, true);
+    }
+
+    public void addRateLimitHeaders(Exchange exchange) {
+        RateLimitState rateLimitState = exchange.getProperty(Constants.CAPI_RATE_LIMIT_STATE, RateLimitState.class);
+        if(rateLimitState != null) {
+            exchange.getIn().setHeader(Constants.RATE_LIMIT_LIMIT_HEADER, rateLimitState.limit());
+            exchange.getIn().setHeader(Constants.RATE_LIMIT_REMAINING_HEADER, rateLimitState.remaining());
+            exchange.getIn().setHeader(Constants.RATE_LIMIT_RESET_HEADER, rateLimitState.resetSeconds());
+        }
+    }
+
+    public String rejectionBody(Service service) {
+        return rejectionBodies.computeIfAbsent(service.getId(), serviceId -> {
+            CapiRestError capiRestError = new CapiRestError();
+            capiRestError.setRouteID(serviceId);
+            capiRestError.setErrorCode(HttpStatus.TOO_MANY_REQUESTS.value());
+            capiRestError.setErrorMessage("Too Many requests");
+            return httpUtils.proxyErrorMapper(capiRestError);
+        });
+    }
+
+    public RateLimitState acquire(Service service, String consumerKey, boolean consumerThrottle, long totalCallsAllowed, long expirationDuration) {
         String cacheKey = consumerThrottle ? service.getId() + ":" + consumerKey : service.getId();
-        ThrottleServiceObject throttleServiceObject = throttleServiceObjectCache.get(cacheKey);
 
         if(!consumerThrottle) {
             totalCallsAllowed = service.getServiceMeta().getThrottleTotalCalls();
             expirationDuration = service.getServiceMeta().getThrottleDuration();
         }
 
-        if (throttleServiceObject == null || throttleServiceObject.isExpired()) {
-            throttleServiceObject = new ThrottleServiceObject(cacheKey, consumerThrottle ? consumerKey : null, totalCallsAllowed, expirationDuration);
-            throttleServiceObjectCache.put(cacheKey, throttleServiceObject);
-            sendToKafka(throttleServiceObject);
-
-            exchange.setProperty(Constants.CAPI_META_THROTTLE_CURRENT_CALL_NUMBER, throttleServiceObject.getCurrentCalls());
-
-            return true;
+        long windowDuration = expirationDuration;
+        boolean[] created = new boolean[1];
+        SlidingWindowCounter slidingWindowCounter = throttleCounterCache.computeIfAbsent(cacheKey, k -> {
+            created[0] = true;
+            return new SlidingWindowCounter(cacheKey, consumerThrottle ? consumerKey : null, windowDuration);
+        });
+        (created[0] ? cacheMisses : cacheHits).increment();
+        if(slidingWindowCounter.getWindowDuration() != Math.max(1, windowDuration)) {
+            //The throttle duration changed, start counting again with the new window
+            slidingWindowCounter = new SlidingWindowCounter(cacheKey, consumerThrottle ? consumerKey : null, windowDuration);
+            throttleCounterCache.put(cacheKey, slidingWindowCounter);
         }
 
-        if (throttleServiceObject.canCall()) {
-            throttleServiceObject.increment();
-            throttleServiceObjectCache.put(cacheKey, throttleServiceObject);
-            sendToKafka(throttleServiceObject);
-
-            exchange.setProperty(Constants.CAPI_META_THROTTLE_CURRENT_CALL_NUMBER, throttleServiceObject.getCurrentCalls());
-
-            return true;
+        long now = System.currentTimeMillis();
+        long currentCalls = leasingEnabled ?
+                slidingWindowCounter.tryAcquireLeased(totalCallsAllowed, now) :
+                slidingWindowCounter.tryAcquire(totalCallsAllowed, now);
+        if(currentCalls > -1) {
+            throttleReplicator.markChanged(cacheKey);
         }
-
-        return false;
-    }
-
-    private void sendToKafka(ThrottleServiceObject throttleServiceObject) {
-        CapiEvent capiEvent = new CapiEvent();
-        capiEvent.setId(UUID.randomUUID().toString());
-        capiEvent.setInstanceId(capiInstance.uuid());
-
-        capiEvent.setKey(throttleServiceObject.getCacheKey());
-        capiEvent.setThrottleServiceObject(throttleServiceObject);
-        capiEvent.setType(CapiKafkaEvent.THROTTLING_EVENT_TYPE);
-        log.trace("Sending Kafka CAPI event: {}", capiEvent.getId());
-        kafkaTemplate.send(capiKafkaTopic, capiEvent);
+        long resetSeconds = slidingWindowCounter.resetSeconds(now);
+        //Once per window, keeps active keys in the cache until their windows are over and weighs the new window
+        long expiryTime = slidingWindowCounter.expiryTime(now);
+        if(slidingWindowCounter.extendExpiry(expiryTime)) {
+            throttleCounterCache.replaceIfEquals(cacheKey, slidingWindowCounter, slidingWindowCounter);
+        }
+        if(currentCalls < 0) {
+            return new RateLimitState(false, totalCallsAllowed, 0, resetSeconds, -1);
+        }
+        return new RateLimitState(true, totalCallsAllowed, Math.max(0, totalCallsAllowed - currentCalls), resetSeconds, currentCalls);
     }
 }
\ No newline at end of file
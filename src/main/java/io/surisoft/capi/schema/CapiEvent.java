@@ -1,8 +1,10 @@
 package io.surisoft.capi.schema;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.io.Serializable;
+import java.util.List;
 
 public class CapiEvent implements Serializable {
     private String id;
@@ -15,6 +17,10 @@ public class CapiEvent implements Serializable {
     @JsonProperty("throttleServiceObject")
     private ThrottleServiceObject throttleServiceObject;
 
+    @JsonProperty("throttleServiceObjects")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<ThrottleServiceObject> throttleServiceObjects;
+
     public String getKey() {
         return key;
     }
@@ -70,4 +76,12 @@ public class CapiEvent implements Serializable {
     public void setThrottleServiceObject(ThrottleServiceObject throttleServiceObject) {
         this.throttleServiceObject = throttleServiceObject;
     }
+
+    public List<ThrottleServiceObject> getThrottleServiceObjects() {
+        return throttleServiceObjects;
+    }
+
+    public void setThrottleServiceObjects(List<ThrottleServiceObject> throttleServiceObjects) {
+        this.throttleServiceObjects = throttleServiceObjects;
+    }
 }
@@ -0,0 +1,126 @@
+package io.surisoft.capi.schema;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+//Clients of a gateway by client id, published as immutable versioned snapshots
+public final class ClientRegistry<T> {
+
+    private final List<Consumer<Snapshot<T>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(0, Map.of());
+
+    public Snapshot<T> snapshot() {
+        return snapshot;
+    }
+
+    public T get(String clientId) {
+        return clientId == null ? null : snapshot.clients().get(clientId);
+    }
+
+    public Map<String, T> getClients() {
+        return snapshot.clients();
+    }
+
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    public void put(String clientId, T client) {
+        batch().put(clientId, client).commit();
+    }
+
+    public void remove(String clientId) {
+        batch().remove(clientId).commit();
+    }
+
+    public Batch<T> batch() {
+        return new Batch<>(this);
+    }
+
+    //The listener is called right away with the current snapshot, then with every new one
+    public synchronized void addListener(Consumer<Snapshot<T>> listener) {
+        listeners.add(listener);
+        listener.accept(snapshot);
+    }
+
+    private synchronized boolean publish(Map<String, T> added, Set<String> removed) {
+        Snapshot<T> currentSnapshot = snapshot;
+        Map<String, T> clients = new HashMap<>(currentSnapshot.clients());
+        boolean changed = false;
+        for(String clientId : removed) {
+            changed |= clients.remove(clientId) != null;
+        }
+        for(Map.Entry<String, T> entry : added.entrySet()) {
+            changed |= clients.put(entry.getKey(), entry.getValue()) != entry.getValue();
+        }
+        if(!changed) {
+            return false;
+        }
+        Snapshot<T> nextSnapshot = new Snapshot<>(currentSnapshot.version() + 1, Map.copyOf(clients));
+        snapshot = nextSnapshot;
+        for(Consumer<Snapshot<T>> listener : listeners) {
+            listener.accept(nextSnapshot);
+        }
+        return true;
+    }
+
+    public record Snapshot<T>(long version, Map<String, T> clients) {}
+
+    //Changes collected by a single writer, the last change of a client id wins
+    public static final class Batch<T> {
+        private final ClientRegistry<T> clientRegistry;
+        private final Map<String, T> added = new LinkedHashMap<>();
+        private final Set<String> removed = new HashSet<>();
+
+        private Batch(ClientRegistry<T> clientRegistry) {
+            this.clientRegistry = clientRegistry;
+        }
+
+        public Batch<T> put(String clientId, T client) {
+            Objects.requireNonNull(clientId);
+            Objects.requireNonNull(client);
+            removed.remove(clientId);
+            added.put(clientId, client);
+            return this;
+        }
+
+        public Batch<T> remove(String clientId) {
+            added.remove(clientId);
+            removed.add(clientId);
+            return this;
+        }
+
+        //Removes every client of the current snapshot matching the filter, for clients registered under several ids
+        public Batch<T> removeIf(Predicate<T> filter) {
+            clientRegistry.snapshot().clients().forEach((clientId, client) -> {
+                if(filter.test(client)) {
+                    remove(clientId);
+                }
+            });
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+
+        //Publishes the changes as one new version, returns false if nothing changed
+        public boolean commit() {
+            if(isEmpty()) {
+                return false;
+            }
+            boolean changed = clientRegistry.publish(added, removed);
+            added.clear();
+            removed.clear();
+            return changed;
+        }
+    }
+}
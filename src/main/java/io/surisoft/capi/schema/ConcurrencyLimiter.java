@@ -0,0 +1,74 @@
+package io.surisoft.capi.schema;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Adaptive cap of the in-flight calls of a service (AIMD)
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int NO_LOAD_LATENCY_DRIFT = 100;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final double latencyTolerance;
+    private volatile int maxLimit;
+    private volatile double limit;
+    private double noLoadLatency;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    public boolean tryAcquire() {
+        while(true) {
+            int currentInFlight = inFlight.get();
+            if(currentInFlight >= (int) limit) {
+                return false;
+            }
+            if(inFlight.compareAndSet(currentInFlight, currentInFlight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    //Frees the slot of a call and adapts the limit to how the backend answered
+    public void release(long latencyNanos, boolean dropped) {
+        int currentInFlight = inFlight.getAndDecrement();
+        onSample(latencyNanos, dropped, currentInFlight);
+    }
+
+    private synchronized void onSample(long latencyNanos, boolean dropped, int currentInFlight) {
+        if(noLoadLatency == 0 || latencyNanos < noLoadLatency) {
+            noLoadLatency = latencyNanos;
+        } else {
+            noLoadLatency += (latencyNanos - noLoadLatency) / NO_LOAD_LATENCY_DRIFT;
+        }
+        if(dropped || latencyNanos > noLoadLatency * latencyTolerance) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if(currentInFlight * 2 >= limit) {
+            //Only grow while the limit is actually used
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        if(limit > this.maxLimit) {
+            limit = this.maxLimit;
+        }
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,75 @@
+package io.surisoft.capi.schema;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+//Immutable dispatch table of the websocket and SSE gateways
+public final class GatewayRouteTable<T> {
+
+    private final String capiContext;
+    private final Map<String, Route<T>> routes;
+
+    private GatewayRouteTable(String capiContext, Map<String, Route<T>> routes) {
+        this.capiContext = capiContext;
+        this.routes = routes;
+    }
+
+    public static <T> GatewayRouteTable<T> empty(String capiContext) {
+        return new GatewayRouteTable<>(capiContext, Map.of());
+    }
+
+    public static <T> GatewayRouteTable<T> build(String capiContext, Map<String, T> clients, Function<T, String> rootContext) {
+        Map<String, Route<T>> routes = new HashMap<>();
+        clients.forEach((clientId, client) -> {
+            String clientRootContext = rootContext.apply(client);
+            if(clientRootContext != null && clientRootContext.isEmpty()) {
+                clientRootContext = null;
+            }
+            routes.put(clientId, new Route<>(clientId, client, capiContext + clientId, clientRootContext));
+        });
+        return new GatewayRouteTable<>(capiContext, Map.copyOf(routes));
+    }
+
+    //The client id of a request path like /capi/name/group/some/path, or null
+    public String clientId(String requestPath) {
+        int start = capiContext.length();
+        if(requestPath == null || requestPath.length() <= start || requestPath.charAt(start) != '/' || !requestPath.startsWith(capiContext)) {
+            return null;
+        }
+        int groupStart = requestPath.indexOf('/', start + 1);
+        if(groupStart < 0) {
+            return null;
+        }
+        int end = requestPath.indexOf('/', groupStart + 1);
+        return requestPath.substring(start, end < 0 ? requestPath.length() : end);
+    }
+
+    public Route<T> get(String clientId) {
+        return clientId == null ? null : routes.get(clientId);
+    }
+
+    public Route<T> lookup(String requestPath) {
+        return get(clientId(requestPath));
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    public String getCapiContext() {
+        return capiContext;
+    }
+
+    public record Route<T>(String clientId, T client, String contextPrefix, String rootContext) {
+
+        //The request path without the CAPI context and the client id, under the root context of the backends
+        public String forwardingPath(String requestPath) {
+            String remainder = requestPath.substring(contextPrefix.length());
+            if(rootContext != null) {
+                return rootContext + remainder;
+            }
+            return remainder.isEmpty() ? "/" : remainder;
+        }
+    }
+}
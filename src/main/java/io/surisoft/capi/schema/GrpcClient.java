@@ -3,11 +3,13 @@ package io.surisoft.capi.schema;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.undertow.server.HttpHandler;
 
+import java.util.List;
 import java.util.Set;
 
 public class GrpcClient {
 
     private String serviceId;
+    private List<String> grpcServices;
     private String path;
     private Set<Mapping> mappingList;
     @JsonIgnore
@@ -60,6 +62,14 @@ public class GrpcClient {
         this.serviceId = serviceId;
     }
 
+    public List<String> getGrpcServices() {
+        return grpcServices;
+    }
+
+    public void setGrpcServices(List<String> grpcServices) {
+        this.grpcServices = grpcServices;
+    }
+
     public Set<Mapping> getMappingList() {
         return mappingList;
     }
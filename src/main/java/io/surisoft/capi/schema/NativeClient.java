@@ -0,0 +1,87 @@
+package io.surisoft.capi.schema;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.surisoft.capi.processor.OpenApiPathMatcher;
+import io.undertow.server.HttpHandler;
+
+import java.util.List;
+import java.util.Set;
+
+public class NativeClient {
+
+    private String serviceId;
+    private String path;
+    private String rootContext;
+    private Set<Mapping> mappingList;
+    private List<String> allowedOrigins;
+    @JsonIgnore
+    private Service service;
+    @JsonIgnore
+    private HttpHandler httpHandler;
+    @JsonIgnore
+    private OpenApiPathMatcher openApiPathMatcher;
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getRootContext() {
+        return rootContext;
+    }
+
+    public void setRootContext(String rootContext) {
+        this.rootContext = rootContext;
+    }
+
+    public Set<Mapping> getMappingList() {
+        return mappingList;
+    }
+
+    public void setMappingList(Set<Mapping> mappingList) {
+        this.mappingList = mappingList;
+    }
+
+    public List<String> getAllowedOrigins() {
+        return allowedOrigins;
+    }
+
+    public void setAllowedOrigins(List<String> allowedOrigins) {
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    public Service getService() {
+        return service;
+    }
+
+    public void setService(Service service) {
+        this.service = service;
+    }
+
+    public HttpHandler getHttpHandler() {
+        return httpHandler;
+    }
+
+    public void setHttpHandler(HttpHandler httpHandler) {
+        this.httpHandler = httpHandler;
+    }
+
+    public OpenApiPathMatcher getOpenApiPathMatcher() {
+        return openApiPathMatcher;
+    }
+
+    public void setOpenApiPathMatcher(OpenApiPathMatcher openApiPathMatcher) {
+        this.openApiPathMatcher = openApiPathMatcher;
+    }
+}
@@ -0,0 +1,5 @@
+package io.surisoft.capi.schema;
+
+//Outcome of a throttled call, as exposed on the RateLimit-* response headers
+public record RateLimitState(boolean allowed, long limit, long remaining, long resetSeconds, long currentCalls) {
+}
@@ -6,9 +6,13 @@ import org.apache.camel.Route;
 import org.apache.camel.api.management.ManagedCamelContext;
 import org.apache.camel.api.management.mbean.ManagedRouteMBean;
 
+import java.util.Map;
+
 public class RouteDetailsEndpointInfo extends RouteEndpointInfo{
     @JsonProperty("details")
     private RouteDetails routeDetails;
+    @JsonProperty("ejectedHosts")
+    private Map<String, Long> ejectedHosts;
 
     public RouteDetailsEndpointInfo(final CamelContext camelContext, final Route route) {
         super(route);
@@ -17,4 +21,8 @@ public class RouteDetailsEndpointInfo extends RouteEndpointInfo{
             this.routeDetails = new RouteDetails(mcc.getManagedRoute(route.getId(), ManagedRouteMBean.class));
         }
     }
+
+    public void setEjectedHosts(Map<String, Long> ejectedHosts) {
+        this.ejectedHosts = ejectedHosts;
+    }
 }
\ No newline at end of file
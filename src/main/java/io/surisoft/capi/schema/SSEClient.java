@@ -3,6 +3,8 @@ package io.surisoft.capi.schema;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.undertow.server.HttpHandler;
 
+import java.net.URI;
+import java.util.List;
 import java.util.Set;
 
 public class SSEClient {
@@ -14,6 +16,9 @@ public class SSEClient {
     private HttpHandler httpHandler;
     private boolean requiresSubscription;
     private String subscriptionRole;
+    private boolean fanout;
+    @JsonIgnore
+    private List<URI> upstreams;
 
     public String getPath() {
         return path;
@@ -51,6 +56,22 @@ public class SSEClient {
         this.subscriptionRole = subscriptionRole;
     }
 
+    public boolean isFanout() {
+        return fanout;
+    }
+
+    public void setFanout(boolean fanout) {
+        this.fanout = fanout;
+    }
+
+    public List<URI> getUpstreams() {
+        return upstreams;
+    }
+
+    public void setUpstreams(List<URI> upstreams) {
+        this.upstreams = upstreams;
+    }
+
     public String getApiId() {
         return apiId;
     }
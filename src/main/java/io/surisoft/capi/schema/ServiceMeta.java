@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ServiceMeta {
@@ -55,11 +56,26 @@ public class ServiceMeta {
     @JsonProperty("route-group-first")
     private boolean routeGroupFirst;
 
+    @JsonProperty("native")
+    private boolean nativeProxy;
+
+    @JsonProperty("streaming")
+    private boolean streaming;
+
     private boolean throttle;
     private boolean throttleGlobal;
     private long throttleTotalCalls = -1;
     private long throttleDuration = -1;
     private boolean rateLimit;
+    private boolean concurrencyLimit;
+    private int concurrencyLimitMax = -1;
+    private boolean hedging;
+
+    @JsonProperty("grpc-services")
+    private String grpcServices;
+
+    @JsonProperty("sse-fanout")
+    private boolean sseFanout;
 
     @JsonProperty("expose-open-api-definition")
     private boolean exposeOpenApiDefinition;
@@ -223,6 +239,22 @@ public class ServiceMeta {
         this.routeGroupFirst = routeGroupFirst;
     }
 
+    public boolean isNativeProxy() {
+        return nativeProxy;
+    }
+
+    public void setNativeProxy(boolean nativeProxy) {
+        this.nativeProxy = nativeProxy;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     public boolean isThrottle() {
         return throttle;
     }
@@ -239,6 +271,46 @@ public class ServiceMeta {
         this.rateLimit = rateLimit;
     }
 
+    public boolean isConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(boolean concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    public String getGrpcServices() {
+        return grpcServices;
+    }
+
+    public void setGrpcServices(String grpcServices) {
+        this.grpcServices = grpcServices;
+    }
+
+    public boolean isSseFanout() {
+        return sseFanout;
+    }
+
+    public void setSseFanout(boolean sseFanout) {
+        this.sseFanout = sseFanout;
+    }
+
     public boolean isThrottleGlobal() {
         return throttleGlobal;
     }
@@ -323,4 +395,50 @@ public class ServiceMeta {
     public void setVersion(String version) {
         this.version = version;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if(o == null || getClass() != o.getClass()) return false;
+        ServiceMeta serviceMeta = (ServiceMeta) o;
+        return secured == serviceMeta.secured &&
+                b3TraceId == serviceMeta.b3TraceId &&
+                allowSubscriptions == serviceMeta.allowSubscriptions &&
+                keepGroup == serviceMeta.keepGroup &&
+                routeGroupFirst == serviceMeta.routeGroupFirst &&
+                nativeProxy == serviceMeta.nativeProxy &&
+                streaming == serviceMeta.streaming &&
+                throttle == serviceMeta.throttle &&
+                throttleGlobal == serviceMeta.throttleGlobal &&
+                throttleTotalCalls == serviceMeta.throttleTotalCalls &&
+                throttleDuration == serviceMeta.throttleDuration &&
+                rateLimit == serviceMeta.rateLimit &&
+                concurrencyLimit == serviceMeta.concurrencyLimit &&
+                concurrencyLimitMax == serviceMeta.concurrencyLimitMax &&
+                hedging == serviceMeta.hedging &&
+                sseFanout == serviceMeta.sseFanout &&
+                exposeOpenApiDefinition == serviceMeta.exposeOpenApiDefinition &&
+                secureOpenApiDefinition == serviceMeta.secureOpenApiDefinition &&
+                Objects.equals(rootContext, serviceMeta.rootContext) &&
+                Objects.equals(schema, serviceMeta.schema) &&
+                Objects.equals(scheme, serviceMeta.scheme) &&
+                Objects.equals(group, serviceMeta.group) &&
+                Objects.equals(ingress, serviceMeta.ingress) &&
+                Objects.equals(type, serviceMeta.type) &&
+                Objects.equals(subscriptionGroup, serviceMeta.subscriptionGroup) &&
+                Objects.equals(allowedOrigins, serviceMeta.allowedOrigins) &&
+                Objects.equals(openApiEndpoint, serviceMeta.openApiEndpoint) &&
+                Objects.equals(opaRego, serviceMeta.opaRego) &&
+                Objects.equals(capiNamespace, serviceMeta.capiNamespace) &&
+                Objects.equals(namespace, serviceMeta.namespace) &&
+                Objects.equals(grpcServices, serviceMeta.grpcServices) &&
+                state == serviceMeta.state &&
+                Objects.equals(version, serviceMeta.version) &&
+                Objects.equals(extraServiceMeta, serviceMeta.extraServiceMeta) &&
+                Objects.equals(unknownProperties, serviceMeta.unknownProperties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rootContext, group, type, namespace, version);
+    }
+}
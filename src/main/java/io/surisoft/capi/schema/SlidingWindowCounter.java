@@ -0,0 +1,192 @@
+package io.surisoft.capi.schema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//Sliding window counter of a throttling key
+public class SlidingWindowCounter {
+
+    private static final int LEASE_RENEWAL_PERCENTAGE = 80;
+    private static final int ESTIMATED_ENTRY_SIZE = 320;
+    private static final int ESTIMATED_INSTANCE_SIZE = 120;
+    private final String cacheKey;
+    private final String consumerKey;
+    private final long windowDuration;
+    private final AtomicReference<Window> window;
+    private volatile long totalCallsAllowed;
+    private volatile long expiryTime;
+
+    public SlidingWindowCounter(String cacheKey, String consumerKey, long windowDuration) {
+        this.cacheKey = cacheKey;
+        this.consumerKey = consumerKey;
+        this.windowDuration = Math.max(1, windowDuration);
+        this.window = new AtomicReference<>(new Window(0, 0, 0));
+    }
+
+    //Returns the calls in the sliding window including this one, or -1 if the call is not allowed
+    public long tryAcquire(long totalCallsAllowed, long now) {
+        updateTotalCallsAllowed(totalCallsAllowed);
+        Window currentWindow = currentWindow(now);
+        long previousCalls = currentWindow.weightedPreviousCalls(now, windowDuration) + currentWindow.remoteCalls.get();
+        if(currentWindow.calls.get() + previousCalls >= totalCallsAllowed) {
+            return -1;
+        }
+        long currentCalls = currentWindow.calls.incrementAndGet();
+        if(currentCalls + previousCalls > totalCallsAllowed) {
+            currentWindow.calls.decrementAndGet();
+            return -1;
+        }
+        return currentCalls + previousCalls;
+    }
+
+    //Admits the call from the lease of this instance, returns the estimated calls of the cluster or -1 if not allowed
+    public long tryAcquireLeased(long totalCallsAllowed, long now) {
+        updateTotalCallsAllowed(totalCallsAllowed);
+        Window currentWindow = currentWindow(now);
+        long lease = currentWindow.lease.get();
+        if(currentWindow.calls.get() >= lease * LEASE_RENEWAL_PERCENTAGE / 100) {
+            lease = claimLease(currentWindow, totalCallsAllowed, now);
+        }
+        if(currentWindow.calls.get() >= lease) {
+            return -1;
+        }
+        long currentCalls = currentWindow.calls.incrementAndGet();
+        if(currentCalls > currentWindow.lease.get()) {
+            currentWindow.calls.decrementAndGet();
+            return -1;
+        }
+        return currentCalls + currentWindow.remoteCalls.get() + currentWindow.weightedPreviousCalls(now, windowDuration);
+    }
+
+    //Every caller of a hot key would otherwise write the same shared volatile
+    private void updateTotalCallsAllowed(long totalCallsAllowed) {
+        if(this.totalCallsAllowed != totalCallsAllowed) {
+            this.totalCallsAllowed = totalCallsAllowed;
+        }
+    }
+
+    //Grows the lease by this instance's share of the budget not leased by any instance yet
+    private long claimLease(Window currentWindow, long totalCallsAllowed, long now) {
+        long budget = totalCallsAllowed - currentWindow.weightedPreviousCalls(now, windowDuration);
+        long instances = 1 + Math.max(currentWindow.callsByInstance.size(), currentWindow.previousInstances);
+        while(true) {
+            long lease = currentWindow.lease.get();
+            long available = budget - currentWindow.remoteLeases.get() - lease;
+            if(available <= 0) {
+                return lease;
+            }
+            long nextLease = lease + Math.max(1, available / instances);
+            if(currentWindow.lease.compareAndSet(lease, nextLease)) {
+                return nextLease;
+            }
+        }
+    }
+
+    //Merges the count of another CAPI instance for the window the snapshot belongs to, returns true if the instance was new to the window
+    public boolean merge(String instanceId, ThrottleServiceObject throttleServiceObject) {
+        long remoteIndex = throttleServiceObject.getExpirationTime() / windowDuration - 1;
+        Window currentWindow = currentWindow(remoteIndex * windowDuration);
+        if(currentWindow.index == remoteIndex) {
+            return currentWindow.mergeRemoteCalls(instanceId, throttleServiceObject.getCurrentCalls(), throttleServiceObject.getLease());
+        }
+        return false;
+    }
+
+    //The calls and the lease of this instance in the current window
+    public ThrottleServiceObject snapshot(long now) {
+        Window currentWindow = currentWindow(now);
+        return new ThrottleServiceObject(cacheKey, consumerKey, totalCallsAllowed, currentWindow.calls.get(), (currentWindow.index + 1) * windowDuration, currentWindow.lease.get());
+    }
+
+    public long getWindowDuration() {
+        return windowDuration;
+    }
+
+    //Seconds until the current window is over, rounded up
+    public long resetSeconds(long now) {
+        long windowEnd = (now / windowDuration + 1) * windowDuration;
+        return (windowEnd - now + 999) / 1000;
+    }
+
+    //Once the window following the current one is over the counter is not needed anymore
+    public long expiryTime(long now) {
+        return (now / windowDuration + 2) * windowDuration;
+    }
+
+    //Moves the expiry time forward, returns false if it was already there
+    public boolean extendExpiry(long expiryTime) {
+        if(expiryTime > this.expiryTime) {
+            this.expiryTime = expiryTime;
+            return true;
+        }
+        return false;
+    }
+
+    //Rough heap size of the counter, its keys and the counts of the other instances
+    public int estimatedSize() {
+        int keySize = 2 * cacheKey.length() + (consumerKey == null ? 0 : 2 * consumerKey.length());
+        return ESTIMATED_ENTRY_SIZE + keySize + ESTIMATED_INSTANCE_SIZE * window.get().callsByInstance.size();
+    }
+
+    private Window currentWindow(long now) {
+        long index = now / windowDuration;
+        Window currentWindow = window.get();
+        while(currentWindow.index < index) {
+            boolean adjacent = currentWindow.index == index - 1;
+            long previousCalls = adjacent ? currentWindow.calls.get() + currentWindow.remoteCalls.get() : 0;
+            int previousInstances = adjacent ? currentWindow.callsByInstance.size() : 0;
+            Window nextWindow = new Window(index, previousCalls, previousInstances);
+            if(window.compareAndSet(currentWindow, nextWindow)) {
+                return nextWindow;
+            }
+            currentWindow = window.get();
+        }
+        return currentWindow;
+    }
+
+    private static final class Window {
+        private final long index;
+        private final long previousCalls;
+        private final int previousInstances;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong lease = new AtomicLong();
+        private final AtomicLong remoteCalls = new AtomicLong();
+        private final AtomicLong remoteLeases = new AtomicLong();
+        private final Map<String, Long> callsByInstance = new ConcurrentHashMap<>();
+        private final Map<String, Long> leaseByInstance = new ConcurrentHashMap<>();
+
+        private Window(long index, long previousCalls, int previousInstances) {
+            this.index = index;
+            this.previousCalls = previousCalls;
+            this.previousInstances = previousInstances;
+        }
+
+        private boolean mergeRemoteCalls(String instanceId, long instanceCalls, long instanceLease) {
+            boolean newInstance = !callsByInstance.containsKey(instanceId);
+            remoteCalls.addAndGet(mergeMax(callsByInstance, instanceId, instanceCalls));
+            remoteLeases.addAndGet(mergeMax(leaseByInstance, instanceId, instanceLease));
+            return newInstance;
+        }
+
+        //Keeps the highest value per instance, returns how much it grew
+        private static long mergeMax(Map<String, Long> valueByInstance, String instanceId, long value) {
+            long[] increment = new long[1];
+            valueByInstance.compute(instanceId, (k, existingValue) -> {
+                long knownValue = existingValue == null ? 0 : existingValue;
+                increment[0] = Math.max(0, value - knownValue);
+                return Math.max(knownValue, value);
+            });
+            return increment[0];
+        }
+
+        private long weightedPreviousCalls(long now, long windowDuration) {
+            if(previousCalls == 0) {
+                return 0;
+            }
+            long elapsed = Math.min(windowDuration, Math.max(0, now - index * windowDuration));
+            return previousCalls * (windowDuration - elapsed) / windowDuration;
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package io.surisoft.capi.schema;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.io.Serializable;
 
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class ThrottleServiceObject implements Serializable {
 
     private String serviceId;
@@ -11,15 +14,21 @@ public class ThrottleServiceObject implements Serializable {
     private long totalCallsAllowed;
     private long currentCalls;
     private long expirationTime;
+    private long lease;
 
     public ThrottleServiceObject() {}
 
-    public ThrottleServiceObject(String serviceId, String consumerKey, long totalCallsAllowed, long expirationDuration) {
+    public ThrottleServiceObject(String serviceId, String consumerKey, long totalCallsAllowed, long currentCalls, long expirationTime) {
+        this(serviceId, consumerKey, totalCallsAllowed, currentCalls, expirationTime, 0);
+    }
+
+    public ThrottleServiceObject(String serviceId, String consumerKey, long totalCallsAllowed, long currentCalls, long expirationTime, long lease) {
         this.serviceId = serviceId;
         this.consumerKey = consumerKey;
         this.totalCallsAllowed = totalCallsAllowed;
-        this.currentCalls = 1;
-        this.expirationTime = System.currentTimeMillis() + expirationDuration;
+        this.currentCalls = currentCalls;
+        this.expirationTime = expirationTime;
+        this.lease = lease;
     }
 
     @JsonIgnore
@@ -35,21 +44,6 @@ public class ThrottleServiceObject implements Serializable {
         return currentCalls;
     }
 
-    @JsonIgnore
-    public boolean isExpired() {
-        return System.currentTimeMillis() > expirationTime;
-    }
-
-    @JsonIgnore
-    public boolean canCall() {
-        return !isExpired() && currentCalls < totalCallsAllowed;
-    }
-
-    @JsonIgnore
-    public void increment() {
-        currentCalls++;
-    }
-
     public long getExpirationTime() {
         return expirationTime;
     }
@@ -61,4 +55,9 @@ public class ThrottleServiceObject implements Serializable {
     public String getConsumerKey() {
         return consumerKey;
     }
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getLease() {
+        return lease;
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.surisoft.capi.builder.DirectRouteProcessor;
 import io.surisoft.capi.configuration.CapiSslContextHolder;
 import io.surisoft.capi.configuration.ConsulHosts;
+import io.surisoft.capi.processor.ConcurrencyLimitProcessor;
 import io.surisoft.capi.processor.ServiceCapiInstanceMapper;
 import io.surisoft.capi.processor.ContentTypeValidator;
 import io.surisoft.capi.processor.ThrottleProcessor;
@@ -26,6 +27,8 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ConsulNodeDiscovery {
 
@@ -38,14 +41,22 @@ public class ConsulNodeDiscovery {
     private HttpClient client;
     private static final String GET_ALL_SERVICES = "/v1/catalog/services";
     private static final String GET_SERVICE_BY_NAME = "/v1/catalog/service/";
+    private static final String CONSUL_INDEX_HEADER = "X-Consul-Index";
+    private static final long BLOCKING_QUERY_ERROR_BACKOFF = 5000;
+    private static final int DEFAULT_FETCH_CONCURRENCY = 16;
+    private static final long DEFAULT_CYCLE_DEADLINE = 120000;
     private String capiContext;
     private String reverseProxyHost;
     private final CamelContext camelContext;
     private final Cache<String, Service> serviceCache;
-    private final Map<String, WebsocketClient> websocketClientMap;
-    private final Map<String, SSEClient> sseClientMap;
+    private final ClientRegistry.Batch<WebsocketClient> websocketClientBatch;
+    private final ClientRegistry.Batch<SSEClient> sseClientBatch;
     private WebsocketUtils websocketUtils;
     private SSEUtils sseUtils;
+    private GrpcUtils grpcUtils;
+    private ClientRegistry.Batch<GrpcClient> grpcClientBatch;
+    private NativeUtils nativeUtils;
+    private ClientRegistry.Batch<NativeClient> nativeClientBatch;
     private OpaService opaService;
     private HttpUtils httpUtils;
     private String capiNamespace;
@@ -53,16 +64,26 @@ public class ConsulNodeDiscovery {
     private String capiRunningMode;
     private final ContentTypeValidator contentTypeValidator;
     private final ThrottleProcessor throttleProcessor;
+    private ConcurrencyLimitProcessor concurrencyLimitProcessor;
+    private OutlierDetector outlierDetector;
     private final CapiSslContextHolder capiSslContextHolder;
     private String serviceMetaExtrasPrefix;
+    private boolean blockingQueriesEnabled;
+    private int blockingQueryWait;
+    private final Map<String, HostCatalog> hostCatalogs = new HashMap<>();
+    private final Set<String> servicesToRetry = new HashSet<>();
+    private final Map<String, Map<String, List<ConsulObject>>> lastKnownServices = new HashMap<>();
+    private long retryAfter;
+    private ExecutorService fetchExecutor;
+    private long cycleDeadline = DEFAULT_CYCLE_DEADLINE;
 
     public ConsulNodeDiscovery(CamelContext camelContext,
                                ServiceUtils serviceUtils,
                                RouteUtils routeUtils,
                                MetricsProcessor metricsProcessor,
                                Cache<String, Service> serviceCache,
-                               Map<String, WebsocketClient> websocketClientMap,
-                               Map<String, SSEClient> sseClientMap,
+                               ClientRegistry<WebsocketClient> websocketClientRegistry,
+                               ClientRegistry<SSEClient> sseClientRegistry,
                                ContentTypeValidator contentTypeValidator,
                                ThrottleProcessor throttleProcessor,
                                CapiSslContextHolder capiSslContextHolder) {
@@ -71,8 +92,8 @@ public class ConsulNodeDiscovery {
         this.camelContext = camelContext;
         this.serviceCache = serviceCache;
         this.metricsProcessor = metricsProcessor;
-        this.websocketClientMap = websocketClientMap;
-        this.sseClientMap = sseClientMap;
+        this.websocketClientBatch = websocketClientRegistry != null ? websocketClientRegistry.batch() : null;
+        this.sseClientBatch = sseClientRegistry != null ? sseClientRegistry.batch() : null;
         this.contentTypeValidator = contentTypeValidator;
         this.throttleProcessor = throttleProcessor;
         this.capiSslContextHolder = capiSslContextHolder;
@@ -83,13 +104,20 @@ public class ConsulNodeDiscovery {
         }
         httpClientBuilder.connectTimeout(Duration.ofSeconds(10));
         client = httpClientBuilder.build();
+        fetchExecutor = createFetchExecutor(DEFAULT_FETCH_CONCURRENCY);
     }
 
     public void processInfo() {
+        if(blockingQueriesEnabled) {
+            processCatalogChanges();
+            return;
+        }
+        servicesToRetry.clear();
         try {
-            Map<String, List<ConsulObject>> serviceListObjects = getAllServices();
+            long deadline = System.currentTimeMillis() + cycleDeadline;
+            Map<String, List<ConsulObject>> serviceListObjects = getAllServices(deadline);
             lookForRemovedServices(serviceListObjects);
-            processServices(serviceListObjects);
+            processServices(serviceListObjects, deadline);
         }
         catch (IOException e) {
             log.error(ErrorMessage.ERROR_CONNECTING_TO_CONSUL);
@@ -100,6 +128,215 @@ public class ConsulNodeDiscovery {
         }
     }
 
+    //Only fetches the services that were added to a Consul catalog or whose own index moved
+    private void processCatalogChanges() {
+        if(System.currentTimeMillis() < retryAfter) {
+            return;
+        }
+        Set<String> changedServices = new HashSet<>(servicesToRetry);
+        servicesToRetry.clear();
+        boolean processed = false;
+        try {
+            List<HostCatalog> changedCatalogs = waitForCatalogChanges();
+            long deadline = System.currentTimeMillis() + cycleDeadline;
+            boolean hostFailed = false;
+            for(HostCatalog hostCatalog : changedCatalogs) {
+                try {
+                    updateHostCatalog(hostCatalog, changedServices, deadline);
+                } catch (IOException e) {
+                    //A failing host must not drop the changes already read from the others, it is read again from scratch
+                    log.error(ErrorMessage.ERROR_CONNECTING_TO_CONSUL);
+                    log.debug("Consul {} failed: {}", hostCatalog.hostConfig, e.getMessage());
+                    hostCatalog.index = 0;
+                    hostFailed = true;
+                }
+            }
+            if(hostFailed) {
+                retryAfter = System.currentTimeMillis() + BLOCKING_QUERY_ERROR_BACKOFF;
+            }
+            if(!changedServices.isEmpty()) {
+                Map<String, List<ConsulObject>> serviceListObjects = mergeHostCatalogs();
+                lookForRemovedServices(serviceListObjects);
+                Map<String, List<ConsulObject>> changedServiceListObjects = new HashMap<>();
+                for(String serviceName : changedServices) {
+                    if(serviceListObjects.containsKey(serviceName)) {
+                        changedServiceListObjects.put(serviceName, serviceListObjects.get(serviceName));
+                    }
+                }
+                log.debug("Consul catalog changed, {} services to process", changedServiceListObjects.size());
+                processServices(changedServiceListObjects, deadline);
+            }
+            processed = true;
+            if(!hostFailed) {
+                connectedToConsul = true;
+            }
+        } catch (InterruptedException e) {
+            log.error(ErrorMessage.ERROR_CONNECTING_TO_CONSUL);
+            Thread.currentThread().interrupt();
+        } finally {
+            //The catalog indexes already moved, so changes that were not deployed are only found again through the retry set
+            if(!processed) {
+                servicesToRetry.addAll(changedServices);
+            }
+        }
+    }
+
+    private List<HostCatalog> waitForCatalogChanges() throws InterruptedException {
+        List<CompletableFuture<HttpResponse<String>>> pendingRequests = new ArrayList<>();
+        for(ConsulHosts.HostConfig consulHost : consulHosts.getHosts()) {
+            HostCatalog hostCatalog = hostCatalogs.computeIfAbsent(consulHost.getEndpoint(), k -> new HostCatalog(consulHost));
+            if(hostCatalog.pendingRequest == null) {
+                log.trace("Watching Consul {} for catalog changes after index {}", consulHost, hostCatalog.index);
+                hostCatalog.pendingRequest = client.sendAsync(buildServicesHttpRequest(consulHost, hostCatalog.index), HttpResponse.BodyHandlers.ofString());
+            }
+            pendingRequests.add(hostCatalog.pendingRequest);
+            //The catalog only tells which services were added or removed, every known service is watched on its own index
+            for(Map.Entry<String, ServiceEntry> serviceEntry : hostCatalog.services.entrySet()) {
+                pendingRequests.add(hostCatalog.serviceWatches.computeIfAbsent(serviceEntry.getKey(), serviceName ->
+                        client.sendAsync(buildServiceNameHttpRequest(consulHost, serviceName, serviceEntry.getValue().index()), HttpResponse.BodyHandlers.ofString())));
+            }
+        }
+        try {
+            CompletableFuture.anyOf(pendingRequests.toArray(CompletableFuture[]::new)).get(blockingQueryWait + 30L, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            //Failed requests are reported by the host that sent them, unfinished ones are kept for the next run
+        }
+        List<HostCatalog> completedCatalogs = new ArrayList<>();
+        for(HostCatalog hostCatalog : hostCatalogs.values()) {
+            if((hostCatalog.pendingRequest != null && hostCatalog.pendingRequest.isDone()) ||
+                    hostCatalog.serviceWatches.values().stream().anyMatch(CompletableFuture::isDone)) {
+                completedCatalogs.add(hostCatalog);
+            }
+        }
+        return completedCatalogs;
+    }
+
+    private void updateHostCatalog(HostCatalog hostCatalog, Set<String> changedServices, long deadline) throws IOException, InterruptedException {
+        updateWatchedServices(hostCatalog, changedServices);
+        if(hostCatalog.pendingRequest != null && hostCatalog.pendingRequest.isDone()) {
+            updateServiceList(hostCatalog, changedServices, deadline);
+        }
+    }
+
+    private void updateWatchedServices(HostCatalog hostCatalog, Set<String> changedServices) throws InterruptedException {
+        Iterator<Map.Entry<String, CompletableFuture<HttpResponse<String>>>> serviceWatches = hostCatalog.serviceWatches.entrySet().iterator();
+        while(serviceWatches.hasNext()) {
+            Map.Entry<String, CompletableFuture<HttpResponse<String>>> serviceWatch = serviceWatches.next();
+            if(!serviceWatch.getValue().isDone()) {
+                continue;
+            }
+            serviceWatches.remove();
+            String serviceName = serviceWatch.getKey();
+            ServiceEntry serviceEntry = hostCatalog.services.get(serviceName);
+            if(serviceEntry == null) {
+                continue;
+            }
+            try {
+                HttpResponse<String> serviceResponse = serviceWatch.getValue().get();
+                if(serviceResponse.statusCode() != 200) {
+                    throw new IOException("Consul answered with status " + serviceResponse.statusCode());
+                }
+                long serviceIndex = getConsulIndex(serviceResponse);
+                if(serviceIndex > 0 && serviceIndex == serviceEntry.index()) {
+                    //The wait time elapsed without changes
+                    continue;
+                }
+                //Consul asks to start over when the index goes backwards
+                hostCatalog.services.put(serviceName, new ServiceEntry(serviceIndex > serviceEntry.index() ? serviceIndex : 0, filterServicesToDeploy(serviceResponse.body())));
+                changedServices.add(serviceName);
+            } catch (ExecutionException | IOException e) {
+                log.warn("Error watching service {} at Consul {}: {}", serviceName, hostCatalog.hostConfig, e.getMessage());
+                //Read again without blocking after the backoff, the last known instances are kept until then
+                hostCatalog.services.put(serviceName, new ServiceEntry(0, serviceEntry.consulObjects()));
+                retryAfter = System.currentTimeMillis() + BLOCKING_QUERY_ERROR_BACKOFF;
+            }
+        }
+    }
+
+    private void updateServiceList(HostCatalog hostCatalog, Set<String> changedServices, long deadline) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<String>> pendingRequest = hostCatalog.pendingRequest;
+        hostCatalog.pendingRequest = null;
+        HttpResponse<String> response;
+        try {
+            response = pendingRequest.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if(response.statusCode() != 200) {
+            throw new IOException("Consul answered with status " + response.statusCode());
+        }
+
+        long catalogIndex = getConsulIndex(response);
+        if(hostCatalog.loaded && catalogIndex > 0 && catalogIndex == hostCatalog.index) {
+            //The wait time elapsed without changes
+            return;
+        }
+        JsonObject responseObject = new ObjectMapper().readValue(response.body(), JsonObject.class);
+        //We want to ignore the consul array
+        responseObject.remove("consul");
+        Set<String> serviceNames = responseObject.keySet();
+        //Consul asks to start over when the index goes backwards
+        hostCatalog.index = catalogIndex > hostCatalog.index ? catalogIndex : 0;
+        hostCatalog.loaded = true;
+
+        Iterator<String> knownServices = hostCatalog.services.keySet().iterator();
+        while(knownServices.hasNext()) {
+            String serviceName = knownServices.next();
+            if(!serviceNames.contains(serviceName)) {
+                knownServices.remove();
+                CompletableFuture<HttpResponse<String>> serviceWatch = hostCatalog.serviceWatches.remove(serviceName);
+                if(serviceWatch != null) {
+                    serviceWatch.cancel(true);
+                }
+                changedServices.add(serviceName);
+            }
+        }
+
+        //Known services are followed by their own watch, only the new ones are read here
+        Map<String, Callable<HttpResponse<String>>> serviceRequests = new HashMap<>();
+        for(String serviceName : serviceNames) {
+            if(!hostCatalog.services.containsKey(serviceName)) {
+                serviceRequests.put(serviceName, () -> client.send(buildServiceNameHttpRequest(hostCatalog.hostConfig, serviceName, 0), HttpResponse.BodyHandlers.ofString()));
+            }
+        }
+        Map<String, HttpResponse<String>> serviceResponses = fetchConcurrently(serviceRequests, deadline);
+
+        int fetchedServices = 0;
+        for(Map.Entry<String, HttpResponse<String>> serviceResponseEntry : serviceResponses.entrySet()) {
+            String serviceName = serviceResponseEntry.getKey();
+            HttpResponse<String> serviceResponse = serviceResponseEntry.getValue();
+            if(serviceResponse.statusCode() != 200) {
+                log.warn("Consul answered with status {} for service {}", serviceResponse.statusCode(), serviceName);
+                continue;
+            }
+            hostCatalog.services.put(serviceName, new ServiceEntry(getConsulIndex(serviceResponse), filterServicesToDeploy(serviceResponse.body())));
+            changedServices.add(serviceName);
+            fetchedServices++;
+        }
+        if(fetchedServices < serviceRequests.size()) {
+            //Start over on the next run, services that were not fetched are still new to the catalog
+            hostCatalog.index = 0;
+        }
+    }
+
+    private Map<String, List<ConsulObject>> mergeHostCatalogs() {
+        Map<String, List<ConsulObject>> serviceListObjects = new HashMap<>();
+        for(HostCatalog hostCatalog : hostCatalogs.values()) {
+            for(Map.Entry<String, ServiceEntry> entry : hostCatalog.services.entrySet()) {
+                serviceListObjects.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).addAll(entry.getValue().consulObjects());
+            }
+        }
+        return serviceListObjects;
+    }
+
+    private long getConsulIndex(HttpResponse<?> response) {
+        try {
+            return response.headers().firstValue(CONSUL_INDEX_HEADER).map(Long::parseLong).orElse(0L);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private void lookForRemovedServices(Map<String, List<ConsulObject>> serviceListObjects) {
         Map<String, ConsulObject> servicesOnConsul = new HashMap<>();
         for(Map.Entry<String, List<ConsulObject>> entry : serviceListObjects.entrySet()) {
@@ -136,8 +373,16 @@ public class ConsulNodeDiscovery {
             for(CacheEntry<String, Service> stringServiceCacheEntry : serviceCache.entries()) {
                 if(!servicesOnConsul.containsKey(stringServiceCacheEntry.getKey())) {
                     log.debug("This service is not on Consul: {}, and will be removed.", stringServiceCacheEntry.getKey());
-                    serviceUtils.removeUnusedService(camelContext, routeUtils, Objects.requireNonNull(serviceCache.get(stringServiceCacheEntry.getKey())));
-                    serviceCache.remove(stringServiceCacheEntry.getKey());
+                    synchronized(routeUtils.getServiceLock(stringServiceCacheEntry.getKey())) {
+                        serviceUtils.removeUnusedService(camelContext, routeUtils, Objects.requireNonNull(serviceCache.get(stringServiceCacheEntry.getKey())));
+                        serviceCache.remove(stringServiceCacheEntry.getKey());
+                    }
+                    if(concurrencyLimitProcessor != null) {
+                        concurrencyLimitProcessor.removeService(stringServiceCacheEntry.getKey());
+                    }
+                    if(outlierDetector != null) {
+                        outlierDetector.removeService(stringServiceCacheEntry.getKey());
+                    }
                 }
             }
         } catch(Exception e) {
@@ -145,7 +390,7 @@ public class ConsulNodeDiscovery {
         }
     }
 
-    private Map<String, List<ConsulObject>> getAllServices() throws InterruptedException, IOException {
+    private Map<String, List<ConsulObject>> getAllServices(long deadline) throws InterruptedException, IOException {
         ObjectMapper objectMapper = new ObjectMapper();
         Map<String, List<ConsulObject>> serviceListObjects = new HashMap<>();
         HttpResponse<String> response;
@@ -153,50 +398,44 @@ public class ConsulNodeDiscovery {
         List<ConsulHosts.HostConfig> hostConfigs = consulHosts.getHosts();
         for(ConsulHosts.HostConfig consulHost : hostConfigs) {
             log.trace("Querying Consul {} for new services", consulHost);
-            response = client.send(buildServicesHttpRequest(consulHost), HttpResponse.BodyHandlers.ofString());
+            response = client.send(buildServicesHttpRequest(consulHost, 0), HttpResponse.BodyHandlers.ofString());
             JsonObject responseObject = objectMapper.readValue(response.body(), JsonObject.class);
             //We want to ignore the consul array
             responseObject.remove("consul");
             Set<String> services = responseObject.keySet();
+            Map<String, Callable<List<ConsulObject>>> serviceRequests = new HashMap<>();
             for(String serviceName : services) {
-                List<ConsulObject> consulInstanceObjectList = getServiceByName(consulHost, serviceName);
-                if(consulInstanceObjectList != null) {
-                    if(serviceListObjects.containsKey(serviceName)) {
-                        serviceListObjects.get(serviceName).addAll(consulInstanceObjectList);
-                    } else {
-                        serviceListObjects.put(serviceName, consulInstanceObjectList);
-                    }
-                }
+                serviceRequests.put(serviceName, () -> getServiceByName(consulHost, serviceName));
             }
+            Map<String, List<ConsulObject>> hostServices = keepLastKnownServices(services, fetchConcurrently(serviceRequests, deadline), lastKnownServices.get(consulHost.getEndpoint()));
+            lastKnownServices.put(consulHost.getEndpoint(), hostServices);
+            hostServices.forEach((serviceName, consulInstanceObjectList) -> serviceListObjects.computeIfAbsent(serviceName, k -> new ArrayList<>()).addAll(consulInstanceObjectList));
         }
         return serviceListObjects;
     }
 
+    //Services still in the catalog that were not fetched keep their last known instances
+    static Map<String, List<ConsulObject>> keepLastKnownServices(Set<String> catalogServices,
+                                                                 Map<String, List<ConsulObject>> fetchedServices,
+                                                                 Map<String, List<ConsulObject>> lastKnownServices) {
+        Map<String, List<ConsulObject>> hostServices = new HashMap<>();
+        for(String serviceName : catalogServices) {
+            List<ConsulObject> consulObjects = fetchedServices.get(serviceName);
+            if(consulObjects == null && lastKnownServices != null) {
+                consulObjects = lastKnownServices.get(serviceName);
+            }
+            if(consulObjects != null) {
+                hostServices.put(serviceName, consulObjects);
+            }
+        }
+        return hostServices;
+    }
+
     private List<ConsulObject> getServiceByName(ConsulHosts.HostConfig consulHost, String serviceName) {
         log.trace("Getting service name: {} at consul host: {}", serviceName, consulHost);
-        List<ConsulObject> servicesToDeploy = new ArrayList<>();
         try {
-            HttpResponse<String> response = client.send(buildServiceNameHttpRequest(consulHost, serviceName), HttpResponse.BodyHandlers.ofString());
-            ObjectMapper objectMapper = new ObjectMapper();
-            TypeReference<List<ConsulObject>> typeRef = new TypeReference<>() {};
-            List<ConsulObject> temporaryList = objectMapper.readValue(response.body(), typeRef);
-            temporaryList.forEach(o -> {
-                ServiceCapiInstances.Instance thisInstance = serviceUtils.getServiceCapiInstance(o, capiNamespace);
-                if(capiNamespace == null) {
-                    servicesToDeploy.add(o);
-                } else {
-                    if(o.getServiceMeta().getNamespace() == null && thisInstance == null) {
-                        if(!strictNamespace) {
-                            servicesToDeploy.add(o);
-                        }
-                    } else if(o.getServiceMeta().getNamespace() != null && o.getServiceMeta().getNamespace().equals(capiNamespace)) {
-                        servicesToDeploy.add(o);
-                    } else if(thisInstance != null) {
-                        servicesToDeploy.add(o);
-                    }
-                }
-            });
-            return servicesToDeploy;
+            HttpResponse<String> response = client.send(buildServiceNameHttpRequest(consulHost, serviceName, 0), HttpResponse.BodyHandlers.ofString());
+            return filterServicesToDeploy(response.body());
         } catch (IOException e) {
             log.error(ErrorMessage.ERROR_CONNECTING_TO_CONSUL);
         } catch (InterruptedException e) {
@@ -206,45 +445,159 @@ public class ConsulNodeDiscovery {
         return null;
     }
 
-    private void processServices(Map<String, List<ConsulObject>> serviceListObjects) {
-        serviceListObjects.forEach((serviceName, objectList) -> {
+    private List<ConsulObject> filterServicesToDeploy(String responseBody) throws IOException {
+        List<ConsulObject> servicesToDeploy = new ArrayList<>();
+        ObjectMapper objectMapper = new ObjectMapper();
+        TypeReference<List<ConsulObject>> typeRef = new TypeReference<>() {};
+        List<ConsulObject> temporaryList = objectMapper.readValue(responseBody, typeRef);
+        temporaryList.forEach(o -> {
+            ServiceCapiInstances.Instance thisInstance = serviceUtils.getServiceCapiInstance(o, capiNamespace);
+            if(capiNamespace == null) {
+                servicesToDeploy.add(o);
+            } else {
+                if(o.getServiceMeta().getNamespace() == null && thisInstance == null) {
+                    if(!strictNamespace) {
+                        servicesToDeploy.add(o);
+                    }
+                } else if(o.getServiceMeta().getNamespace() != null && o.getServiceMeta().getNamespace().equals(capiNamespace)) {
+                    servicesToDeploy.add(o);
+                } else if(thisInstance != null) {
+                    servicesToDeploy.add(o);
+                }
+            }
+        });
+        return servicesToDeploy;
+    }
+
+    private void processServices(Map<String, List<ConsulObject>> serviceListObjects, long deadline) throws InterruptedException {
+        try {
+            deployServices(serviceListObjects, deadline);
+        } finally {
+            //The clients of the whole cycle are published as a single new version of their registries
+            if(websocketClientBatch != null) {
+                websocketClientBatch.commit();
+            }
+            if(sseClientBatch != null) {
+                sseClientBatch.commit();
+            }
+            if(grpcClientBatch != null) {
+                grpcClientBatch.commit();
+            }
+            if(nativeClientBatch != null) {
+                nativeClientBatch.commit();
+            }
+        }
+    }
+
+    private void deployServices(Map<String, List<ConsulObject>> serviceListObjects, long deadline) throws InterruptedException {
+        List<PendingService> pendingServices = new ArrayList<>();
+        for(Map.Entry<String, List<ConsulObject>> serviceEntry : serviceListObjects.entrySet()) {
+            String serviceName = serviceEntry.getKey();
+            List<ConsulObject> objectList = serviceEntry.getValue();
             log.trace("Processing service name: {}", serviceName);
             Map<String, Set<Mapping>> servicesStructure = groupByServiceId(objectList);
             for (var entry : servicesStructure.entrySet()) {
                 Service incomingService = createServiceObject(serviceName, entry.getKey(), entry.getValue(), objectList);
                 Service existingService = serviceCache.peek(incomingService.getId());
-                if(existingService == null) {
+                if(existingService != null && serviceUtils.canUpdateInPlace(existingService, incomingService) && updateInPlace(existingService, incomingService)) {
+                    log.debug("Backends of service {} updated without redeploying its routes", incomingService.getId());
+                } else if(existingService == null || serviceUtils.didServiceChange(existingService, incomingService)) {
                     boolean createRoute = true;
                     if(incomingService.getServiceCapiInstances() != null) {
                         if(!incomingService.getServiceCapiInstances().getInstances().containsKey(capiNamespace)) {
                             createRoute = false;
                         }
                     }
-                    if(createRoute) {
-                        if(serviceUtils.checkIfOpenApiIsEnabled(incomingService, client)) {
-                            createRoute(incomingService);
-                        }
-                    }
+                    pendingServices.add(new PendingService(serviceName, incomingService, existingService, createRoute));
                 } else {
-                    if(serviceUtils.updateExistingService(existingService, incomingService, serviceCache)) {
-                        boolean createRoute = true;
-                        if(incomingService.getServiceCapiInstances() != null) {
-                            if(!incomingService.getServiceCapiInstances().getInstances().containsKey(capiNamespace)) {
-                                createRoute = false;
-                            }
-                        }
-                        if(createRoute) {
-                            if(serviceUtils.checkIfOpenApiIsEnabled(incomingService, client)) {
-                                createRoute(incomingService);
-                            }
-                        }
+                    log.trace("No changes detected for Service: {}.", existingService.getId());
+                }
+            }
+        }
+
+        //OpenAPI definitions are downloaded concurrently, routes are deployed one by one afterwards
+        Map<String, Callable<Boolean>> openApiRequests = new HashMap<>();
+        for(PendingService pendingService : pendingServices) {
+            if(pendingService.createRoute()) {
+                Service incomingService = pendingService.incomingService();
+                openApiRequests.put(incomingService.getId(), () -> serviceUtils.checkIfOpenApiIsEnabled(incomingService, client));
+            }
+        }
+        Map<String, Boolean> openApiResults = fetchConcurrently(openApiRequests, deadline);
+
+        for(PendingService pendingService : pendingServices) {
+            Service incomingService = pendingService.incomingService();
+            synchronized(routeUtils.getServiceLock(incomingService.getId())) {
+                if(pendingService.existingService() != null) {
+                    serviceUtils.updateExistingService(pendingService.existingService(), incomingService, serviceCache);
+                }
+                if(pendingService.createRoute()) {
+                    if(Boolean.TRUE.equals(openApiResults.get(incomingService.getId()))) {
+                        createRoute(incomingService);
+                    } else {
+                        servicesToRetry.add(pendingService.serviceName());
                     }
                 }
             }
-        });
+        }
         connectedToConsul = true;
     }
 
+    //Serialized with the outlier detector, which swaps the targets of the same routes from its own thread
+    private boolean updateInPlace(Service existingService, Service incomingService) {
+        synchronized(routeUtils.getServiceLock(incomingService.getId())) {
+            if(!routeUtils.updateRouteTargets(incomingService)) {
+                return false;
+            }
+            incomingService.setOpenAPI(existingService.getOpenAPI());
+            createRoute(incomingService);
+            return true;
+        }
+    }
+
+    //Whatever did not finish before the deadline is cancelled and left out
+    private <T> Map<String, T> fetchConcurrently(Map<String, Callable<T>> requests, long deadline) throws InterruptedException {
+        Map<String, T> results = new HashMap<>();
+        if(requests.isEmpty()) {
+            return results;
+        }
+        List<String> keys = new ArrayList<>(requests.keySet());
+        List<Callable<T>> callables = new ArrayList<>();
+        for(String key : keys) {
+            callables.add(requests.get(key));
+        }
+        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+        List<Future<T>> futures = fetchExecutor.invokeAll(callables, remaining, TimeUnit.MILLISECONDS);
+        for(int i = 0; i < futures.size(); i++) {
+            Future<T> future = futures.get(i);
+            if(future.isCancelled()) {
+                log.warn("Discovery deadline reached before {} was fetched", keys.get(i));
+                continue;
+            }
+            try {
+                T result = future.get();
+                if(result != null) {
+                    results.put(keys.get(i), result);
+                }
+            } catch (ExecutionException e) {
+                log.warn("Error fetching {}: {}", keys.get(i), e.getCause().getMessage());
+            }
+        }
+        return results;
+    }
+
+    private ExecutorService createFetchExecutor(int fetchConcurrency) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(fetchConcurrency, fetchConcurrency, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "capi-consul-fetch-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        //Idle between discovery cycles, the threads are not kept
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
     private Map<String, Set<Mapping>> groupByServiceId(List<ConsulObject> consulService) {
         Map<String, Set<Mapping>> groupedService = new HashMap<>();
         Set<String> serviceIdList = new HashSet<>();
@@ -346,18 +699,29 @@ public class ConsulNodeDiscovery {
     private void createRoute(Service incomingService) {
         if(incomingService.getServiceMeta().getState() == null || incomingService.getServiceMeta().getState().equals(State.PUBLISHED)) {
             serviceCache.put(incomingService.getId(), incomingService);
+            if(outlierDetector != null) {
+                outlierDetector.retainHosts(incomingService.getId(), incomingService.getMappingList());
+            }
             if(incomingService.getServiceMeta().getType().equalsIgnoreCase(Constants.WEBSOCKET_TYPE) &&
                     (capiRunningMode.equalsIgnoreCase(Constants.WEBSOCKET_TYPE) || capiRunningMode.equalsIgnoreCase(Constants.FULL_TYPE)) && websocketUtils != null) {
                 WebsocketClient websocketClient = websocketUtils.createWebsocketClient(incomingService);
-                if(websocketClient != null && websocketClientMap != null) {
-                    websocketClientMap.put(websocketClient.getServiceId(), websocketClient);
+                if(websocketClient != null && websocketClientBatch != null) {
+                    websocketClientBatch.put(websocketClient.getServiceId(), websocketClient);
                 }
             } else if(incomingService.getServiceMeta().getType().equalsIgnoreCase(Constants.SSE_TYPE) &&
                     (capiRunningMode.equalsIgnoreCase(Constants.SSE_TYPE) || capiRunningMode.equalsIgnoreCase(Constants.FULL_TYPE))) {
                 log.trace("Creating SSE client for service: {}", incomingService.getId());
                 SSEClient sseClient = sseUtils.createSSEClient(incomingService);
-                if(sseClient != null && sseClientMap != null) {
-                    sseClientMap.put(sseClient.getApiId(), sseClient);
+                if(sseClient != null && sseClientBatch != null) {
+                    sseClientBatch.put(sseClient.getApiId(), sseClient);
+                }
+            } else if(incomingService.getServiceMeta().getType().equalsIgnoreCase(Constants.GRPC_TYPE) &&
+                    (capiRunningMode.equalsIgnoreCase(Constants.GRPC_TYPE) || capiRunningMode.equalsIgnoreCase(Constants.FULL_TYPE)) && grpcUtils != null) {
+                GrpcClient grpcClient = grpcUtils.createGrpcClient(incomingService);
+                if(grpcClient != null && grpcClientBatch != null) {
+                    //A service is routed by each of its gRPC services, drop the ones it no longer declares
+                    grpcClientBatch.removeIf(existingClient -> existingClient.getServiceId().equals(incomingService.getId()));
+                    grpcClient.getGrpcServices().forEach(grpcService -> grpcClientBatch.put(grpcService, grpcClient));
                 }
 
             } else if(capiRunningMode.equalsIgnoreCase(Constants.FULL_TYPE) && (incomingService.getServiceMeta().getType() == null || incomingService.getServiceMeta().getType().equals("rest"))) {
@@ -370,12 +734,18 @@ public class ConsulNodeDiscovery {
                             directRouteProcessor.setHttpUtils(httpUtils);
                             directRouteProcessor.setOpaService(opaService);
                             directRouteProcessor.setServiceCache(serviceCache);
+                            directRouteProcessor.setConcurrencyLimitProcessor(concurrencyLimitProcessor);
                             camelContext.addRoutes(directRouteProcessor);
                         } catch (Exception e) {
                             log.error(e.getMessage(), e);
                         }
                     }
                 }
+                if(incomingService.getServiceMeta().isNativeProxy() && nativeUtils != null && nativeClientBatch != null) {
+                    log.trace("Creating native client for service: {}", incomingService.getId());
+                    NativeClient nativeClient = nativeUtils.createNativeClient(incomingService);
+                    nativeClientBatch.put(nativeClient.getServiceId(), nativeClient);
+                }
             }
         }
     }
@@ -388,9 +758,15 @@ public class ConsulNodeDiscovery {
         this.capiContext = capiContext;
     }
 
-    private HttpRequest buildServicesHttpRequest(ConsulHosts.HostConfig hostConfig) {
+    private HttpRequest buildServicesHttpRequest(ConsulHosts.HostConfig hostConfig, long index) {
         HttpRequest.Builder builder = HttpRequest.newBuilder();
-        URI uri = URI.create(hostConfig.getEndpoint() + GET_ALL_SERVICES);
+        Duration timeout = Duration.ofMinutes(2);
+        String blockingQuery = "";
+        if(index > 0) {
+            blockingQuery = "?index=" + index + "&wait=" + blockingQueryWait + "s";
+            timeout = Duration.ofSeconds(blockingQueryWait + 30L);
+        }
+        URI uri = URI.create(hostConfig.getEndpoint() + GET_ALL_SERVICES + blockingQuery);
         if (uri.getPath() != null && uri.getPath().contains("..")) {
             throw new IllegalArgumentException("Path traversal detected in URI path: " + uri.getPath());
         }
@@ -399,13 +775,19 @@ public class ConsulNodeDiscovery {
         }
         return builder
                 .uri(uri)
-                .timeout(Duration.ofMinutes(2))
+                .timeout(timeout)
                 .build();
     }
 
-    private HttpRequest buildServiceNameHttpRequest(ConsulHosts.HostConfig hostConfig, String serviceName) {
+    private HttpRequest buildServiceNameHttpRequest(ConsulHosts.HostConfig hostConfig, String serviceName, long index) {
         HttpRequest.Builder builder = HttpRequest.newBuilder();
-        URI uri = URI.create(hostConfig.getEndpoint() + GET_SERVICE_BY_NAME + serviceName);
+        Duration timeout = Duration.ofMinutes(2);
+        String blockingQuery = "";
+        if(index > 0) {
+            blockingQuery = "?index=" + index + "&wait=" + blockingQueryWait + "s";
+            timeout = Duration.ofSeconds(blockingQueryWait + 30L);
+        }
+        URI uri = URI.create(hostConfig.getEndpoint() + GET_SERVICE_BY_NAME + serviceName + blockingQuery);
         if (uri.getPath() != null && uri.getPath().contains("..")) {
             throw new IllegalArgumentException("Path traversal detected in URI path: " + uri.getPath());
         }
@@ -414,7 +796,7 @@ public class ConsulNodeDiscovery {
         }
         return builder
                 .uri(uri)
-                .timeout(Duration.ofMinutes(2))
+                .timeout(timeout)
                 .build();
     }
 
@@ -434,10 +816,34 @@ public class ConsulNodeDiscovery {
         this.sseUtils = sseUtils;
     }
 
+    public void setGrpcUtils(GrpcUtils grpcUtils) {
+        this.grpcUtils = grpcUtils;
+    }
+
+    public void setGrpcClientRegistry(ClientRegistry<GrpcClient> grpcClientRegistry) {
+        this.grpcClientBatch = grpcClientRegistry.batch();
+    }
+
+    public void setNativeUtils(NativeUtils nativeUtils) {
+        this.nativeUtils = nativeUtils;
+    }
+
+    public void setNativeClientRegistry(ClientRegistry<NativeClient> nativeClientRegistry) {
+        this.nativeClientBatch = nativeClientRegistry.batch();
+    }
+
     public void setOpaService(OpaService opaService) {
         this.opaService = opaService;
     }
 
+    public void setConcurrencyLimitProcessor(ConcurrencyLimitProcessor concurrencyLimitProcessor) {
+        this.concurrencyLimitProcessor = concurrencyLimitProcessor;
+    }
+
+    public void setOutlierDetector(OutlierDetector outlierDetector) {
+        this.outlierDetector = outlierDetector;
+    }
+
     public void setHttpUtils(HttpUtils httpUtils) {
         this.httpUtils = httpUtils;
     }
@@ -462,6 +868,18 @@ public class ConsulNodeDiscovery {
         client = httpClientBuilder.build();
     }
 
+    public void setFetchLimits(int fetchConcurrency, long cycleDeadline) {
+        ExecutorService previousExecutor = fetchExecutor;
+        fetchExecutor = createFetchExecutor(fetchConcurrency);
+        previousExecutor.shutdown();
+        this.cycleDeadline = cycleDeadline;
+    }
+
+    public void setBlockingQueries(boolean blockingQueriesEnabled, int blockingQueryWait) {
+        this.blockingQueriesEnabled = blockingQueriesEnabled;
+        this.blockingQueryWait = blockingQueryWait;
+    }
+
     public void setServiceMetaExtrasPrefix(String serviceMetaExtrasPrefix) {
         this.serviceMetaExtrasPrefix = serviceMetaExtrasPrefix;
     }
@@ -496,4 +914,21 @@ public class ConsulNodeDiscovery {
              }
         }
     }
-}
\ No newline at end of file
+
+    private static class HostCatalog {
+        private final ConsulHosts.HostConfig hostConfig;
+        private final Map<String, ServiceEntry> services = new HashMap<>();
+        private final Map<String, CompletableFuture<HttpResponse<String>>> serviceWatches = new HashMap<>();
+        private CompletableFuture<HttpResponse<String>> pendingRequest;
+        private long index;
+        private boolean loaded;
+
+        HostCatalog(ConsulHosts.HostConfig hostConfig) {
+            this.hostConfig = hostConfig;
+        }
+    }
+
+    private record ServiceEntry(long index, List<ConsulObject> consulObjects) {}
+
+    private record PendingService(String serviceName, Service incomingService, Service existingService, boolean createRoute) {}
+}
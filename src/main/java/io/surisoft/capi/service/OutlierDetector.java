@@ -0,0 +1,220 @@
+package io.surisoft.capi.service;
+
+import io.surisoft.capi.schema.Mapping;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.utils.Constants;
+import jakarta.annotation.PostConstruct;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.http.HttpEndpoint;
+import org.apache.camel.spi.CamelEvent;
+import org.apache.camel.support.EventNotifierSupport;
+import org.apache.camel.support.service.ServiceHelper;
+import org.cache2k.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//Passive health checking of the backends of every service
+@Component
+@ConditionalOnProperty(prefix = "capi.route.outlier-detection", name = "enabled", havingValue = "true")
+public class OutlierDetector {
+    private static final Logger log = LoggerFactory.getLogger(OutlierDetector.class);
+    private final CamelContext camelContext;
+    private final Cache<String, Service> serviceCache;
+    private final int consecutiveFailures;
+    private final long baseEjectionTime;
+    private final long maxEjectionTime;
+    private final int maxEjectionPercent;
+    private final Map<String, Map<String, HostState>> hostStatesByService = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "capi-outlier-detection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Consumer<String> ejectionListener;
+
+    public OutlierDetector(CamelContext camelContext,
+                           Cache<String, Service> serviceCache,
+                           @Value("${capi.route.outlier-detection.consecutive-failures}") int consecutiveFailures,
+                           @Value("${capi.route.outlier-detection.base-ejection-time}") long baseEjectionTime,
+                           @Value("${capi.route.outlier-detection.max-ejection-time}") long maxEjectionTime,
+                           @Value("${capi.route.outlier-detection.max-ejection-percent}") int maxEjectionPercent) {
+        this.camelContext = camelContext;
+        this.serviceCache = serviceCache;
+        this.consecutiveFailures = consecutiveFailures;
+        this.baseEjectionTime = baseEjectionTime;
+        this.maxEjectionTime = maxEjectionTime;
+        this.maxEjectionPercent = maxEjectionPercent;
+    }
+
+    @PostConstruct
+    public void post() {
+        OutlierEventNotifier outlierEventNotifier = new OutlierEventNotifier();
+        camelContext.getManagementStrategy().addEventNotifier(outlierEventNotifier);
+        ServiceHelper.startService(outlierEventNotifier);
+    }
+
+    //Called with the service id every time one of its backends is ejected or comes back
+    public void setEjectionListener(Consumer<String> ejectionListener) {
+        this.ejectionListener = ejectionListener;
+    }
+
+    public static String hostKey(String hostname, int port) {
+        return port > -1 ? hostname + ":" + port : hostname;
+    }
+
+    public boolean isEjected(String serviceId, Mapping mapping) {
+        return isEjected(serviceId, hostKey(mapping.getHostname(), mapping.getPort()));
+    }
+
+    public boolean isEjected(String serviceId, String hostKey) {
+        Map<String, HostState> hostStates = hostStatesByService.get(serviceId);
+        if(hostStates == null) {
+            return false;
+        }
+        HostState hostState = hostStates.get(hostKey);
+        return hostState != null && hostState.ejectedUntil > System.currentTimeMillis();
+    }
+
+    public void onResult(String serviceId, String hostKey, boolean failed) {
+        if(serviceId == null || hostKey == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, HostState> hostStates = hostStatesByService.computeIfAbsent(serviceId, k -> new ConcurrentHashMap<>());
+        HostState hostState = hostStates.computeIfAbsent(hostKey, k -> new HostState());
+        if(!failed) {
+            hostState.success(now, baseEjectionTime);
+            return;
+        }
+        if(hostState.failure() >= consecutiveFailures) {
+            eject(serviceId, hostKey, hostStates, hostState, now);
+        }
+    }
+
+    //Hosts a redeployed service no longer routes to are forgotten, they would count against the maximum ejection percentage
+    public void retainHosts(String serviceId, Collection<Mapping> mappings) {
+        Map<String, HostState> hostStates = hostStatesByService.get(serviceId);
+        if(hostStates != null) {
+            Set<String> hostKeys = new HashSet<>();
+            for(Mapping mapping : mappings) {
+                hostKeys.add(hostKey(mapping.getHostname(), mapping.getPort()));
+            }
+            hostStates.keySet().retainAll(hostKeys);
+        }
+    }
+
+    public void removeService(String serviceId) {
+        hostStatesByService.remove(serviceId);
+    }
+
+    //The backends of a service currently ejected, with the time they come back
+    public Map<String, Long> getEjectedHosts(String serviceId) {
+        Map<String, Long> ejectedHosts = new TreeMap<>();
+        Map<String, HostState> hostStates = hostStatesByService.get(serviceId);
+        if(hostStates != null) {
+            long now = System.currentTimeMillis();
+            hostStates.forEach((hostKey, hostState) -> {
+                if(hostState.ejectedUntil > now) {
+                    ejectedHosts.put(hostKey, hostState.ejectedUntil);
+                }
+            });
+        }
+        return ejectedHosts;
+    }
+
+    private void eject(String serviceId, String hostKey, Map<String, HostState> hostStates, HostState hostState, long now) {
+        Service service = serviceCache.get(serviceId);
+        if(service == null) {
+            return;
+        }
+        long ejectionTime;
+        //One ejection at a time per service, to respect the maximum ejection percentage
+        synchronized(hostStates) {
+            if(hostState.ejectedUntil > now || !canEject(service, hostStates, now)) {
+                return;
+            }
+            ejectionTime = Math.min(maxEjectionTime, baseEjectionTime << Math.min(hostState.ejections, 20));
+            hostState.ejections++;
+            hostState.consecutiveFailures = 0;
+            hostState.ejectedUntil = now + ejectionTime;
+        }
+        log.warn("Ejecting host {} of service {} for {} ms", hostKey, serviceId, ejectionTime);
+        notifyListener(serviceId);
+        scheduledExecutorService.schedule(() -> {
+            log.info("Host {} of service {} is back", hostKey, serviceId);
+            notifyListener(serviceId);
+        }, ejectionTime, TimeUnit.MILLISECONDS);
+    }
+
+    //At least one backend always stays, even with a single one over the maximum ejection percentage
+    private boolean canEject(Service service, Map<String, HostState> hostStates, long now) {
+        int hosts = service.getMappingList().size();
+        long ejected = hostStates.values().stream().filter(hostState -> hostState.ejectedUntil > now).count();
+        return ejected + 1 < hosts && (ejected + 1) * 100 <= (long) hosts * maxEjectionPercent;
+    }
+
+    private void notifyListener(String serviceId) {
+        Consumer<String> listener = ejectionListener;
+        if(listener != null) {
+            scheduledExecutorService.execute(() -> listener.accept(serviceId));
+        }
+    }
+
+    private static final class HostState {
+        private int consecutiveFailures;
+        private volatile int ejections;
+        private volatile long ejectedUntil;
+
+        private synchronized int failure() {
+            return ++consecutiveFailures;
+        }
+
+        //A host healthy for the base ejection time after coming back starts over with the base ejection time
+        private synchronized void success(long now, long baseEjectionTime) {
+            consecutiveFailures = 0;
+            if(ejections > 0 && now > ejectedUntil + baseEjectionTime) {
+                ejections = 0;
+            }
+        }
+    }
+
+    private final class OutlierEventNotifier extends EventNotifierSupport {
+        @Override
+        public void notify(CamelEvent camelEvent) {
+            if(camelEvent instanceof CamelEvent.ExchangeSentEvent exchangeSentEvent
+                    && exchangeSentEvent.getEndpoint() instanceof HttpEndpoint httpEndpoint) {
+                Exchange exchange = exchangeSentEvent.getExchange();
+                Integer responseCode = exchange.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+                boolean failed = exchange.getException() != null || (responseCode != null && responseCode >= 500);
+                URI uri = httpEndpoint.getHttpUri();
+                onResult(exchange.getProperty(Constants.CAPI_SERVICE_ID, String.class), hostKey(uri.getHost(), uri.getPort()), failed);
+            }
+        }
+
+        @Override
+        public boolean isEnabled(CamelEvent event) {
+            return event.getType() == CamelEvent.Type.ExchangeSent;
+        }
+
+        @Override
+        public String toString() {
+            return "OutlierEventNotifier";
+        }
+    }
+}
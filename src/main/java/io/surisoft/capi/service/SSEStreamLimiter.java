@@ -0,0 +1,203 @@
+package io.surisoft.capi.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.SSEClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+//Caps the open SSE streams of every service and of every consumer, zero means no cap
+@Component
+@ConditionalOnProperty(prefix = "capi.sse", name = "enabled", havingValue = "true")
+public class SSEStreamLimiter {
+    private static final Logger log = LoggerFactory.getLogger(SSEStreamLimiter.class);
+    private final MeterRegistry meterRegistry;
+    private final ClientRegistry<SSEClient> sseClientRegistry;
+    private final int maxStreamsPerService;
+    private final int maxStreamsPerConsumer;
+    private final Map<String, ServiceStreams> serviceStreams = new ConcurrentHashMap<>();
+    //Consumers are removed with their last stream, so the size of the map is the number of active consumers
+    private final Map<String, Integer> consumerStreams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "capi-sse-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SSEStreamLimiter(MeterRegistry meterRegistry,
+                            ClientRegistry<SSEClient> sseClientRegistry,
+                            @Value("${capi.sse.limits.max-streams-per-service}") int maxStreamsPerService,
+                            @Value("${capi.sse.limits.max-streams-per-consumer}") int maxStreamsPerConsumer) {
+        this.meterRegistry = meterRegistry;
+        this.sseClientRegistry = sseClientRegistry;
+        this.maxStreamsPerService = maxStreamsPerService;
+        this.maxStreamsPerConsumer = maxStreamsPerConsumer;
+    }
+
+    @PostConstruct
+    public void post() {
+        Gauge.builder("capi_sse_active_consumers", consumerStreams, Map::size)
+                .strongReference(true)
+                .register(meterRegistry);
+        scheduledExecutorService.scheduleAtFixedRate(this::sampleThroughput, 1, 1, TimeUnit.SECONDS);
+        sseClientRegistry.addListener(snapshot -> retainServices(snapshot.clients().values().stream().map(SSEClient::getApiId).collect(Collectors.toSet())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    public Permit tryAcquire(String serviceId, String consumer) {
+        ServiceStreams streams = serviceStreams.computeIfAbsent(serviceId, this::registerService);
+        if(!streams.tryAcquire(maxStreamsPerService)) {
+            log.debug("Service {} reached its limit of {} SSE streams", serviceId, maxStreamsPerService);
+            return null;
+        }
+        if(consumer != null && !tryAcquireConsumer(consumer)) {
+            streams.release();
+            log.debug("Consumer {} reached its limit of {} SSE streams", consumer, maxStreamsPerConsumer);
+            return null;
+        }
+        return new Permit(streams, consumer);
+    }
+
+    public int getActiveStreams(String serviceId) {
+        ServiceStreams streams = serviceStreams.get(serviceId);
+        return streams == null ? 0 : streams.activeStreams.get();
+    }
+
+    public int getConsumerStreams(String consumer) {
+        return consumerStreams.getOrDefault(consumer, 0);
+    }
+
+    public long getBytesPerSecond(String serviceId) {
+        ServiceStreams streams = serviceStreams.get(serviceId);
+        return streams == null ? 0 : streams.bytesPerSecond;
+    }
+
+    void sampleThroughput() {
+        serviceStreams.values().forEach(ServiceStreams::sample);
+    }
+
+    void retainServices(Set<String> serviceIds) {
+        serviceStreams.entrySet().removeIf(entry -> {
+            if(serviceIds.contains(entry.getKey())) {
+                return false;
+            }
+            //Streams still open release their permits to the removed entry
+            entry.getValue().meters.forEach(meterRegistry::remove);
+            return true;
+        });
+    }
+
+    private boolean tryAcquireConsumer(String consumer) {
+        AtomicBoolean acquired = new AtomicBoolean();
+        consumerStreams.compute(consumer, (key, openStreams) -> {
+            int current = openStreams == null ? 0 : openStreams;
+            if(maxStreamsPerConsumer > 0 && current >= maxStreamsPerConsumer) {
+                return openStreams;
+            }
+            acquired.set(true);
+            return current + 1;
+        });
+        return acquired.get();
+    }
+
+    private void releaseConsumer(String consumer) {
+        consumerStreams.computeIfPresent(consumer, (key, openStreams) -> openStreams > 1 ? openStreams - 1 : null);
+    }
+
+    private ServiceStreams registerService(String serviceId) {
+        ServiceStreams streams = new ServiceStreams();
+        streams.meters = List.of(
+                Gauge.builder("capi_sse_active_streams", streams, s -> s.activeStreams.get())
+                        .tag("service", serviceId)
+                        .strongReference(true)
+                        .register(meterRegistry),
+                Gauge.builder("capi_sse_bytes_per_second", streams, s -> s.bytesPerSecond)
+                        .tag("service", serviceId)
+                        .strongReference(true)
+                        .register(meterRegistry),
+                FunctionCounter.builder("capi_sse_sent_bytes", streams, s -> s.sentBytes.sum())
+                        .tag("service", serviceId)
+                        .baseUnit("bytes")
+                        .register(meterRegistry));
+        return streams;
+    }
+
+    private static final class ServiceStreams {
+        private final AtomicInteger activeStreams = new AtomicInteger();
+        private final LongAdder sentBytes = new LongAdder();
+        private volatile long bytesPerSecond;
+        private long lastSentBytes;
+        private List<Meter> meters = List.of();
+
+        private boolean tryAcquire(int maxStreams) {
+            while(true) {
+                int current = activeStreams.get();
+                if(maxStreams > 0 && current >= maxStreams) {
+                    return false;
+                }
+                if(activeStreams.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            activeStreams.decrementAndGet();
+        }
+
+        private void sample() {
+            long total = sentBytes.sum();
+            bytesPerSecond = total - lastSentBytes;
+            lastSentBytes = total;
+        }
+    }
+
+    //An open stream, released once when the downstream exchange completes
+    public final class Permit {
+        private final ServiceStreams streams;
+        private final String consumer;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ServiceStreams streams, String consumer) {
+            this.streams = streams;
+            this.consumer = consumer;
+        }
+
+        public void addSentBytes(long bytes) {
+            streams.sentBytes.add(bytes);
+        }
+
+        public void release() {
+            if(released.compareAndSet(false, true)) {
+                streams.release();
+                if(consumer != null) {
+                    releaseConsumer(consumer);
+                }
+            }
+        }
+    }
+}
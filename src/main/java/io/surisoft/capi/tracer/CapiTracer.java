@@ -66,6 +66,8 @@ public class CapiTracer extends ServiceSupport implements RoutePolicyFactory, St
         exclusions.add("bean://consistencyChecker");
         exclusions.add("timer://consistency-checker");
         exclusions.add("timer://consul-KV-Store");
+        exclusions.add("timer://throttle-replication");
+        exclusions.add("bean://throttleReplicator");
         exclusions.add("kafka://capi");
         this.httpUtils = httpUtils;
         this.capiNamespace = capiNamespace;
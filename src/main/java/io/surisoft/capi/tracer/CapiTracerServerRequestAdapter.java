@@ -39,8 +39,10 @@ public class CapiTracerServerRequestAdapter {
             try {
                 accessToken = capiTracer.getHttpUtils().processAuthorizationAccessToken(exchange);
                 if(accessToken != null) {
-                    SignedJWT signedJWT = SignedJWT.parse(accessToken);
-                    JWTClaimsSet jwtClaimsSet = signedJWT.getJWTClaimsSet();
+                    JWTClaimsSet jwtClaimsSet = capiTracer.getHttpUtils().getVerifiedClaims(exchange, accessToken);
+                    if(jwtClaimsSet == null) {
+                        jwtClaimsSet = SignedJWT.parse(accessToken).getJWTClaimsSet();
+                    }
                     Date expirationTime = jwtClaimsSet.getExpirationTime();
                     if(expirationTime.before(Calendar.getInstance().getTime())) {
                         span.tag(Constants.CAPI_TOKEN_EXPIRED, Boolean.toString(true));
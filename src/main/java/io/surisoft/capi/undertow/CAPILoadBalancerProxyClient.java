@@ -1,32 +1,75 @@
 package io.surisoft.capi.undertow;
 
+import io.surisoft.capi.service.OutlierDetector;
 import io.surisoft.capi.tracer.CapiUndertowTracer;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
 import io.undertow.server.handlers.proxy.ProxyCallback;
 import io.undertow.server.handlers.proxy.ProxyConnection;
+import io.undertow.util.AttachmentKey;
 import io.undertow.util.HttpString;
+import org.xnio.OptionMap;
+import org.xnio.ssl.XnioSsl;
 
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 
 public class CAPILoadBalancerProxyClient extends LoadBalancingProxyClient {
 
+    private static final AttachmentKey<String> SELECTED_HOST_KEY = AttachmentKey.create(String.class);
     private final CapiUndertowTracer capiUndertowTracer;
+    private final OutlierDetector outlierDetector;
+    private final String serviceId;
+    private final List<URI> hostUris = new ArrayList<>();
     private volatile String selectedHost;
+    private volatile int hostCount;
 
-    public CAPILoadBalancerProxyClient(CapiUndertowTracer capiUndertowTracer) {
+    public CAPILoadBalancerProxyClient(CapiUndertowTracer capiUndertowTracer, OutlierDetector outlierDetector, String serviceId) {
         this.capiUndertowTracer = capiUndertowTracer;
+        this.outlierDetector = outlierDetector;
+        this.serviceId = serviceId;
+    }
+
+    //Every other addHost ends up here
+    @Override
+    public synchronized LoadBalancingProxyClient addHost(InetSocketAddress bindAddress, URI host, String jvmRoute, XnioSsl ssl, OptionMap options) {
+        LoadBalancingProxyClient loadBalancingProxyClient = super.addHost(bindAddress, host, jvmRoute, ssl, options);
+        hostUris.add(host);
+        hostCount = hostUris.size();
+        return loadBalancingProxyClient;
+    }
+
+    @Override
+    public synchronized LoadBalancingProxyClient removeHost(URI uri) {
+        LoadBalancingProxyClient loadBalancingProxyClient = super.removeHost(uri);
+        hostUris.remove(uri);
+        hostCount = hostUris.size();
+        return loadBalancingProxyClient;
+    }
+
+    public int getHostCount() {
+        return hostCount;
     }
 
     public Host selectHost(HttpServerExchange exchange) {
         Host host = super.selectHost(exchange);
+        //Ejected hosts are skipped, the outlier detector always leaves at least one
+        for(int i = 1; host != null && outlierDetector != null && i < hostCount && outlierDetector.isEjected(serviceId, hostKey(host)); i++) {
+            host = super.selectHost(exchange);
+        }
         if(host != null) {
             selectedHost = host.getUri().getHost();
             exchange.getRequestHeaders().put(HttpString.tryFromString("CapiSelectedHost"), host.getUri().getHost());
             if(capiUndertowTracer != null) {
                 capiUndertowTracer.capiProxyRequest(host.getUri());
             }
+            if(outlierDetector != null) {
+                reportResult(exchange, hostKey(host));
+            }
             return host;
         }
         //no available hosts
@@ -36,4 +79,17 @@ public class CAPILoadBalancerProxyClient extends LoadBalancingProxyClient {
     public String getSelectedHost() {
         return selectedHost;
     }
-}
\ No newline at end of file
+
+    private void reportResult(HttpServerExchange exchange, String hostKey) {
+        if(exchange.putAttachment(SELECTED_HOST_KEY, hostKey) == null) {
+            exchange.addExchangeCompleteListener((completedExchange, nextListener) -> {
+                outlierDetector.onResult(serviceId, completedExchange.getAttachment(SELECTED_HOST_KEY), completedExchange.getStatusCode() >= 500);
+                nextListener.proceed();
+            });
+        }
+    }
+
+    private String hostKey(Host host) {
+        return OutlierDetector.hostKey(host.getUri().getHost(), host.getUri().getPort());
+    }
+}
@@ -1,28 +1,26 @@
 package io.surisoft.capi.undertow;
 
+import io.surisoft.capi.exception.CapiUndertowException;
+import io.surisoft.capi.oidc.WebsocketAuthorization;
+import io.surisoft.capi.schema.ClientRegistry;
 import io.surisoft.capi.schema.GrpcClient;
-import io.surisoft.capi.schema.Service;
-import io.surisoft.capi.schema.ServiceMeta;
-import io.surisoft.capi.schema.WebsocketClient;
+import io.surisoft.capi.tracer.CapiUndertowTracer;
 import io.surisoft.capi.utils.Constants;
-import io.surisoft.capi.utils.WebsocketUtils;
+import io.surisoft.capi.utils.ErrorMessage;
+import io.surisoft.capi.utils.GrpcUtils;
 import io.undertow.Undertow;
-import io.undertow.UndertowOptions;
-import io.undertow.server.handlers.proxy.LoadBalancingProxyClient;
-import io.undertow.server.handlers.proxy.ProxyHandler;
+import io.undertow.server.HttpServerExchange;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import org.xnio.OptionMap;
 
 import javax.net.ssl.SSLContext;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.util.Map;
 import java.util.Optional;
 
+//Proxies gRPC calls by the package.Service part of the /package.Service/Method path
 @Component
 @ConditionalOnProperty(prefix = "capi.grpc", name = "enabled", havingValue = "true")
 public class GrpcGateway {
@@ -30,59 +28,66 @@ public class GrpcGateway {
     private static final Logger log = LoggerFactory.getLogger(GrpcGateway.class);
     private final int grpcPort;
     private final Optional<SSLContext> sslContext;
-    private final WebsocketUtils websocketUtils;
-    private final Map<String, GrpcClient> grpcClients;
+    private final GrpcUtils grpcUtils;
+    private final ClientRegistry<GrpcClient> grpcClients;
+    private final UndertowServerFactory undertowServerFactory;
+    private final Optional<CapiUndertowTracer> capiUndertowTracer;
+    private WebsocketAuthorization grpcAuthorization;
 
     public GrpcGateway(@Value("${capi.grpc.server.port}") int grpcPort,
                        Optional<SSLContext> sslContext,
-                       WebsocketUtils websocketUtils,
-                       Map<String, GrpcClient> grpcClients) {
+                       GrpcUtils grpcUtils,
+                       ClientRegistry<GrpcClient> grpcClients,
+                       UndertowServerFactory undertowServerFactory,
+                       Optional<CapiUndertowTracer> capiUndertowTracer) {
         this.grpcPort = grpcPort;
         this.sslContext = sslContext;
-        this.websocketUtils = websocketUtils;
+        this.grpcUtils = grpcUtils;
         this.grpcClients = grpcClients;
-
+        this.undertowServerFactory = undertowServerFactory;
+        this.capiUndertowTracer = capiUndertowTracer;
     }
 
     public void runProxy() {
+        try {
+            grpcAuthorization = grpcUtils.createGrpcAuthorization();
+        } catch (CapiUndertowException e) {
+            log.warn(e.getMessage());
+        }
 
-        Undertow.Builder builder = Undertow.builder();
+        Undertow.Builder builder = undertowServerFactory.builder("gRPC", true);
         if(sslContext.isPresent()) {
             builder.addHttpsListener(grpcPort, Constants.UNDERTOW_LISTENING_ADDRESS, sslContext.get());
         } else {
             builder.addHttpListener(grpcPort, Constants.UNDERTOW_LISTENING_ADDRESS);
         }
 
-        //create temp
-        ProxyHandler proxyHandler = createTempObjects();
-        GrpcClient grpcClient = grpcClients.get("TEST-GRPC-CLIENT");
-
-
-        builder.setServerOption(UndertowOptions.ENABLE_HTTP2, true);
-        builder.setHandler(httpServerExchange -> {
-            httpServerExchange.setRequestURI("/grpc.health.v1.Health/Check");
-            httpServerExchange.setRelativePath("/grpc.health.v1.Health/Check");
-            proxyHandler.handleRequest(httpServerExchange);
-        });
-
+        builder.setHandler(this::handleRequest);
         builder.build().start();
-
     }
 
-    private ProxyHandler createTempObjects() {
-        //TEMP INFO:
-        Service service = new Service();
-        service.setName("local-grpc");
-        ServiceMeta data = new ServiceMeta();
-        LoadBalancingProxyClient proxy = null;
-        try {
-            proxy = new LoadBalancingProxyClient()
-                    .addHost(new URI("https://localhost:8443"), null, websocketUtils.getXnioSsl(), OptionMap.create(UndertowOptions.ENABLE_HTTP2, true))
-                    .setConnectionsPerThread(20);
-        } catch (URISyntaxException e) {
-            throw new RuntimeException(e);
+    void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        String requestPath = httpServerExchange.getRequestPath();
+        if(requestPath.equals(Constants.UNDERSTOW_HEALTH_PATH)) {
+            httpServerExchange.setStatusCode(HttpServletResponse.SC_OK);
+            httpServerExchange.endExchange();
+            return;
+        }
+        String grpcService = grpcUtils.getGrpcService(requestPath);
+        GrpcClient grpcClient = grpcClients.get(grpcService);
+        if(grpcClient == null) {
+            log.debug(ErrorMessage.IS_NOT_PRESENT, requestPath);
+            grpcUtils.sendGrpcError(httpServerExchange, Constants.GRPC_STATUS_UNIMPLEMENTED, "Unknown service " + grpcService);
+            return;
+        }
+        capiUndertowTracer.ifPresent(undertowTracer -> undertowTracer.serverRequest(httpServerExchange, grpcClient.getServiceId()));
+        boolean authorized = grpcAuthorization != null ? grpcAuthorization.isAuthorized(grpcClient, httpServerExchange) : !grpcClient.requiresSubscription();
+        if(authorized) {
+            log.debug(ErrorMessage.IS_AUTHORIZED, requestPath);
+            grpcClient.getHttpHandler().handleRequest(httpServerExchange);
+        } else {
+            log.debug(ErrorMessage.IS_NOT_AUTHORIZED, requestPath);
+            grpcUtils.sendGrpcError(httpServerExchange, Constants.GRPC_STATUS_PERMISSION_DENIED, "Not authorized");
         }
-
-        return ProxyHandler.builder().setProxyClient(proxy).setMaxRequestTime( 30000).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,299 @@
+package io.surisoft.capi.undertow;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import io.surisoft.capi.exception.AuthorizationException;
+import io.surisoft.capi.processor.ConcurrencyLimitProcessor;
+import io.surisoft.capi.processor.ThrottleProcessor;
+import io.surisoft.capi.schema.CapiRestError;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.ConcurrencyLimiter;
+import io.surisoft.capi.schema.NativeClient;
+import io.surisoft.capi.schema.RateLimitState;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.service.OpaService;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.ErrorMessage;
+import io.surisoft.capi.utils.HttpUtils;
+import io.surisoft.capi.utils.NativeUtils;
+import io.swagger.v3.oas.models.Operation;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+
+//Proxies rest services flagged as native straight from Undertow, skipping the Camel pipeline
+@Component
+@ConditionalOnProperty(prefix = "capi.native", name = "enabled", havingValue = "true")
+public class NativeGateway {
+    private static final Logger log = LoggerFactory.getLogger(NativeGateway.class);
+    private static final HttpString X_FORWARDED_HOST = HttpString.tryFromString(Constants.X_FORWARDED_HOST);
+    private static final HttpString X_FORWARDED_PREFIX = HttpString.tryFromString(Constants.X_FORWARDED_PREFIX);
+    private static final HttpString CAPI_GROUP_HEADER = HttpString.tryFromString(Constants.CAPI_GROUP_HEADER);
+    private static final HttpString ACCESS_CONTROL_ALLOW_ORIGIN = HttpString.tryFromString(Constants.ACCESS_CONTROL_ALLOW_ORIGIN);
+    private static final HttpString RATE_LIMIT_LIMIT = HttpString.tryFromString(Constants.RATE_LIMIT_LIMIT_HEADER);
+    private static final HttpString RATE_LIMIT_REMAINING = HttpString.tryFromString(Constants.RATE_LIMIT_REMAINING_HEADER);
+    private static final HttpString RATE_LIMIT_RESET = HttpString.tryFromString(Constants.RATE_LIMIT_RESET_HEADER);
+    private final int port;
+    private final ClientRegistry<NativeClient> nativeClients;
+    private final NativeUtils nativeUtils;
+    private final HttpUtils httpUtils;
+    private final Optional<SSLContext> sslContext;
+    private final UndertowServerFactory undertowServerFactory;
+    private final Optional<OpaService> opaService;
+    private final Optional<ThrottleProcessor> throttleProcessor;
+    private final Optional<ConcurrencyLimitProcessor> concurrencyLimitProcessor;
+    private final boolean gatewayCorsManagementEnabled;
+    private final String reverseProxyHost;
+    private final String capiContext;
+    private final Map<HttpString, String> managedHeaders = new HashMap<>();
+
+    public NativeGateway(@Value("${capi.native.server.port}") int port,
+                         ClientRegistry<NativeClient> nativeClients,
+                         NativeUtils nativeUtils,
+                         HttpUtils httpUtils,
+                         Optional<SSLContext> sslContext,
+                         UndertowServerFactory undertowServerFactory,
+                         Optional<OpaService> opaService,
+                         Optional<ThrottleProcessor> throttleProcessor,
+                         Optional<ConcurrencyLimitProcessor> concurrencyLimitProcessor,
+                         @Value("${capi.gateway.cors.management.enabled}") boolean gatewayCorsManagementEnabled,
+                         @Value("${capi.gateway.cors.management.allowed-headers}") List<String> accessControlAllowHeaders,
+                         @Value("${capi.oauth2.cookieName}") String oauth2CookieName,
+                         @Value("${capi.reverse.proxy.enabled}") boolean reverseProxyEnabled,
+                         @Value("${capi.reverse.proxy.host}") String reverseProxyHost,
+                         @Value("${camel.servlet.mapping.context-path}") String capiContextPath) {
+        this.port = port;
+        this.nativeClients = nativeClients;
+        this.nativeUtils = nativeUtils;
+        this.httpUtils = httpUtils;
+        this.sslContext = sslContext;
+        this.undertowServerFactory = undertowServerFactory;
+        this.opaService = opaService;
+        this.throttleProcessor = throttleProcessor;
+        this.concurrencyLimitProcessor = concurrencyLimitProcessor;
+        this.gatewayCorsManagementEnabled = gatewayCorsManagementEnabled;
+        this.reverseProxyHost = reverseProxyEnabled ? reverseProxyHost : null;
+        this.capiContext = httpUtils.getCapiContext(capiContextPath);
+
+        List<String> localAccessControlAllowHeaders = new ArrayList<>(accessControlAllowHeaders);
+        if(oauth2CookieName != null && !oauth2CookieName.isEmpty()) {
+            localAccessControlAllowHeaders.add(oauth2CookieName);
+        }
+        Constants.CAPI_CORS_MANAGED_HEADERS.forEach((k, v) -> managedHeaders.put(HttpString.tryFromString(k), v));
+        managedHeaders.put(HttpString.tryFromString(Constants.ACCESS_CONTROL_ALLOW_HEADERS), StringUtils.join(localAccessControlAllowHeaders, ","));
+    }
+
+    public void runProxy() {
+        Undertow.Builder builder = undertowServerFactory.builder("Native", false);
+
+        if(sslContext.isPresent()) {
+            builder.addHttpsListener(port, Constants.UNDERTOW_LISTENING_ADDRESS, sslContext.get());
+        } else {
+            builder.addHttpListener(port, Constants.UNDERTOW_LISTENING_ADDRESS);
+        }
+
+        builder.setHandler(this::handleRequest);
+        builder.build().start();
+    }
+
+    void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        String requestPath = httpServerExchange.getRequestPath();
+        String clientId = nativeUtils.getClientId(requestPath);
+        NativeClient nativeClient = nativeClients.get(clientId);
+        if(nativeClient == null) {
+            log.debug(ErrorMessage.IS_NOT_PRESENT, requestPath);
+            httpServerExchange.setStatusCode(Constants.NOT_FOUND_CODE);
+            httpServerExchange.endExchange();
+            return;
+        }
+        Service service = nativeClient.getService();
+
+        if(gatewayCorsManagementEnabled) {
+            processCors(httpServerExchange, nativeClient);
+        }
+        if(httpServerExchange.getRequestMethod().equals(Methods.OPTIONS)) {
+            httpServerExchange.setStatusCode(HttpServletResponse.SC_ACCEPTED);
+            httpServerExchange.endExchange();
+            return;
+        }
+
+        if(httpServerExchange.isInIoThread() && requiresWorker(service)) {
+            httpServerExchange.dispatch(this::handleRequest);
+            return;
+        }
+
+        String servicePath = nativeUtils.getServicePath(requestPath);
+        String accessToken = null;
+        JWTClaimsSet claimsSet = null;
+        try {
+            boolean secured = service.getServiceMeta().isSecured();
+            if(nativeClient.getOpenApiPathMatcher() != null) {
+                Operation operation = nativeClient.getOpenApiPathMatcher().match(servicePath, httpServerExchange.getRequestMethod().toString());
+                if(operation == null) {
+                    sendError(httpServerExchange, service, Constants.BAD_REQUEST_CODE, "Call not allowed");
+                    return;
+                }
+                if(!secured && operation.getSecurity() != null && !operation.getSecurity().isEmpty()) {
+                    secured = true;
+                    if(httpServerExchange.isInIoThread()) {
+                        httpServerExchange.dispatch(this::handleRequest);
+                        return;
+                    }
+                }
+            }
+            if(secured) {
+                accessToken = httpUtils.processAuthorizationAccessToken(httpServerExchange);
+                claimsSet = authorize(accessToken, service, clientId);
+            }
+        } catch(AuthorizationException e) {
+            sendError(httpServerExchange, service, Constants.UNAUTHORIZED_CODE, e.getMessage());
+            return;
+        }
+
+        if(service.getServiceMeta().isThrottle() && throttleProcessor.isPresent()) {
+            RateLimitState rateLimitState = acquire(service, accessToken, claimsSet);
+            if(rateLimitState != null) {
+                httpServerExchange.getResponseHeaders().put(RATE_LIMIT_LIMIT, rateLimitState.limit());
+                httpServerExchange.getResponseHeaders().put(RATE_LIMIT_REMAINING, rateLimitState.remaining());
+                httpServerExchange.getResponseHeaders().put(RATE_LIMIT_RESET, rateLimitState.resetSeconds());
+                if(!rateLimitState.allowed()) {
+                    httpServerExchange.setStatusCode(HttpStatus.TOO_MANY_REQUESTS.value());
+                    httpServerExchange.getResponseHeaders().put(Headers.RETRY_AFTER, rateLimitState.resetSeconds());
+                    httpServerExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                    httpServerExchange.getResponseSender().send(throttleProcessor.get().rejectionBody(service));
+                    return;
+                }
+            }
+        }
+
+        if(service.getServiceMeta().isConcurrencyLimit() && concurrencyLimitProcessor.isPresent()) {
+            ConcurrencyLimiter concurrencyLimiter = concurrencyLimitProcessor.get().acquire(service);
+            if(concurrencyLimiter == null) {
+                httpServerExchange.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+                httpServerExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                httpServerExchange.getResponseSender().send(concurrencyLimitProcessor.get().rejectionBody(service));
+                return;
+            }
+            long start = System.nanoTime();
+            httpServerExchange.addExchangeCompleteListener((completedExchange, nextListener) -> {
+                concurrencyLimiter.release(System.nanoTime() - start, ConcurrencyLimitProcessor.isOverloaded(completedExchange.getStatusCode()));
+                nextListener.proceed();
+            });
+        }
+
+        if(reverseProxyHost != null) {
+            httpServerExchange.getRequestHeaders().put(X_FORWARDED_HOST, reverseProxyHost);
+            httpServerExchange.getRequestHeaders().put(X_FORWARDED_PREFIX, capiContext + service.getContext());
+        }
+        if(service.getServiceMeta().isKeepGroup()) {
+            httpServerExchange.getRequestHeaders().put(CAPI_GROUP_HEADER, service.getContext());
+        }
+
+        String forwardingPath = nativeUtils.normalizePathForForwarding(nativeClient, servicePath);
+        httpServerExchange.setRequestURI(forwardingPath);
+        httpServerExchange.setRelativePath(forwardingPath);
+        nativeClient.getHttpHandler().handleRequest(httpServerExchange);
+    }
+
+    private boolean requiresWorker(Service service) {
+        //Verifying a token can fetch keys or call OPA, never on the IO thread
+        return service.getServiceMeta().isSecured()
+                || (service.getServiceMeta().getOpaRego() != null && opaService.isPresent())
+                || (service.getServiceMeta().isThrottle() && throttleProcessor.isPresent());
+    }
+
+    //The verified claims of the token, or null when the call was authorized by OPA
+    private JWTClaimsSet authorize(String accessToken, Service service, String clientId) throws AuthorizationException {
+        if(accessToken == null) {
+            throw new AuthorizationException("No authorization header provided");
+        }
+        if(service.getServiceMeta().getOpaRego() != null && opaService.isPresent()) {
+            if(!httpUtils.isAuthorized(accessToken, clientId, service, opaService.get())) {
+                throw new AuthorizationException("Not subscribed");
+            }
+            return null;
+        }
+        JWTClaimsSet claimsSet = httpUtils.authorizeRequest(accessToken);
+        if(claimsSet == null || !httpUtils.isSubscribed(claimsSet, clientId, service)) {
+            throw new AuthorizationException("Not subscribed");
+        }
+        return claimsSet;
+    }
+
+    //The limiter state of the call, or null when the call is not throttled
+    private RateLimitState acquire(Service service, String accessToken, JWTClaimsSet claimsSet) {
+        ThrottleProcessor globalThrottleProcessor = throttleProcessor.get();
+        if(service.getServiceMeta().isThrottleGlobal()) {
+            if(service.getServiceMeta().getThrottleDuration() > -1 && service.getServiceMeta().getThrottleTotalCalls() > -1) {
+                return globalThrottleProcessor.acquire(service, null, false, -1, -1);
+            }
+            return null;
+        }
+        if(accessToken == null) {
+            return null;
+        }
+        try {
+            if(claimsSet == null) {
+                //Authorized by OPA, the claims were not verified yet
+                claimsSet = httpUtils.authorizeRequest(accessToken);
+            }
+            if(claimsSet != null && claimsSet.getClaims().get("throttleTotalCalls") != null) {
+                return globalThrottleProcessor.acquire(service, claimsSet.getStringClaim("azp"), true,
+                        claimsSet.getLongClaim("throttleTotalCalls"), claimsSet.getLongClaim("throttleDuration"));
+            }
+        } catch(Exception e) {
+            log.warn(e.getMessage(), e);
+        }
+        return null;
+    }
+
+    private void processCors(HttpServerExchange httpServerExchange, NativeClient nativeClient) {
+        managedHeaders.forEach((k, v) -> httpServerExchange.getResponseHeaders().put(k, v));
+        String origin = httpServerExchange.getRequestHeaders().getFirst(Constants.ORIGIN_HEADER);
+        if(origin == null || origin.equals("null")) {
+            origin = httpServerExchange.getRequestHeaders().getFirst(Headers.REFERER);
+            if(origin != null) {
+                origin = origin.replaceAll("/$", "");
+            }
+        }
+        if(origin != null && isValidOrigin(origin)
+                && (nativeClient.getAllowedOrigins() == null || nativeClient.getAllowedOrigins().contains(origin))) {
+            httpServerExchange.getResponseHeaders().put(ACCESS_CONTROL_ALLOW_ORIGIN, origin.replaceAll("(\r\n|\n)", ""));
+        }
+    }
+
+    private boolean isValidOrigin(String origin) {
+        try {
+            new URL(origin).toURI();
+            return true;
+        } catch (MalformedURLException | URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private void sendError(HttpServerExchange httpServerExchange, Service service, int errorCode, String errorMessage) {
+        CapiRestError capiRestError = new CapiRestError();
+        capiRestError.setRouteID(service.getId());
+        capiRestError.setErrorCode(errorCode);
+        capiRestError.setErrorMessage(errorMessage);
+        capiRestError.setHttpUri(httpServerExchange.getRequestPath());
+        httpServerExchange.setStatusCode(errorCode);
+        httpServerExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        httpServerExchange.getResponseSender().send(httpUtils.proxyErrorMapper(capiRestError));
+    }
+}
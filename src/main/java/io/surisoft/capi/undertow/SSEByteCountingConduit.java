@@ -0,0 +1,65 @@
+package io.surisoft.capi.undertow;
+
+import io.surisoft.capi.service.SSEStreamLimiter;
+import org.xnio.channels.StreamSourceChannel;
+import org.xnio.conduits.AbstractStreamSinkConduit;
+import org.xnio.conduits.StreamSinkConduit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+//Counts the bytes written to a downstream SSE stream into the permit of the stream
+public class SSEByteCountingConduit extends AbstractStreamSinkConduit<StreamSinkConduit> {
+
+    private final SSEStreamLimiter.Permit permit;
+
+    public SSEByteCountingConduit(StreamSinkConduit next, SSEStreamLimiter.Permit permit) {
+        super(next);
+        this.permit = permit;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        return count(next.write(src));
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return count(next.write(srcs, offs, len));
+    }
+
+    @Override
+    public int writeFinal(ByteBuffer src) throws IOException {
+        return count(next.writeFinal(src));
+    }
+
+    @Override
+    public long writeFinal(ByteBuffer[] srcs, int offs, int len) throws IOException {
+        return count(next.writeFinal(srcs, offs, len));
+    }
+
+    @Override
+    public long transferFrom(FileChannel src, long position, long count) throws IOException {
+        return count(next.transferFrom(src, position, count));
+    }
+
+    @Override
+    public long transferFrom(StreamSourceChannel source, long count, ByteBuffer throughBuffer) throws IOException {
+        return count(next.transferFrom(source, count, throughBuffer));
+    }
+
+    private int count(int written) {
+        if(written > 0) {
+            permit.addSentBytes(written);
+        }
+        return written;
+    }
+
+    private long count(long written) {
+        if(written > 0) {
+            permit.addSentBytes(written);
+        }
+        return written;
+    }
+}
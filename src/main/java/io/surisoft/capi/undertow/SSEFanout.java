@@ -0,0 +1,287 @@
+package io.surisoft.capi.undertow;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.surisoft.capi.configuration.CapiSslContextHolder;
+import io.surisoft.capi.schema.SSEClient;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.sse.ServerSentEventConnection;
+import io.undertow.server.handlers.sse.ServerSentEventHandler;
+import io.undertow.util.Headers;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.xnio.IoUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Shares one upstream event stream between the subscribers of the same path of a service flagged with sse-fanout
+@Component
+@ConditionalOnProperty(prefix = "capi.sse", name = "enabled", havingValue = "true")
+public class SSEFanout {
+    private static final Logger log = LoggerFactory.getLogger(SSEFanout.class);
+    private final int maxPendingEvents;
+    private final long retryDelay;
+    private final HttpClient httpClient;
+    private final Map<String, SharedStream> sharedStreams = new ConcurrentHashMap<>();
+    private final Map<String, UpstreamFailure> upstreamFailures = new ConcurrentHashMap<>();
+    private final AtomicInteger nextUpstream = new AtomicInteger();
+
+    public SSEFanout(MeterRegistry meterRegistry,
+                     Optional<CapiSslContextHolder> capiSslContextHolder,
+                     @Value("${capi.sse.fanout.max-pending-events}") int maxPendingEvents,
+                     @Value("${capi.sse.fanout.retry-delay}") long retryDelay) {
+        this.maxPendingEvents = maxPendingEvents;
+        this.retryDelay = retryDelay;
+        HttpClient.Builder httpClientBuilder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+        capiSslContextHolder.ifPresent(holder -> httpClientBuilder.sslContext(holder.getSslContext()));
+        this.httpClient = httpClientBuilder.build();
+        Gauge.builder("capi_sse_fanout_upstreams", sharedStreams, Map::size)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    public void subscribe(HttpServerExchange httpServerExchange, SSEClient sseClient, String forwardingPath) throws Exception {
+        String queryString = httpServerExchange.getQueryString();
+        String upstreamPath = queryString == null || queryString.isEmpty() ? forwardingPath : forwardingPath + "?" + queryString;
+        String streamKey = sseClient.getApiId() + upstreamPath;
+        //Until the retry delay is over subscribers get the answer of the failed upstream instead of a new upstream call
+        UpstreamFailure upstreamFailure = upstreamFailures.get(streamKey);
+        if(upstreamFailure != null) {
+            long retryIn = upstreamFailure.retryAt() - System.currentTimeMillis();
+            if(retryIn > 0) {
+                httpServerExchange.setStatusCode(upstreamFailure.statusCode());
+                httpServerExchange.getResponseHeaders().put(Headers.RETRY_AFTER, (retryIn + 999) / 1000);
+                httpServerExchange.endExchange();
+                return;
+            }
+            upstreamFailures.remove(streamKey, upstreamFailure);
+        }
+        new ServerSentEventHandler((connection, lastEventId) -> join(streamKey, sseClient, upstreamPath, connection)).handleRequest(httpServerExchange);
+    }
+
+    public int getSubscribers(String streamKey) {
+        SharedStream sharedStream = sharedStreams.get(streamKey);
+        return sharedStream == null ? 0 : sharedStream.subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sharedStreams.values().forEach(SharedStream::cancel);
+        sharedStreams.clear();
+    }
+
+    private void join(String streamKey, SSEClient sseClient, String upstreamPath, ServerSentEventConnection connection) {
+        Subscriber subscriber = new Subscriber(connection);
+        SharedStream sharedStream = sharedStreams.compute(streamKey, (key, existingStream) -> {
+            SharedStream stream = existingStream != null ? existingStream : new SharedStream(key);
+            stream.subscribers.add(subscriber);
+            return stream;
+        });
+        connection.addCloseTask(closedConnection -> leave(sharedStream, subscriber));
+        if(!connection.isOpen()) {
+            leave(sharedStream, subscriber);
+            return;
+        }
+        sharedStream.start(sseClient, upstreamPath);
+    }
+
+    private void leave(SharedStream sharedStream, Subscriber subscriber) {
+        sharedStreams.computeIfPresent(sharedStream.streamKey, (key, stream) -> {
+            if(stream != sharedStream) {
+                return stream;
+            }
+            stream.subscribers.remove(subscriber);
+            if(stream.subscribers.isEmpty()) {
+                stream.cancel();
+                return null;
+            }
+            return stream;
+        });
+    }
+
+    private void end(SharedStream sharedStream) {
+        sharedStreams.remove(sharedStream.streamKey, sharedStream);
+        sharedStream.subscribers.forEach(subscriber -> subscriber.connection.shutdown());
+    }
+
+    private void fail(SharedStream sharedStream, int statusCode) {
+        long now = System.currentTimeMillis();
+        upstreamFailures.values().removeIf(upstreamFailure -> upstreamFailure.retryAt() <= now);
+        upstreamFailures.put(sharedStream.streamKey, new UpstreamFailure(statusCode, now + retryDelay));
+        //The subscribers already streaming are told to wait as long before reconnecting
+        sharedStream.subscribers.forEach(subscriber -> subscriber.connection.sendRetry(retryDelay));
+        end(sharedStream);
+    }
+
+    private URI nextUpstream(SSEClient sseClient, String upstreamPath) {
+        List<URI> upstreams = sseClient.getUpstreams();
+        return URI.create(upstreams.get(Math.floorMod(nextUpstream.getAndIncrement(), upstreams.size())) + upstreamPath);
+    }
+
+    //One upstream connection, its lines are parsed into events and sent to every subscriber
+    private final class SharedStream implements Flow.Subscriber<String> {
+        private final String streamKey;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile boolean connected;
+        private volatile Flow.Subscription subscription;
+        private volatile CompletableFuture<HttpResponse<Void>> upstreamCall;
+        //Only touched by the thread delivering the lines
+        private StringBuilder data;
+        private String event;
+        private String id;
+
+        private SharedStream(String streamKey) {
+            this.streamKey = streamKey;
+        }
+
+        private void start(SSEClient sseClient, String upstreamPath) {
+            if(!started.compareAndSet(false, true)) {
+                return;
+            }
+            URI upstreamUri = nextUpstream(sseClient, upstreamPath);
+            log.debug("Opening shared SSE upstream {}", upstreamUri);
+            HttpRequest httpRequest = HttpRequest.newBuilder(upstreamUri).header("Accept", "text/event-stream").GET().build();
+            upstreamCall = httpClient.sendAsync(httpRequest, responseInfo -> {
+                if(responseInfo.statusCode() != 200) {
+                    log.warn("Shared SSE upstream {} answered {}", upstreamUri, responseInfo.statusCode());
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }
+                connected = true;
+                return HttpResponse.BodySubscribers.fromLineSubscriber(this);
+            });
+            upstreamCall.whenComplete((httpResponse, throwable) -> {
+                if(cancelled || connected) {
+                    end(this);
+                } else {
+                    fail(this, httpResponse != null && httpResponse.statusCode() >= 400 ? httpResponse.statusCode() : 502);
+                }
+            });
+            if(cancelled) {
+                upstreamCall.cancel(true);
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            Flow.Subscription currentSubscription = subscription;
+            if(currentSubscription != null) {
+                currentSubscription.cancel();
+            }
+            CompletableFuture<HttpResponse<Void>> currentUpstreamCall = upstreamCall;
+            if(currentUpstreamCall != null) {
+                currentUpstreamCall.cancel(true);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if(cancelled) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if(line.isEmpty()) {
+                dispatch();
+                return;
+            }
+            if(line.charAt(0) == ':') {
+                return;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = "";
+            if(colon >= 0) {
+                int valueStart = colon + 1 < line.length() && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1;
+                value = line.substring(valueStart);
+            }
+            switch(field) {
+                case "data" -> data = data == null ? new StringBuilder(value) : data.append('\n').append(value);
+                case "event" -> event = value;
+                case "id" -> id = value;
+                default -> {
+                    //retry and unknown fields are not forwarded
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.debug("Shared SSE upstream {} failed: {}", streamKey, throwable.getMessage());
+        }
+
+        @Override
+        public void onComplete() {
+            log.debug("Shared SSE upstream {} completed", streamKey);
+        }
+
+        private void dispatch() {
+            if(data != null) {
+                String eventData = data.toString();
+                for(Subscriber subscriber : subscribers) {
+                    subscriber.send(eventData, event, id);
+                }
+            }
+            data = null;
+            event = null;
+            id = null;
+        }
+    }
+
+    private record UpstreamFailure(int statusCode, long retryAt) {}
+
+    private final class Subscriber implements ServerSentEventConnection.EventCallback {
+        private final ServerSentEventConnection connection;
+        private final AtomicInteger pendingEvents = new AtomicInteger();
+
+        private Subscriber(ServerSentEventConnection connection) {
+            this.connection = connection;
+        }
+
+        private void send(String data, String event, String id) {
+            int pending = pendingEvents.incrementAndGet();
+            if(pending <= maxPendingEvents) {
+                connection.send(data, event, id, this);
+            } else {
+                pendingEvents.decrementAndGet();
+                if(pending == maxPendingEvents + 1) {
+                    log.debug("Dropping a slow SSE subscriber, {} events pending", maxPendingEvents);
+                    IoUtils.safeClose(connection);
+                }
+            }
+        }
+
+        @Override
+        public void done(ServerSentEventConnection connection, String data, String event, String id) {
+            pendingEvents.decrementAndGet();
+        }
+
+        @Override
+        public void failed(ServerSentEventConnection connection, String data, String event, String id, IOException e) {
+            pendingEvents.decrementAndGet();
+        }
+    }
+}
@@ -2,8 +2,9 @@ package io.surisoft.capi.undertow;
 
 import io.surisoft.capi.exception.CapiUndertowException;
 import io.surisoft.capi.oidc.SSEAuthorization;
+import io.surisoft.capi.schema.GatewayRouteTable;
 import io.surisoft.capi.schema.SSEClient;
-import io.surisoft.capi.schema.WebsocketClient;
+import io.surisoft.capi.service.SSEStreamLimiter;
 import io.surisoft.capi.utils.Constants;
 import io.surisoft.capi.utils.ErrorMessage;
 import io.surisoft.capi.utils.SSEUtils;
@@ -17,6 +18,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import javax.net.ssl.SSLContext;
@@ -33,23 +35,30 @@ import java.util.Optional;
 public class SSEGateway {
     private static final Logger log = LoggerFactory.getLogger(SSEGateway.class);
     private final int port;
-    private final Map<String, SSEClient> sseClients;
     private SSEAuthorization sseAuthorization;
     private final SSEUtils sseUtils;
     private final Optional<SSLContext> sslContext;
+    private final UndertowServerFactory undertowServerFactory;
+    private final SSEStreamLimiter sseStreamLimiter;
+    private final SSEFanout sseFanout;
     private final List<String> accessControlAllowHeaders;
     private final Map<String, String> managedHeaders;
     private final String oauth2CookieName;
 
     public SSEGateway(@Value("${capi.sse.server.port}") int port,
-                      Map<String, SSEClient> sseClients, SSEUtils sseUtils,
+                      SSEUtils sseUtils,
                       Optional<SSLContext> sslContext,
+                      UndertowServerFactory undertowServerFactory,
+                      SSEStreamLimiter sseStreamLimiter,
+                      SSEFanout sseFanout,
                       @Value("${capi.gateway.cors.management.allowed-headers}") List<String> accessControlAllowHeaders,
                       @Value("${capi.oauth2.cookieName}") String oauth2CookieName) {
         this.port = port;
-        this.sseClients = sseClients;
         this.sseUtils = sseUtils;
         this.sslContext = sslContext;
+        this.undertowServerFactory = undertowServerFactory;
+        this.sseStreamLimiter = sseStreamLimiter;
+        this.sseFanout = sseFanout;
         this.accessControlAllowHeaders = accessControlAllowHeaders;
         this.oauth2CookieName = oauth2CookieName;
 
@@ -64,7 +73,7 @@ public class SSEGateway {
             log.warn(e.getMessage());
         }
 
-        Undertow.Builder builder = Undertow.builder();
+        Undertow.Builder builder = undertowServerFactory.builder("SSE", false);
 
         if(sslContext.isPresent()) {
             builder.addHttpsListener(port, Constants.UNDERTOW_LISTENING_ADDRESS, sslContext.get());
@@ -75,9 +84,9 @@ public class SSEGateway {
         builder
                 .setHandler(httpServerExchange -> {
                     String requestPath = httpServerExchange.getRequestPath();
-                    String webClientId = sseUtils.getWebclientId(requestPath);
-                    SSEClient sseClient = sseClients.get(webClientId);
-                    if (sseClients.containsKey(webClientId)) {
+                    GatewayRouteTable.Route<SSEClient> route = sseUtils.getRouteTable().lookup(requestPath);
+                    if (route != null) {
+                        SSEClient sseClient = route.client();
                         if(httpServerExchange.getRequestMethod().equals(HttpString.tryFromString(Constants.OPTIONS_METHODS_VALUE))) {
                             List<String> localAccessControlAllowHeaders = new ArrayList<>(accessControlAllowHeaders);
                             if(oauth2CookieName != null && !oauth2CookieName.isEmpty()) {
@@ -98,9 +107,7 @@ public class SSEGateway {
                             if (sseAuthorization != null) {
                                 if (sseAuthorization.isAuthorized(sseClient, httpServerExchange)) {
                                     log.info("{} is authorized!", httpServerExchange.getRequestPath());
-                                    httpServerExchange.setRequestURI(sseUtils.normalizePathForForwarding(sseClient, requestPath));
-                                    httpServerExchange.setRelativePath(sseUtils.normalizePathForForwarding(sseClient, requestPath));
-                                    sseClient.getHttpHandler().handleRequest(httpServerExchange);
+                                    forward(httpServerExchange, route, requestPath);
                                 } else {
                                     log.info("{} is not authorized!", httpServerExchange.getRequestPath());
                                     httpServerExchange.setStatusCode(403);
@@ -109,9 +116,7 @@ public class SSEGateway {
                             } else {
                                 if (!sseClient.requiresSubscription()) {
                                     log.info("{} is authorized!", httpServerExchange.getRequestPath());
-                                    httpServerExchange.setRequestURI(sseUtils.normalizePathForForwarding(sseClient, requestPath));
-                                    httpServerExchange.setRelativePath(sseUtils.normalizePathForForwarding(sseClient, requestPath));
-                                    sseClient.getHttpHandler().handleRequest(httpServerExchange);
+                                    forward(httpServerExchange, route, requestPath);
                                 } else {
                                     log.info("{} is not authorized!", httpServerExchange.getRequestPath());
                                     httpServerExchange.setStatusCode(403);
@@ -128,6 +133,31 @@ public class SSEGateway {
         builder.build().start();
     }
 
+    //Streams hold a permit of the stream limits until the downstream exchange completes
+    private void forward(HttpServerExchange httpServerExchange, GatewayRouteTable.Route<SSEClient> route, String requestPath) throws Exception {
+        SSEClient sseClient = route.client();
+        SSEStreamLimiter.Permit permit = sseStreamLimiter.tryAcquire(sseClient.getApiId(), httpServerExchange.getAttachment(SSEAuthorization.CONSUMER));
+        if(permit == null) {
+            log.debug("{} reached the SSE stream limits", requestPath);
+            httpServerExchange.setStatusCode(HttpStatus.TOO_MANY_REQUESTS.value());
+            httpServerExchange.endExchange();
+            return;
+        }
+        httpServerExchange.addExchangeCompleteListener((exchange, nextListener) -> {
+            permit.release();
+            nextListener.proceed();
+        });
+        httpServerExchange.addResponseWrapper((conduitFactory, exchange) -> new SSEByteCountingConduit(conduitFactory.create(), permit));
+        String forwardingPath = route.forwardingPath(requestPath);
+        if(sseClient.isFanout()) {
+            sseFanout.subscribe(httpServerExchange, sseClient, forwardingPath);
+        } else {
+            httpServerExchange.setRequestURI(forwardingPath);
+            httpServerExchange.setRelativePath(forwardingPath);
+            sseClient.getHttpHandler().handleRequest(httpServerExchange);
+        }
+    }
+
     private void processOrigin(HttpServerExchange request, String origin) {
         if(isValidOrigin(origin)) {
             request.getResponseHeaders().put(HttpString.tryFromString(Constants.ACCESS_CONTROL_ALLOW_ORIGIN), origin.replaceAll("(\r\n|\n)", ""));
@@ -0,0 +1,118 @@
+package io.surisoft.capi.undertow;
+
+import io.surisoft.capi.configuration.UndertowProperties;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.server.DefaultByteBufferPool;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import java.io.IOException;
+
+//Undertow builders of the websocket, SSE, gRPC and native gateways
+@Component
+public class UndertowServerFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(UndertowServerFactory.class);
+    private static final int DEFAULT_BACKLOG = 1000;
+    private final int ioThreads;
+    private final int workerThreads;
+    private final int bufferSize;
+    private final boolean directBuffers;
+    private final int backlog;
+    private final boolean http2;
+    private final int idleTimeout;
+    private final int noRequestTimeout;
+    private final long maxEntitySize;
+    private final boolean sharedWorker;
+    private XnioWorker worker;
+    private ByteBufferPool byteBufferPool;
+
+    public UndertowServerFactory(UndertowProperties undertowProperties) {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        this.ioThreads = undertowProperties.getIoThreads() > 0 ? undertowProperties.getIoThreads() : Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        this.workerThreads = undertowProperties.getWorkerThreads() > 0 ? undertowProperties.getWorkerThreads() : ioThreads * 8;
+        if(undertowProperties.getBufferSize() > 0) {
+            this.bufferSize = undertowProperties.getBufferSize();
+        } else if(maxMemory < 64 * 1024 * 1024) {
+            this.bufferSize = 512;
+        } else if(maxMemory < 128 * 1024 * 1024) {
+            this.bufferSize = 1024;
+        } else {
+            this.bufferSize = 1024 * 16 - 20;
+        }
+        this.directBuffers = undertowProperties.getDirectBuffers() != null ? undertowProperties.getDirectBuffers() : maxMemory >= 64 * 1024 * 1024;
+        this.backlog = undertowProperties.getBacklog() > 0 ? undertowProperties.getBacklog() : DEFAULT_BACKLOG;
+        this.http2 = undertowProperties.isHttp2();
+        this.idleTimeout = undertowProperties.getIdleTimeout();
+        this.noRequestTimeout = undertowProperties.getNoRequestTimeout();
+        this.maxEntitySize = undertowProperties.getMaxEntitySize();
+        this.sharedWorker = undertowProperties.isSharedWorker();
+    }
+
+    public Undertow.Builder builder(String gatewayName, boolean http2Required) {
+        boolean enableHttp2 = http2 || http2Required;
+        Undertow.Builder builder = Undertow.builder()
+                .setIoThreads(ioThreads)
+                .setWorkerThreads(workerThreads)
+                .setBufferSize(bufferSize)
+                .setDirectBuffers(directBuffers)
+                .setSocketOption(Options.BACKLOG, backlog)
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, enableHttp2)
+                .setServerOption(UndertowOptions.MAX_ENTITY_SIZE, maxEntitySize);
+        if(idleTimeout > 0) {
+            builder.setServerOption(UndertowOptions.IDLE_TIMEOUT, idleTimeout);
+        }
+        if(noRequestTimeout > 0) {
+            builder.setServerOption(UndertowOptions.NO_REQUEST_TIMEOUT, noRequestTimeout);
+        }
+        if(sharedWorker) {
+            builder.setWorker(getSharedWorker());
+            builder.setByteBufferPool(byteBufferPool);
+        }
+        log.info("{} gateway Undertow: io-threads={}, worker-threads={}, buffer-size={}, direct-buffers={}, backlog={}, http2={}, idle-timeout={}, no-request-timeout={}, max-entity-size={}, shared-worker={}",
+                gatewayName, ioThreads, workerThreads, bufferSize, directBuffers, backlog, enableHttp2,
+                idleTimeout > 0 ? idleTimeout : "default", noRequestTimeout > 0 ? noRequestTimeout : "default", maxEntitySize, sharedWorker);
+        return builder;
+    }
+
+    private synchronized XnioWorker getSharedWorker() {
+        if(worker == null) {
+            try {
+                worker = Xnio.getInstance(Undertow.class.getClassLoader()).createWorker(OptionMap.builder()
+                        .set(Options.WORKER_IO_THREADS, ioThreads)
+                        .set(Options.CONNECTION_HIGH_WATER, 1000000)
+                        .set(Options.CONNECTION_LOW_WATER, 1000000)
+                        .set(Options.WORKER_TASK_CORE_THREADS, workerThreads)
+                        .set(Options.WORKER_TASK_MAX_THREADS, workerThreads)
+                        .set(Options.TCP_NODELAY, true)
+                        .set(Options.CORK, true)
+                        .set(Options.WORKER_NAME, "capi-undertow")
+                        .getMap());
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            }
+            byteBufferPool = new DefaultByteBufferPool(directBuffers, bufferSize, -1, 4);
+        }
+        return worker;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        //Servers given a worker do not stop it
+        if(worker != null) {
+            worker.shutdown();
+        }
+        if(byteBufferPool != null) {
+            byteBufferPool.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.surisoft.capi.undertow;
 
 import io.surisoft.capi.exception.CapiUndertowException;
 import io.surisoft.capi.oidc.WebsocketAuthorization;
+import io.surisoft.capi.schema.GatewayRouteTable;
 import io.surisoft.capi.schema.WebsocketClient;
 import io.surisoft.capi.tracer.CapiUndertowTracer;
 import io.surisoft.capi.utils.Constants;
@@ -34,27 +35,27 @@ public class WebsocketGateway {
     private static final Logger log = LoggerFactory.getLogger(WebsocketGateway.class);
     private static final Logger ACCESS_LOG = LoggerFactory.getLogger("capi.access");
     private final int port;
-    private final Map<String, WebsocketClient> webSocketClients;
     private WebsocketAuthorization websocketAuthorization;
     private final WebsocketUtils websocketUtils;
     private final Optional<SSLContext> sslContext;
     private final Optional<CapiUndertowTracer> capiUndertowTracer;
+    private final UndertowServerFactory undertowServerFactory;
     private final List<String> accessControlAllowHeaders;
     private final Map<String, String> managedHeaders;
     private final String oauth2CookieName;
 
     public WebsocketGateway(@Value("${capi.websocket.server.port}") int port,
-                            Map<String, WebsocketClient> webSocketClients,
                             WebsocketUtils websocketUtils,
                             Optional<SSLContext> sslContext,
                             Optional<CapiUndertowTracer> capiUndertowTracer,
+                            UndertowServerFactory undertowServerFactory,
                             @Value("${capi.gateway.cors.management.allowed-headers}") List<String> accessControlAllowHeaders,
                             @Value("${capi.oauth2.cookieName}") String oauth2CookieName) {
         this.port = port;
-        this.webSocketClients = webSocketClients;
         this.websocketUtils = websocketUtils;
         this.sslContext = sslContext;
         this.capiUndertowTracer = capiUndertowTracer;
+        this.undertowServerFactory = undertowServerFactory;
         this.accessControlAllowHeaders = accessControlAllowHeaders;
         this.oauth2CookieName = oauth2CookieName;
 
@@ -70,7 +71,7 @@ public class WebsocketGateway {
             log.warn(e.getMessage());
         }
 
-        Undertow.Builder builder = Undertow.builder();
+        Undertow.Builder builder = undertowServerFactory.builder("Websocket", false);
 
         if(sslContext.isPresent()) {
             builder.addHttpsListener(port, Constants.UNDERTOW_LISTENING_ADDRESS, sslContext.get());
@@ -83,7 +84,8 @@ public class WebsocketGateway {
                     long startNanos = System.nanoTime();
                     try {
                         String requestPath = httpServerExchange.getRequestPath();
-                        String webClientId = websocketUtils.getWebclientId(requestPath);
+                        GatewayRouteTable<WebsocketClient> routeTable = websocketUtils.getRouteTable();
+                        String webClientId = routeTable.clientId(requestPath);
 
                         if(httpServerExchange.getRequestHeaders().contains(Constants.BLUECOAT_HEADER)) {
                             httpServerExchange.getRequestHeaders().remove(Constants.BLUECOAT_HEADER);
@@ -94,8 +96,9 @@ public class WebsocketGateway {
                             httpServerExchange.endExchange();
                         } else {
                             capiUndertowTracer.ifPresent(undertowTracer -> undertowTracer.serverRequest(httpServerExchange, webClientId));
-                            WebsocketClient websocketClient = webSocketClients.get(webClientId);
-                            if(webSocketClients.containsKey(webClientId)) {
+                            GatewayRouteTable.Route<WebsocketClient> route = routeTable.get(webClientId);
+                            if(route != null) {
+                                WebsocketClient websocketClient = route.client();
                                 if(httpServerExchange.getRequestMethod().equals(HttpString.tryFromString(Constants.OPTIONS_METHODS_VALUE))) {
                                     List<String> localAccessControlAllowHeaders = new ArrayList<>(accessControlAllowHeaders);
                                     if(oauth2CookieName != null && !oauth2CookieName.isEmpty()) {
@@ -117,8 +120,9 @@ public class WebsocketGateway {
                                         if (websocketAuthorization != null) {
                                             if (websocketAuthorization.isAuthorized(websocketClient, httpServerExchange)) {
                                                 log.debug(ErrorMessage.IS_AUTHORIZED, httpServerExchange.getRequestPath());
-                                                httpServerExchange.setRequestURI(websocketUtils.normalizePathForForwarding(websocketClient, requestPath));
-                                                httpServerExchange.setRelativePath(websocketUtils.normalizePathForForwarding(websocketClient, requestPath));
+                                                String forwardingPath = route.forwardingPath(requestPath);
+                                                httpServerExchange.setRequestURI(forwardingPath);
+                                                httpServerExchange.setRelativePath(forwardingPath);
                                                 websocketClient.getHttpHandler().handleRequest(httpServerExchange);
                                             } else {
                                                 log.debug(ErrorMessage.IS_NOT_AUTHORIZED, httpServerExchange.getRequestPath());
@@ -128,8 +132,9 @@ public class WebsocketGateway {
                                         } else {
                                             if (!websocketClient.requiresSubscription()) {
                                                 log.debug(ErrorMessage.IS_AUTHORIZED, httpServerExchange.getRequestPath());
-                                                httpServerExchange.setRequestURI(websocketUtils.normalizePathForForwarding(websocketClient, requestPath));
-                                                httpServerExchange.setRelativePath(websocketUtils.normalizePathForForwarding(websocketClient, requestPath));
+                                                String forwardingPath = route.forwardingPath(requestPath);
+                                                httpServerExchange.setRequestURI(forwardingPath);
+                                                httpServerExchange.setRelativePath(forwardingPath);
                                                 websocketClient.getHttpHandler().handleRequest(httpServerExchange);
                                             } else {
                                                 log.debug(ErrorMessage.IS_NOT_AUTHORIZED, httpServerExchange.getRequestPath());
@@ -41,6 +41,7 @@ public class Constants {
     public static final String TENANT_HEADER = "tenant";
     public static final HttpString PROTOCOL_HTTP = new HttpString("HTTP/1.1");
     public static final String MAP_HTTP_MESSAGE_FORM_URL_ENCODED_BODY = "&mapHttpMessageFormUrlEncodedBody=false";
+    public static final String DISABLE_STREAM_CACHE = "&disableStreamCache=true";
     public static final String BLUECOAT_HEADER = "X-BlueCoat-Via";
     public static final String UNDERSTOW_HEALTH_PATH = "/health";
     public static final String[] CAPI_WHITELISTED_PATHS = {
@@ -88,8 +89,10 @@ public class Constants {
     public static final String CAPI_CONTEXT = "/capi";
     public static final String BEARER = "Bearer ";
     public static final String CAPI_GROUP_HEADER = "Capi-Group";
+    public static final String LOAD_BALANCER_ID_SUFFIX = ":load-balancer";
     public static final String WEBSOCKET_TYPE = "websocket";
     public static final String SSE_TYPE = "sse";
+    public static final String GRPC_TYPE = "grpc";
     public static final String FULL_TYPE = "full";
     public static final String ACCESS_CONTROL_ALLOW_ORIGIN = "Access-Control-Allow-Origin";
     public static final String ACCESS_CONTROL_ALLOW_CREDENTIALS = "Access-Control-Allow-Credentials";
@@ -114,6 +117,7 @@ public class Constants {
     public static final String CLIENT_ENDPOINT = "ClientEndpoint";
     public static final String CLIENT_RESPONSE_CODE = "ClientResponseCode";
     public static final String CONSUL_KV_STORE_API = "/v1/kv/";
+    public static final long CONSUL_BLOCKING_QUERY_TIMER_INTERVAL = 100;
     public static final String CAPI_CORS_HEADERS_CACHE_KEY = "capi-cors-headers";
     public static final String CONSUL_CAPI_TRUST_STORE_GROUP_KEY = "capi-trust-store";
     public static final String CAPI_META_THROTTLE_CONSUMER_KEY = "Capi-Meta-Throttle-Consumer-Key";
@@ -122,4 +126,19 @@ public class Constants {
     public static final String CAPI_META_THROTTLE_DURATION = "Capi-Meta-Throttle-Duration";
     public static final String CAPI_META_THROTTLE_TOTAL_CALLS_ALLOWED = "Capi-Meta-Throttle-Total-Calls-Allowed";
     public static final String CAPI_META_THROTTLE_CURRENT_CALL_NUMBER = "Capi-Meta-Throttle-Current-Call-Number";
+    public static final String CAPI_RATE_LIMIT_STATE = "Capi-Rate-Limit-State";
+    public static final String CAPI_REQUEST_REJECTED = "Capi-Request-Rejected";
+    public static final String CAPI_SERVICE_ID = "Capi-Service-Id";
+    public static final String RATE_LIMIT_LIMIT_HEADER = "RateLimit-Limit";
+    public static final String RATE_LIMIT_REMAINING_HEADER = "RateLimit-Remaining";
+    public static final String RATE_LIMIT_RESET_HEADER = "RateLimit-Reset";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+    public static final String CAPI_ACCESS_TOKEN = "CapiAccessToken";
+    public static final String CAPI_ACCESS_TOKEN_CLAIMS = "CapiAccessTokenClaims";
+    public static final String GRPC_CONTENT_TYPE = "application/grpc";
+    public static final String GRPC_STATUS_HEADER = "grpc-status";
+    public static final String GRPC_MESSAGE_HEADER = "grpc-message";
+    public static final int GRPC_STATUS_PERMISSION_DENIED = 7;
+    public static final int GRPC_STATUS_UNIMPLEMENTED = 12;
+    public static final int GRPC_STATUS_UNAVAILABLE = 14;
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package io.surisoft.capi.utils;
+
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.surisoft.capi.configuration.CapiSslContextHolder;
+import io.surisoft.capi.exception.CapiUndertowException;
+import io.surisoft.capi.oidc.WebsocketAuthorization;
+import io.surisoft.capi.schema.GrpcClient;
+import io.surisoft.capi.schema.HttpProtocol;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.service.OutlierDetector;
+import io.surisoft.capi.tracer.CapiUndertowTracer;
+import io.surisoft.capi.undertow.CAPILoadBalancerProxyClient;
+import io.surisoft.capi.undertow.CAPIProxyHandler;
+import io.undertow.UndertowOptions;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.xnio.OptionMap;
+import org.xnio.Xnio;
+import org.xnio.ssl.XnioSsl;
+
+import javax.net.ssl.SSLContext;
+import java.net.URI;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(prefix = "capi.grpc", name = "enabled", havingValue = "true")
+public class GrpcUtils {
+
+    private static final Logger log = LoggerFactory.getLogger(GrpcUtils.class);
+    //gRPC servers do not upgrade from HTTP/1.1, clear text backends are called with HTTP/2 prior knowledge
+    private static final String H2C_PRIOR_KNOWLEDGE = "h2c-prior";
+    private static final OptionMap HTTP2_OPTIONS = OptionMap.create(UndertowOptions.ENABLE_HTTP2, true);
+    private static final HttpString GRPC_STATUS = HttpString.tryFromString(Constants.GRPC_STATUS_HEADER);
+    private static final HttpString GRPC_MESSAGE = HttpString.tryFromString(Constants.GRPC_MESSAGE_HEADER);
+    private final Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor;
+    private final Optional<CapiUndertowTracer> capiUndertowTracer;
+    private final Optional<OutlierDetector> outlierDetector;
+    private final int connectionsPerThread;
+    private final int maxRequestTime;
+    private final XnioSsl xnioSsl;
+
+    public GrpcUtils(Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor,
+                     Optional<CapiUndertowTracer> capiUndertowTracer,
+                     Optional<OutlierDetector> outlierDetector,
+                     Optional<CapiSslContextHolder> capiSslContextHolder,
+                     @Value("${capi.grpc.upstream.connections-per-thread}") int connectionsPerThread,
+                     @Value("${capi.grpc.upstream.max-request-time}") int maxRequestTime) {
+        this.defaultJWTProcessor = defaultJWTProcessor;
+        this.capiUndertowTracer = capiUndertowTracer;
+        this.outlierDetector = outlierDetector;
+        this.connectionsPerThread = connectionsPerThread;
+        this.maxRequestTime = maxRequestTime;
+        this.xnioSsl = createXnioSsl(capiSslContextHolder.map(CapiSslContextHolder::getSslContext).orElse(null));
+    }
+
+    //One multiplexed HTTP/2 connection carries many calls, so a few connections per IO thread are enough
+    public HttpHandler createClientHttpHandler(Service service) {
+        CAPILoadBalancerProxyClient loadBalancingProxyClient = new CAPILoadBalancerProxyClient(capiUndertowTracer.orElse(null), outlierDetector.orElse(null), service.getId());
+        loadBalancingProxyClient.setConnectionsPerThread(connectionsPerThread);
+        boolean secured = HttpProtocol.HTTPS.getProtocol().equals(service.getServiceMeta().getScheme());
+        service.getMappingList().forEach((m) -> {
+            if(secured) {
+                loadBalancingProxyClient.addHost(URI.create(HttpProtocol.HTTPS.getProtocol() + "://" + m.getHostname() + ":" + m.getPort()), null, xnioSsl, HTTP2_OPTIONS);
+            } else {
+                loadBalancingProxyClient.addHost(URI.create(H2C_PRIOR_KNOWLEDGE + "://" + m.getHostname() + ":" + m.getPort()), null, null, HTTP2_OPTIONS);
+            }
+        });
+        return CAPIProxyHandler
+                .builder()
+                .setProxyClient(loadBalancingProxyClient)
+                .setMaxRequestTime(maxRequestTime)
+                .setNext(httpServerExchange -> sendGrpcError(httpServerExchange, Constants.GRPC_STATUS_UNAVAILABLE, "No backend available"))
+                .build();
+    }
+
+    public GrpcClient createGrpcClient(Service service) {
+        List<String> grpcServices = getGrpcServices(service);
+        if(grpcServices.isEmpty()) {
+            log.warn("Service {} has no grpc-services in its meta, it will not be routed", service.getId());
+            return null;
+        }
+        GrpcClient grpcClient = new GrpcClient();
+        grpcClient.setServiceId(service.getId());
+        grpcClient.setGrpcServices(grpcServices);
+        grpcClient.setMappingList(service.getMappingList());
+        grpcClient.setRequiresSubscription(service.getServiceMeta().isSecured());
+        if(service.getServiceMeta().getSubscriptionGroup() != null) {
+            grpcClient.setSubscriptionRole(service.getServiceMeta().getSubscriptionGroup());
+        }
+        grpcClient.setHttpHandler(createClientHttpHandler(service));
+        return grpcClient;
+    }
+
+    //The fully qualified gRPC services (package.Service) answered by a service, from the grpc-services meta
+    public List<String> getGrpcServices(Service service) {
+        List<String> grpcServices = new ArrayList<>();
+        String grpcServicesMeta = service.getServiceMeta().getGrpcServices();
+        if(grpcServicesMeta != null) {
+            for(String grpcService : grpcServicesMeta.split(",")) {
+                if(!grpcService.isBlank()) {
+                    grpcServices.add(grpcService.trim());
+                }
+            }
+        }
+        return grpcServices;
+    }
+
+    //The gRPC service of a call, /package.Service/Method gives package.Service
+    public String getGrpcService(String requestPath) {
+        if(requestPath == null || requestPath.length() < 2 || requestPath.charAt(0) != '/') {
+            return null;
+        }
+        int end = requestPath.indexOf('/', 1);
+        return end < 0 ? null : requestPath.substring(1, end);
+    }
+
+    //gRPC errors are trailers only responses: HTTP 200 with the status in the headers
+    public void sendGrpcError(HttpServerExchange httpServerExchange, int grpcStatus, String grpcMessage) {
+        httpServerExchange.setStatusCode(200);
+        httpServerExchange.getResponseHeaders().put(Constants.HTTP_STRING_CONTENT_TYPE, Constants.GRPC_CONTENT_TYPE);
+        httpServerExchange.getResponseHeaders().put(GRPC_STATUS, grpcStatus);
+        httpServerExchange.getResponseHeaders().put(GRPC_MESSAGE, grpcMessage);
+        httpServerExchange.endExchange();
+    }
+
+    public WebsocketAuthorization createGrpcAuthorization() throws CapiUndertowException {
+        if(defaultJWTProcessor.isPresent()) {
+            return new WebsocketAuthorization(defaultJWTProcessor.get());
+        }
+        throw new CapiUndertowException("No OIDC provider enabled, consider enabling OIDC");
+    }
+
+    private XnioSsl createXnioSsl(SSLContext sslContext) {
+        try {
+            return new UndertowXnioSsl(Xnio.getInstance(), OptionMap.EMPTY, sslContext != null ? sslContext : SSLContext.getDefault());
+        } catch (NoSuchAlgorithmException e) {
+            log.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+    }
+}
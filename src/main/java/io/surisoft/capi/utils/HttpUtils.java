@@ -17,20 +17,20 @@ import io.surisoft.capi.service.OpaService;
 import io.undertow.server.HttpServerExchange;
 import jakarta.servlet.http.HttpServletRequest;
 import org.apache.camel.Exchange;
+import org.cache2k.Cache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.net.HttpCookie;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Stream;
 
 @Component
@@ -39,12 +39,15 @@ public class HttpUtils {
 
     private final String authorizationCookieName;
     private final Optional<List<DefaultJWTProcessor<SecurityContext>>> jwtProcessorList;
+    private final Optional<Cache<String, JWTClaimsSet>> verifiedTokenCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public HttpUtils(@Value("${capi.oauth2.cookieName}") String authorizationCookieName,
-                     Optional<List<DefaultJWTProcessor<SecurityContext>>> jwtProcessorList) {
+                     Optional<List<DefaultJWTProcessor<SecurityContext>>> jwtProcessorList,
+                     Optional<Cache<String, JWTClaimsSet>> verifiedTokenCache) {
         this.authorizationCookieName = authorizationCookieName;
         this.jwtProcessorList = jwtProcessorList;
+        this.verifiedTokenCache = verifiedTokenCache;
     }
 
     public String setHttpConnectTimeout(String endpoint, int timeout) {
@@ -85,9 +88,21 @@ public class HttpUtils {
     public JWTClaimsSet authorizeRequest(String accessToken) throws AuthorizationException {
         Exception exception = null;
         if(jwtProcessorList.isPresent()) {
+            String tokenKey = null;
+            if(verifiedTokenCache.isPresent()) {
+                tokenKey = hashToken(accessToken);
+                JWTClaimsSet cachedClaimsSet = verifiedTokenCache.get().peek(tokenKey);
+                if(cachedClaimsSet != null) {
+                    return cachedClaimsSet;
+                }
+            }
             for(DefaultJWTProcessor<SecurityContext> jwtProcessor : jwtProcessorList.get()) {
                 try {
-                    return jwtProcessor.process(accessToken, null);
+                    JWTClaimsSet jwtClaimsSet = jwtProcessor.process(accessToken, null);
+                    if(tokenKey != null) {
+                        verifiedTokenCache.get().put(tokenKey, jwtClaimsSet);
+                    }
+                    return jwtClaimsSet;
                 } catch(BadJOSEException | ParseException | JOSEException e)  {
                     exception = e;
                 }
@@ -99,6 +114,45 @@ public class HttpUtils {
         return null;
     }
 
+    public JWTClaimsSet authorizeRequest(Exchange exchange, String accessToken) throws AuthorizationException {
+        JWTClaimsSet jwtClaimsSet = getVerifiedClaims(exchange, accessToken);
+        if(jwtClaimsSet == null) {
+            jwtClaimsSet = authorizeRequest(accessToken);
+            if(jwtClaimsSet != null) {
+                exchange.setProperty(Constants.CAPI_ACCESS_TOKEN, accessToken);
+                exchange.setProperty(Constants.CAPI_ACCESS_TOKEN_CLAIMS, jwtClaimsSet);
+            }
+        }
+        return jwtClaimsSet;
+    }
+
+    public JWTClaimsSet getVerifiedClaims(Exchange exchange, String accessToken) {
+        if(accessToken == null) {
+            return null;
+        }
+        if(accessToken.equals(exchange.getProperty(Constants.CAPI_ACCESS_TOKEN, String.class))) {
+            return exchange.getProperty(Constants.CAPI_ACCESS_TOKEN_CLAIMS, JWTClaimsSet.class);
+        }
+        if(verifiedTokenCache.isPresent()) {
+            JWTClaimsSet jwtClaimsSet = verifiedTokenCache.get().peek(hashToken(accessToken));
+            if(jwtClaimsSet != null) {
+                exchange.setProperty(Constants.CAPI_ACCESS_TOKEN, accessToken);
+                exchange.setProperty(Constants.CAPI_ACCESS_TOKEN_CLAIMS, jwtClaimsSet);
+            }
+            return jwtClaimsSet;
+        }
+        return null;
+    }
+
+    private String hashToken(String accessToken) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(accessToken.getBytes(StandardCharsets.UTF_8)));
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public String processAuthorizationAccessToken(Exchange exchange) throws AuthorizationException {
         String authorization = exchange.getIn().getHeader(Constants.AUTHORIZATION_HEADER, String.class);
         if(authorization == null) {
@@ -210,6 +264,10 @@ public class HttpUtils {
     }
 
     public boolean isAuthorized(String accessToken, String contextPath, Service service, OpaService opaService) {
+        return isAuthorized(null, accessToken, contextPath, service, opaService);
+    }
+
+    public boolean isAuthorized(Exchange exchange, String accessToken, String contextPath, Service service, OpaService opaService) {
         try {
             if(service.getServiceMeta().getOpaRego() != null && opaService != null) {
                 OpaResult opaResult = opaService.callOpa(service.getServiceMeta().getOpaRego(), accessToken, true);
@@ -217,15 +275,10 @@ public class HttpUtils {
                     return false;
                 }
             } else {
-                JWTClaimsSet jwtClaimsSet = authorizeRequest(accessToken);
-                if(!isApiSubscribed(jwtClaimsSet, contextToRole(contextPath))) {
-                    if(!isTokenInGroup(jwtClaimsSet, service.getServiceMeta().getSubscriptionGroup())) {
-                        //Not subscribed
-                        return false;
-                    }
-                }
+                JWTClaimsSet jwtClaimsSet = exchange != null ? authorizeRequest(exchange, accessToken) : authorizeRequest(accessToken);
+                return isSubscribed(jwtClaimsSet, contextPath, service);
             }
-        } catch (AuthorizationException | ParseException | IOException e) {
+        } catch (AuthorizationException e) {
             log.debug(e.getMessage());
             //General Exception
             return false;
@@ -233,6 +286,19 @@ public class HttpUtils {
         return true;
     }
 
+    public boolean isSubscribed(JWTClaimsSet jwtClaimsSet, String contextPath, Service service) {
+        try {
+            if(!isApiSubscribed(jwtClaimsSet, contextToRole(contextPath))) {
+                //Not subscribed
+                return isTokenInGroup(jwtClaimsSet, service.getServiceMeta().getSubscriptionGroup());
+            }
+        } catch (ParseException | JsonProcessingException e) {
+            log.debug(e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
     public boolean isAuthorized(String accessToken, String subscriptionGroup) {
         try {
             JWTClaimsSet jwtClaimsSet = authorizeRequest(accessToken);
@@ -316,8 +382,10 @@ public class HttpUtils {
 
     public void prepareForThrottleIfNeeded(Service service, String accessToken, Exchange exchange) throws ParseException {
         if(service.getServiceMeta().isThrottle() && !service.getServiceMeta().isThrottleGlobal()) {
-            SignedJWT signedJWT = SignedJWT.parse(accessToken);
-            JWTClaimsSet claimsSet = signedJWT.getJWTClaimsSet();
+            JWTClaimsSet claimsSet = getVerifiedClaims(exchange, accessToken);
+            if(claimsSet == null) {
+                claimsSet = SignedJWT.parse(accessToken).getJWTClaimsSet();
+            }
             if(claimsSet.getClaims().containsKey("throttleTotalCalls") && claimsSet.getClaims().get("throttleTotalCalls") != null) {
                 long throttleTotalCalls = claimsSet.getLongClaim("throttleTotalCalls");
                 long throttleDuration = claimsSet.getLongClaim("throttleDuration");
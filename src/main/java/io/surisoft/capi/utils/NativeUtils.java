@@ -0,0 +1,129 @@
+package io.surisoft.capi.utils;
+
+import io.surisoft.capi.configuration.CapiSslContextHolder;
+import io.surisoft.capi.processor.OpenApiPathMatcher;
+import io.surisoft.capi.schema.HttpProtocol;
+import io.surisoft.capi.schema.NativeClient;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.service.OutlierDetector;
+import io.surisoft.capi.tracer.CapiUndertowTracer;
+import io.surisoft.capi.undertow.CAPILoadBalancerProxyClient;
+import io.surisoft.capi.undertow.CAPIProxyHandler;
+import io.undertow.protocols.ssl.UndertowXnioSsl;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.xnio.OptionMap;
+import org.xnio.Xnio;
+import org.xnio.ssl.XnioSsl;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(prefix = "capi.native", name = "enabled", havingValue = "true")
+public class NativeUtils {
+
+    private final String capiContextName;
+    private final Optional<CapiUndertowTracer> capiUndertowTracer;
+    private final Optional<CapiSslContextHolder> capiSslContextHolder;
+    private final Optional<OutlierDetector> outlierDetector;
+
+    public NativeUtils(@Value("${camel.servlet.mapping.context-path}") String capiContextPath,
+                       Optional<CapiUndertowTracer> capiUndertowTracer,
+                       Optional<CapiSslContextHolder> capiSslContextHolder,
+                       Optional<OutlierDetector> outlierDetector) {
+        this.capiContextName = "/" + capiContextPath.replaceAll("/", "").replaceAll("\\*", "");
+        this.capiUndertowTracer = capiUndertowTracer;
+        this.capiSslContextHolder = capiSslContextHolder;
+        this.outlierDetector = outlierDetector;
+    }
+
+    public NativeClient createNativeClient(Service service) {
+        NativeClient nativeClient = new NativeClient();
+
+        //The path should be the same for all the nodes, so we take the first just to set the path.
+        String rootContext = service.getMappingList().stream().toList().get(0).getRootContext();
+        if(rootContext != null && !rootContext.isEmpty() && !rootContext.equals("/")) {
+            nativeClient.setRootContext(rootContext.endsWith("/") ? rootContext.substring(0, rootContext.length() - 1) : rootContext);
+        }
+        nativeClient.setServiceId(service.getContext());
+        nativeClient.setPath(normalizeCapiContextPath() + service.getContext());
+        nativeClient.setMappingList(service.getMappingList());
+        nativeClient.setService(service);
+        if(service.getServiceMeta().getAllowedOrigins() != null) {
+            nativeClient.setAllowedOrigins(Arrays.asList(service.getServiceMeta().getAllowedOrigins().split(",", -1)));
+        }
+        if(service.getServiceMeta().getOpenApiEndpoint() != null && service.getOpenAPI() != null) {
+            nativeClient.setOpenApiPathMatcher(new OpenApiPathMatcher(service.getOpenAPI()));
+        }
+        nativeClient.setHttpHandler(createClientHttpHandler(service));
+        return nativeClient;
+    }
+
+    public HttpHandler createClientHttpHandler(Service service) {
+        CAPILoadBalancerProxyClient loadBalancingProxyClient = new CAPILoadBalancerProxyClient(capiUndertowTracer.orElse(null), outlierDetector.orElse(null), service.getId());
+        XnioSsl xnioSsl = capiSslContextHolder
+                .map(sslContextHolder -> new UndertowXnioSsl(Xnio.getInstance(), OptionMap.EMPTY, sslContextHolder.getSslContext()))
+                .orElse(null);
+        service.getMappingList().forEach((m) -> {
+            String scheme = service.getServiceMeta().getScheme() == null ? HttpProtocol.HTTP.getProtocol() : service.getServiceMeta().getScheme();
+            URI uri = URI.create(scheme + "://" + m.getHostname() + ":" + m.getPort());
+            if(xnioSsl != null && scheme.equals(HttpProtocol.HTTPS.getProtocol())) {
+                loadBalancingProxyClient.addHost(uri, xnioSsl);
+            } else {
+                loadBalancingProxyClient.addHost(uri);
+            }
+        });
+        return CAPIProxyHandler
+                .builder()
+                .setProxyClient(loadBalancingProxyClient)
+                .setNext(ResponseCodeHandler.HANDLE_404)
+                .build();
+    }
+
+    //Returns the service context (/name/group) of a request path like /capi/name/group/..., or null
+    public String getClientId(String requestPath) {
+        int contextEnd = serviceContextEnd(requestPath);
+        if(contextEnd < 0) {
+            return null;
+        }
+        return requestPath.substring(capiContextName.length(), contextEnd);
+    }
+
+    //The part of the request path after the service context, always starting with a slash
+    public String getServicePath(String requestPath) {
+        int contextEnd = serviceContextEnd(requestPath);
+        if(contextEnd < 0 || contextEnd == requestPath.length()) {
+            return "/";
+        }
+        return requestPath.substring(contextEnd);
+    }
+
+    public String normalizePathForForwarding(NativeClient nativeClient, String servicePath) {
+        if(nativeClient.getRootContext() != null) {
+            return nativeClient.getRootContext() + servicePath;
+        }
+        return servicePath;
+    }
+
+    public String normalizeCapiContextPath() {
+        return capiContextName;
+    }
+
+    private int serviceContextEnd(String requestPath) {
+        if(requestPath == null || !requestPath.startsWith(capiContextName) || requestPath.length() <= capiContextName.length()
+                || requestPath.charAt(capiContextName.length()) != '/') {
+            return -1;
+        }
+        int nameEnd = requestPath.indexOf('/', capiContextName.length() + 1);
+        if(nameEnd < 0 || nameEnd == requestPath.length() - 1) {
+            return -1;
+        }
+        int groupEnd = requestPath.indexOf('/', nameEnd + 1);
+        return groupEnd < 0 ? requestPath.length() : groupEnd;
+    }
+}
@@ -2,6 +2,8 @@ package io.surisoft.capi.utils;
 
 import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import io.surisoft.capi.configuration.CapiSslContextHolder;
+import io.surisoft.capi.configuration.CapiSslContextParameters;
+import io.surisoft.capi.metrics.RoutePool;
 import io.surisoft.capi.processor.*;
 import io.surisoft.capi.schema.HttpMethod;
 import io.surisoft.capi.schema.HttpProtocol;
@@ -9,21 +11,43 @@ import io.surisoft.capi.schema.Mapping;
 import io.surisoft.capi.schema.Service;
 import io.surisoft.capi.service.CapiTrustManager;
 import io.surisoft.capi.service.OpaService;
+import io.surisoft.capi.service.OutlierDetector;
 import io.surisoft.capi.tracer.CapiTracer;
+import org.apache.camel.AsyncProcessor;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Channel;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Navigate;
+import org.apache.camel.Processor;
 import org.apache.camel.Route;
 import org.apache.camel.component.http.HttpComponent;
+import org.apache.camel.model.LoadBalanceDefinition;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.ProcessorDefinitionHelper;
 import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.model.ToDefinition;
+import org.apache.camel.processor.SendProcessor;
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
+import org.apache.camel.reifier.LoadBalanceReifier;
+import org.apache.camel.spi.NodeIdFactory;
+import org.apache.camel.support.service.ServiceHelper;
 import org.cache2k.Cache;
+import org.cache2k.CacheEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Component
 public class RouteUtils {
@@ -39,6 +63,14 @@ public class RouteUtils {
     private final int socketTimeout;
     private final int connectionRequestTimeout;
     private final int requestTimeout;
+    private final Optional<RoutePool> routePool;
+    private final Optional<OutlierDetector> outlierDetector;
+    private final Cache<String, Service> serviceCache;
+    private final Object[] serviceLocks = new Object[64];
+    private final boolean latencyAwareLoadBalancer;
+    private final long minimumHedgingDelay;
+    private final ScheduledExecutorService hedgingExecutor;
+    private final ExecutorService hedgingCallExecutor;
 
     public RouteUtils(HttpErrorProcessor httpErrorProcessor,
                       HttpUtils httpUtils,
@@ -50,7 +82,14 @@ public class RouteUtils {
                       CapiSslContextHolder capiSslContextHolder,
                       @Value("${capi.route.socket.timeout}") int socketTimeout,
                       @Value("${capi.route.connection.request.timeout}") int connectionRequestTimeout,
-                      @Value("${capi.route.request.timeout}") int requestTimeout
+                      @Value("${capi.route.request.timeout}") int requestTimeout,
+                      Optional<RoutePool> routePool,
+                      Optional<OutlierDetector> outlierDetector,
+                      Cache<String, Service> serviceCache,
+                      @Value("${capi.route.load-balancer.latency-aware}") boolean latencyAwareLoadBalancer,
+                      @Value("${capi.route.load-balancer.hedging.pool-size}") int hedgingPoolSize,
+                      @Value("${capi.route.load-balancer.hedging.max-calls}") int hedgingMaximumCalls,
+                      @Value("${capi.route.load-balancer.hedging.min-delay}") long minimumHedgingDelay
     ) {
         this.httpErrorProcessor = httpErrorProcessor;
         this.httpUtils = httpUtils;
@@ -63,6 +102,39 @@ public class RouteUtils {
         this.socketTimeout = socketTimeout;
         this.connectionRequestTimeout = connectionRequestTimeout;
         this.requestTimeout = requestTimeout;
+        this.routePool = routePool;
+        this.outlierDetector = outlierDetector;
+        this.serviceCache = serviceCache;
+        for(int i = 0; i < serviceLocks.length; i++) {
+            serviceLocks[i] = new Object();
+        }
+        //Ejected backends leave the load balancers of the live routes, and join them again when they come back
+        outlierDetector.ifPresent(detector -> detector.setEjectionListener(this::refreshRouteTargets));
+        this.latencyAwareLoadBalancer = latencyAwareLoadBalancer;
+        this.minimumHedgingDelay = minimumHedgingDelay;
+        this.hedgingExecutor = latencyAwareLoadBalancer ?
+                Executors.newScheduledThreadPool(hedgingPoolSize, createThreadFactory("capi-hedging-")) : null;
+        //Bounded, a call over the maximum is rejected and fails over like a failed call
+        this.hedgingCallExecutor = latencyAwareLoadBalancer ?
+                new ThreadPoolExecutor(0, hedgingMaximumCalls, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), createThreadFactory("capi-hedging-call-")) : null;
+    }
+
+    private static ThreadFactory createThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //The latency aware load balancer of a fail over route, or null to keep the round-robin fail over
+    public LatencyAwareLoadBalancer createLoadBalancer(Service service, int maximumFailoverAttempts) {
+        if(!latencyAwareLoadBalancer) {
+            return null;
+        }
+        boolean hedging = service.getServiceMeta().isHedging() && !service.getServiceMeta().isStreaming();
+        return new LatencyAwareLoadBalancer(maximumFailoverAttempts, hedging ? hedgingExecutor : null, hedgingCallExecutor, minimumHedgingDelay);
     }
 
     public void registerMetric(String routeId) {
@@ -85,7 +157,11 @@ public class RouteUtils {
 
     public String[] buildEndpoints(Service service) {
         List<String> transformedEndpointList = new ArrayList<>();
+        List<Mapping> routedMappings = new ArrayList<>();
         for(Mapping mapping : service.getMappingList()) {
+            if(outlierDetector.isPresent() && outlierDetector.get().isEjected(service.getId(), mapping)) {
+                continue;
+            }
             HttpProtocol httpProtocol = null;
             if(service.getServiceMeta().getScheme() == null || service.getServiceMeta().getScheme().equals("http")) {
                 httpProtocol = HttpProtocol.HTTP;
@@ -107,11 +183,21 @@ public class RouteUtils {
                 endpoint = endpoint + "&headerFilterStrategy=#capiCorsFilterStrategy";
             }
 
+            if(service.getServiceMeta().isStreaming()) {
+                endpoint = endpoint + Constants.DISABLE_STREAM_CACHE;
+            }
+
+            routedMappings.add(mapping);
             transformedEndpointList.add(endpoint);
         }
+        routePool.ifPresent(pool -> pool.registerHosts(service.getId(), routedMappings));
         return transformedEndpointList.toArray(String[]::new);
     }
 
+    public void unregisterHosts(Service service) {
+        routePool.ifPresent(pool -> pool.unregisterHosts(service.getId()));
+    }
+
     public String buildFrom(Service service) {
         if(!service.getContext().startsWith("/")) {
             return "/" + service.getContext();
@@ -142,6 +228,125 @@ public class RouteUtils {
         return routeIdList;
     }
 
+    //Held while the routes of a service are deployed, updated or removed, by discovery and by the outlier detector
+    public Object getServiceLock(String serviceId) {
+        return serviceLocks[Math.floorMod(serviceId.hashCode(), serviceLocks.length)];
+    }
+
+    private void refreshRouteTargets(String serviceId) {
+        synchronized(getServiceLock(serviceId)) {
+            //Read under the lock, a redeploy of the service may have changed its backends
+            Service service = serviceCache.peek(serviceId);
+            if(service != null) {
+                updateRouteTargets(service);
+            }
+        }
+    }
+
+    //Swaps the backend endpoints of the load balancers of a live fail over route, without stopping the route
+    public boolean updateRouteTargets(Service service) {
+        Map<LoadBalancer, TargetReifier> loadBalancers = new LinkedHashMap<>();
+        for(String routeId : getAllRouteIdForAGivenService(service)) {
+            String loadBalancerId = routeId + Constants.LOAD_BALANCER_ID_SUFFIX;
+            Processor processor = camelContext.getProcessor(loadBalancerId);
+            Route route = camelContext.getRoute(routeId);
+            LoadBalanceDefinition loadBalanceDefinition = getLoadBalanceDefinition(routeId, loadBalancerId);
+            if(!(processor instanceof LoadBalancer loadBalancer) || route == null || loadBalanceDefinition == null) {
+                return false;
+            }
+            loadBalancers.put(loadBalancer, new TargetReifier(route, loadBalanceDefinition));
+        }
+
+        Set<Endpoint> endpoints = new LinkedHashSet<>();
+        for(String endpointUri : buildEndpoints(service)) {
+            endpoints.add(camelContext.getEndpoint(endpointUri));
+        }
+
+        Set<Endpoint> staleEndpoints = new LinkedHashSet<>();
+        try {
+            for(Map.Entry<LoadBalancer, TargetReifier> entry : loadBalancers.entrySet()) {
+                LoadBalancer loadBalancer = entry.getKey();
+                Set<Endpoint> missingEndpoints = new LinkedHashSet<>(endpoints);
+                List<AsyncProcessor> staleProcessors = new ArrayList<>();
+                for(AsyncProcessor processor : loadBalancer.getProcessors()) {
+                    Endpoint destination = getDestination(processor);
+                    if(destination == null || !missingEndpoints.remove(destination)) {
+                        staleProcessors.add(processor);
+                    }
+                }
+                for(Endpoint endpoint : missingEndpoints) {
+                    //Wrapped in a channel like the targets of the route, with its error handler, interceptors and tracing
+                    AsyncProcessor target = entry.getValue().createTarget(endpoint);
+                    ServiceHelper.startService(target);
+                    loadBalancer.addProcessor(target);
+                }
+                for(AsyncProcessor staleProcessor : staleProcessors) {
+                    Endpoint destination = getDestination(staleProcessor);
+                    if(destination != null) {
+                        staleEndpoints.add(destination);
+                    }
+                    loadBalancer.removeProcessor(staleProcessor);
+                    ServiceHelper.stopAndShutdownService(staleProcessor);
+                }
+            }
+            //Otherwise the endpoints of the old backends pile up in the context as pods churn
+            staleEndpoints.removeAll(endpoints);
+            for(Endpoint staleEndpoint : staleEndpoints) {
+                if(!isRoutedByAnotherService(service, staleEndpoint)) {
+                    camelContext.removeEndpoint(staleEndpoint);
+                }
+            }
+        } catch(Exception e) {
+            log.error(e.getMessage(), e);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean isRoutedByAnotherService(Service service, Endpoint endpoint) {
+        for(CacheEntry<String, Service> serviceEntry : serviceCache.entries()) {
+            if(serviceEntry.getKey().equals(service.getId())) {
+                continue;
+            }
+            for(Mapping mapping : serviceEntry.getValue().getMappingList()) {
+                if(endpoint.getEndpointUri().contains(mapping.getHostname())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private LoadBalanceDefinition getLoadBalanceDefinition(String routeId, String loadBalancerId) {
+        RouteDefinition routeDefinition = ((ModelCamelContext) camelContext).getRouteDefinition(routeId);
+        if(routeDefinition == null) {
+            return null;
+        }
+        for(LoadBalanceDefinition loadBalanceDefinition : ProcessorDefinitionHelper.filterTypeInOutputs(routeDefinition.getOutputs(), LoadBalanceDefinition.class)) {
+            if(loadBalancerId.equals(loadBalanceDefinition.getId())) {
+                return loadBalanceDefinition;
+            }
+        }
+        return null;
+    }
+
+    private Endpoint getDestination(Processor processor) {
+        while(processor != null) {
+            if(processor instanceof SendProcessor sendProcessor) {
+                return sendProcessor.getDestination();
+            }
+            if(processor instanceof Channel channel) {
+                processor = channel.getNextProcessor();
+            } else if(processor instanceof Navigate<?> navigate && navigate.hasNext() && navigate.next().size() == 1
+                    && navigate.next().get(0) instanceof Processor next) {
+                processor = next;
+            } else {
+                return null;
+            }
+        }
+        return null;
+    }
+
     public void reloadTrustStoreManager(InputStream inputStream, String capiTrustStorePassword) {
         try {
             log.trace("Reloading Trust Store Manager after changes detected");
@@ -149,6 +354,9 @@ public class RouteUtils {
             CapiTrustManager capiTrustManager = (CapiTrustManager) httpComponent.getSslContextParameters().getTrustManagers().getTrustManager();
             capiTrustManager.reloadTrustManager(inputStream, capiTrustStorePassword);
             httpComponent.getSslContextParameters().getTrustManagers().setTrustManager(capiTrustManager);
+            if(httpComponent.getSslContextParameters() instanceof CapiSslContextParameters capiSslContextParameters) {
+                capiSslContextParameters.invalidateSessions();
+            }
         } catch(Exception e) {
             log.error(e.getMessage(), e);
         }
@@ -179,4 +387,19 @@ public class RouteUtils {
     public HttpErrorProcessor getHttpErrorProcessor() {
         return httpErrorProcessor;
     }
-}
\ No newline at end of file
+
+    //Creates the targets of a live load balancer the way the route built the ones it started with
+    private static final class TargetReifier extends LoadBalanceReifier {
+
+        private TargetReifier(Route route, LoadBalanceDefinition loadBalanceDefinition) {
+            super(route, loadBalanceDefinition);
+        }
+
+        private AsyncProcessor createTarget(Endpoint endpoint) throws Exception {
+            ToDefinition toDefinition = new ToDefinition(endpoint.getEndpointUri());
+            toDefinition.setParent(definition);
+            toDefinition.idOrCreate(camelContext.getCamelContextExtension().getContextPlugin(NodeIdFactory.class));
+            return wrapChannel(createProcessor(toDefinition), toDefinition);
+        }
+    }
+}
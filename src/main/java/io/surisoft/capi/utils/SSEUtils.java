@@ -4,6 +4,8 @@ import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import io.surisoft.capi.exception.CapiUndertowException;
 import io.surisoft.capi.oidc.SSEAuthorization;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.GatewayRouteTable;
 import io.surisoft.capi.schema.HttpProtocol;
 import io.surisoft.capi.schema.SSEClient;
 import io.surisoft.capi.schema.Service;
@@ -16,6 +18,7 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,27 +28,32 @@ public class SSEUtils {
 
     private final String capiContextPath;
     private final Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor;
+    private final int connectionsPerThread;
+    private final int maxRequestTime;
+    private volatile GatewayRouteTable<SSEClient> routeTable;
 
     public SSEUtils(@Value("${camel.servlet.mapping.context-path}") String capiContextPath,
-                    Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor) {
+                    Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor,
+                    ClientRegistry<SSEClient> sseClientRegistry,
+                    @Value("${capi.sse.upstream.connections-per-thread}") int connectionsPerThread,
+                    @Value("${capi.sse.upstream.max-request-time}") int maxRequestTime) {
         this.capiContextPath = capiContextPath;
         this.defaultJWTProcessor = defaultJWTProcessor;
+        this.connectionsPerThread = connectionsPerThread;
+        this.maxRequestTime = maxRequestTime;
+        String capiContext = normalizeCapiContextPath();
+        sseClientRegistry.addListener(snapshot -> routeTable = GatewayRouteTable.build(capiContext, snapshot.clients(), sseClient -> null));
     }
 
-    public HttpHandler createClientHttpHandler(SSEClient sseClient, Service service) {
+    //Every open stream holds an upstream connection, so the pool has to be sized for the stream limits
+    public HttpHandler createClientHttpHandler(SSEClient sseClient) {
         LoadBalancingProxyClient loadBalancingProxyClient = new LoadBalancingProxyClient();
-        sseClient.getMappingList().forEach((m) -> {
-            if(m.getHostname().contains("http://") || m.getHostname().contains("https://")) {
-                loadBalancingProxyClient.addHost(URI.create(m.getHostname() + ":" + m.getPort()));
-            } else {
-                String schema = service.getServiceMeta().getScheme() == null ? HttpProtocol.HTTP.getProtocol() : service.getServiceMeta().getScheme();
-                loadBalancingProxyClient.addHost(URI.create(schema + "://" + m.getHostname() + ":" + m.getPort()));
-            }
-        });
+        loadBalancingProxyClient.setConnectionsPerThread(connectionsPerThread);
+        sseClient.getUpstreams().forEach(loadBalancingProxyClient::addHost);
         return ProxyHandler
                 .builder()
                 .setProxyClient(loadBalancingProxyClient)
-                .setMaxRequestTime(360000)
+                .setMaxRequestTime(maxRequestTime)
                 .setNext(ResponseCodeHandler.HANDLE_404)
                 .build();
     }
@@ -57,11 +65,6 @@ public class SSEUtils {
         throw new CapiUndertowException("No OIDC provider enabled, consider enabling OIDC");
     }
 
-    public String normalizePathForForwarding(SSEClient sseClient, String path) {
-        String pathWithoutCapiContext = path.replaceFirst(capiContextPath, "/");
-        return pathWithoutCapiContext.replaceAll(sseClient.getApiId(), "");
-    }
-
     public String normalizeBaseContextName() {
         return capiContextPath.replaceAll("/", "").replaceAll("\\*", "");
     }
@@ -87,26 +90,35 @@ public class SSEUtils {
         sseClient.setMappingList(service.getMappingList());
         sseClient.setPath(sseContext);
         sseClient.setRequiresSubscription(service.getServiceMeta().isSecured());
-        sseClient.setHttpHandler(createClientHttpHandler(sseClient, service));
+        sseClient.setFanout(service.getServiceMeta().isSseFanout());
+        sseClient.setUpstreams(getUpstreams(service));
+        sseClient.setHttpHandler(createClientHttpHandler(sseClient));
         if(service.getServiceMeta().getSubscriptionGroup() != null) {
             sseClient.setSubscriptionRole(service.getServiceMeta().getSubscriptionGroup());
         }
         return sseClient;
     }
 
+    public List<URI> getUpstreams(Service service) {
+        List<URI> upstreams = new ArrayList<>();
+        service.getMappingList().forEach((m) -> {
+            if(m.getHostname().contains("http://") || m.getHostname().contains("https://")) {
+                upstreams.add(URI.create(m.getHostname() + ":" + m.getPort()));
+            } else {
+                String schema = service.getServiceMeta().getScheme() == null ? HttpProtocol.HTTP.getProtocol() : service.getServiceMeta().getScheme();
+                upstreams.add(URI.create(schema + "://" + m.getHostname() + ":" + m.getPort()));
+            }
+        });
+        return upstreams;
+    }
+
     public String normalizeCapiContextPath() {
         String normalized = capiContextPath.replaceAll("/", "").replaceAll("\\*", "");
         return "/" + normalized;
     }
 
-    public String getWebclientId(String originalRequest) {
-        String[] pathParts = originalRequest.split("/");
-        if(pathParts.length < 4) {
-            return null;
-        }
-        if(!pathParts[1].equals(normalizeBaseContextName())) {
-            return null;
-        }
-        return  "/" + pathParts[2] + "/" + pathParts[3];
+    //The dispatch table of the SSE gateway, rebuilt with every new version of the SSE client registry
+    public GatewayRouteTable<SSEClient> getRouteTable() {
+        return routeTable;
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Component
@@ -27,26 +28,29 @@ public class ServiceUtils {
 
     private static final Logger log = LoggerFactory.getLogger(ServiceUtils.class);
     private final HttpUtils httpUtils;
-    private final Optional<Map<String, WebsocketClient>> websocketClientMap;
-    private final Optional<Map<String, SSEClient>> sseClientMap;
+    private final Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry;
+    private final Optional<ClientRegistry<SSEClient>> sseClientRegistry;
+    private final Optional<ClientRegistry<GrpcClient>> grpcClientRegistry;
+    private final Optional<ClientRegistry<NativeClient>> nativeClientRegistry;
     private final RouteUtils routeUtils;
     private final CamelContext camelContext;
-    private final Optional<WebsocketUtils> websocketUtils;
     private final String capiRunningMode;
 
     public ServiceUtils(HttpUtils httpUtils,
-                        Optional<Map<String, WebsocketClient>> websocketClientMap,
-                        Optional<Map<String, SSEClient>> sseClientMap,
+                        Optional<ClientRegistry<WebsocketClient>> websocketClientRegistry,
+                        Optional<ClientRegistry<SSEClient>> sseClientRegistry,
+                        Optional<ClientRegistry<GrpcClient>> grpcClientRegistry,
+                        Optional<ClientRegistry<NativeClient>> nativeClientRegistry,
                         RouteUtils routeUtils,
                         CamelContext camelContext,
-                        Optional<WebsocketUtils> websocketUtils,
                         @Value("${capi.mode}") String capiRunningMode) {
         this.httpUtils = httpUtils;
-        this.websocketClientMap = websocketClientMap;
-        this.sseClientMap = sseClientMap;
+        this.websocketClientRegistry = websocketClientRegistry;
+        this.sseClientRegistry = sseClientRegistry;
+        this.grpcClientRegistry = grpcClientRegistry;
+        this.nativeClientRegistry = nativeClientRegistry;
         this.routeUtils = routeUtils;
         this.camelContext = camelContext;
-        this.websocketUtils = websocketUtils;
         this.capiRunningMode = capiRunningMode;
     }
 
@@ -109,16 +113,17 @@ public class ServiceUtils {
         if(existingService.getServiceMeta().getType() != null &&
                 existingService.getServiceMeta().getType().equals(Constants.WEBSOCKET_TYPE) &&
                 incomingService.getServiceMeta().getType().equals(Constants.WEBSOCKET_TYPE) &&
-                websocketClientMap.isPresent() &&
-                websocketClientMap.get().containsKey(existingService.getId())) {
-            websocketClientMap.get().remove(existingService.getContext());
+                websocketClientRegistry.isPresent() &&
+                websocketClientRegistry.get().get(existingService.getId()) != null) {
+            websocketClientRegistry.get().remove(existingService.getContext());
         } else if(existingService.getServiceMeta().getType() != null &&
                 existingService.getServiceMeta().getType().equals(Constants.SSE_TYPE) &&
                 incomingService.getServiceMeta().getType().equals(Constants.SSE_TYPE) &&
-                sseClientMap.isPresent() &&
-                sseClientMap.get().containsKey(existingService.getId())) {
-            sseClientMap.get().remove(existingService.getId());
+                sseClientRegistry.isPresent() &&
+                sseClientRegistry.get().get(existingService.getId()) != null) {
+            sseClientRegistry.get().remove(existingService.getContext());
         } else {
+            nativeClientRegistry.ifPresent(nativeClients -> nativeClients.remove(existingService.getContext()));
             try {
                 List<String> apiRouteIdList = routeUtils.getAllRouteIdForAGivenService(existingService);
                 for(String routeId : apiRouteIdList) {
@@ -144,6 +149,25 @@ public class ServiceUtils {
     }
 
     public boolean didServiceChange(Service existingService, Service incomingService) {
+        return didMappingChange(existingService, incomingService) || didServiceMetaChange(existingService, incomingService);
+    }
+
+    //Only the backends of a fail over rest service changed, so the live routes can keep running with new targets.
+    //The live processors keep the old service, so anything else that changed needs a redeploy
+    public boolean canUpdateInPlace(Service existingService, Service incomingService) {
+        String type = existingService.getServiceMeta().getType();
+        return (type == null || type.equals("rest")) &&
+                existingService.isFailOverEnabled() &&
+                incomingService.isFailOverEnabled() &&
+                existingService.isRoundRobinEnabled() == incomingService.isRoundRobinEnabled() &&
+                existingService.isMatchOnUriPrefix() == incomingService.isMatchOnUriPrefix() &&
+                existingService.isForwardPrefix() == incomingService.isForwardPrefix() &&
+                Objects.equals(existingService.getContext(), incomingService.getContext()) &&
+                existingService.getServiceMeta().equals(incomingService.getServiceMeta()) &&
+                didMappingChange(existingService, incomingService);
+    }
+
+    private boolean didMappingChange(Service existingService, Service incomingService) {
         if(existingService.getMappingList().size() != incomingService.getMappingList().size()) {
             return true;
         }
@@ -152,7 +176,10 @@ public class ServiceUtils {
                 return true;
             }
         }
+        return false;
+    }
 
+    private boolean didServiceMetaChange(Service existingService, Service incomingService) {
         if(didOpenApiEndpointChange(existingService.getServiceMeta().getOpenApiEndpoint(), incomingService.getServiceMeta().getOpenApiEndpoint())) {
             return true;
         }
@@ -165,10 +192,35 @@ public class ServiceUtils {
             return true;
         }
 
+        if(existingService.getServiceMeta().isNativeProxy() != incomingService.getServiceMeta().isNativeProxy()) {
+            return true;
+        }
+
+        if(existingService.getServiceMeta().isStreaming() != incomingService.getServiceMeta().isStreaming()) {
+            return true;
+        }
+
         if(didVersionChange(existingService.getServiceMeta().getVersion(), incomingService.getServiceMeta().getVersion())) {
             return true;
         }
 
+        if(existingService.getServiceMeta().isConcurrencyLimit() != incomingService.getServiceMeta().isConcurrencyLimit() ||
+                existingService.getServiceMeta().getConcurrencyLimitMax() != incomingService.getServiceMeta().getConcurrencyLimitMax()) {
+            return true;
+        }
+
+        if(existingService.getServiceMeta().isHedging() != incomingService.getServiceMeta().isHedging()) {
+            return true;
+        }
+
+        if(!Objects.equals(existingService.getServiceMeta().getGrpcServices(), incomingService.getServiceMeta().getGrpcServices())) {
+            return true;
+        }
+
+        if(existingService.getServiceMeta().isSseFanout() != incomingService.getServiceMeta().isSseFanout()) {
+            return true;
+        }
+
         return didSubscriptionGroupChange(existingService.getServiceMeta().getSubscriptionGroup(), incomingService.getServiceMeta().getSubscriptionGroup());
     }
 
@@ -204,16 +256,20 @@ public class ServiceUtils {
 
 
     public void removeUnusedService(CamelContext camelContext, RouteUtils routeUtils, Service service) throws Exception {
-        if(service.getServiceMeta().getType().equals("websocket") && websocketClientMap.isPresent() && websocketUtils.isPresent()) {
-            websocketUtils.get().removeClientFromMap(websocketClientMap.get(), service);
-        } else if(service.getServiceMeta().getType().equals("sse") && sseClientMap.isPresent()) {
-            sseClientMap.get().remove(service.getContext());
+        if(service.getServiceMeta().getType().equals("websocket") && websocketClientRegistry.isPresent()) {
+            websocketClientRegistry.get().remove(service.getContext());
+        } else if(service.getServiceMeta().getType().equals("sse") && sseClientRegistry.isPresent()) {
+            sseClientRegistry.get().remove(service.getContext());
+        } else if(service.getServiceMeta().getType().equals(Constants.GRPC_TYPE) && grpcClientRegistry.isPresent()) {
+            grpcClientRegistry.get().batch().removeIf(grpcClient -> grpcClient.getServiceId().equals(service.getId())).commit();
         } else {
+            nativeClientRegistry.ifPresent(nativeClients -> nativeClients.remove(service.getContext()));
             List<String> serviceRouteIdList = routeUtils.getAllRouteIdForAGivenService(service);
             for (String routeId : serviceRouteIdList) {
                 camelContext.getRouteController().stopRoute(routeId);
                 camelContext.removeRoute(routeId);
             }
+            routeUtils.unregisterHosts(service);
         }
     }
 
@@ -4,6 +4,8 @@ import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import io.surisoft.capi.exception.CapiUndertowException;
 import io.surisoft.capi.oidc.WebsocketAuthorization;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.GatewayRouteTable;
 import io.surisoft.capi.schema.HttpProtocol;
 import io.surisoft.capi.schema.Service;
 import io.surisoft.capi.schema.WebsocketClient;
@@ -36,7 +38,6 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.Base64;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 @Component
@@ -52,6 +53,7 @@ public class WebsocketUtils {
     private final String capiTrustStorePassword;
     private final String capiTrustStoreEncoded;
     private XnioSsl xnioSsl;
+    private volatile GatewayRouteTable<WebsocketClient> routeTable;
 
     public WebsocketUtils(@Value("${camel.servlet.mapping.context-path}") String capiContextPath,
                           Optional<List<DefaultJWTProcessor<SecurityContext>>> defaultJWTProcessor,
@@ -59,7 +61,8 @@ public class WebsocketUtils {
                           @Value("${capi.trust.store.enabled}") boolean capiTrustStoreEnabled,
                           @Value("${capi.trust.store.path}") String capiTrustStorePath,
                           @Value("${capi.trust.store.password}") String capiTrustStorePassword,
-                          @Value("${capi.trust.store.encoded}") String capiTrustStoreEncoded) {
+                          @Value("${capi.trust.store.encoded}") String capiTrustStoreEncoded,
+                          ClientRegistry<WebsocketClient> websocketClientRegistry) {
         this.capiContextPath = capiContextPath;
         this.defaultJWTProcessor = defaultJWTProcessor;
         this.capiUndertowTracer = capiUndertowTracer;
@@ -67,6 +70,8 @@ public class WebsocketUtils {
         this.capiTrustStorePath = capiTrustStorePath;
         this.capiTrustStorePassword = capiTrustStorePassword;
         this.capiTrustStoreEncoded = capiTrustStoreEncoded;
+        String capiContext = normalizeCapiContextPath();
+        websocketClientRegistry.addListener(snapshot -> routeTable = GatewayRouteTable.build(capiContext, snapshot.clients(), WebsocketClient::getRootContext));
 
         if(capiTrustStoreEnabled) {
             this.xnioSsl = createXnioSsl();
@@ -74,7 +79,7 @@ public class WebsocketUtils {
     }
 
     public HttpHandler createClientHttpHandler(WebsocketClient webSocketClient, Service service) {
-        CAPILoadBalancerProxyClient loadBalancingProxyClient = new CAPILoadBalancerProxyClient(capiUndertowTracer.orElse(null));
+        CAPILoadBalancerProxyClient loadBalancingProxyClient = new CAPILoadBalancerProxyClient(capiUndertowTracer.orElse(null), null, service.getId());
         webSocketClient.getMappingList().forEach((m) -> {
             String scheme = service.getServiceMeta().getScheme() == null ? HttpProtocol.HTTP.getProtocol() : service.getServiceMeta().getScheme();
             if(capiTrustStoreEnabled) {
@@ -97,30 +102,10 @@ public class WebsocketUtils {
         throw new CapiUndertowException("No OIDC provider enabled, consider enabling OIDC");
     }
 
-    public String normalizePathForForwarding(WebsocketClient websocketClient, String path) {
-        String pathWithoutCapiContext = path.replaceFirst(capiContextPath, "/");
-        pathWithoutCapiContext = pathWithoutCapiContext.replaceAll(websocketClient.getServiceId(), "");
-        if(websocketClient.getRootContext() != null && !websocketClient.getRootContext().isEmpty()) {
-            return  websocketClient.getRootContext() + pathWithoutCapiContext;
-        }
-        return pathWithoutCapiContext.replaceAll(websocketClient.getServiceId(), "");
-    }
-
     public String normalizeBaseContextName() {
         return capiContextPath.replaceAll("/", "").replaceAll("\\*", "");
     }
 
-    public String getWebclientId(String originalRequest) {
-        String[] pathParts = originalRequest.split("/");
-        if(pathParts.length < 4) {
-            return null;
-        }
-        if(!pathParts[1].equals(normalizeBaseContextName())) {
-            return null;
-        }
-        return  "/" + pathParts[2] + "/" + pathParts[3];
-    }
-
     public WebsocketClient createWebsocketClient(Service service) {
         WebsocketClient websocketClient = new WebsocketClient();
 
@@ -139,8 +124,9 @@ public class WebsocketUtils {
         return websocketClient;
     }
 
-    public void removeClientFromMap(Map<String, WebsocketClient> websocketClientMap, Service service) {
-        websocketClientMap.remove(service.getContext());
+    //The dispatch table of the websocket gateway, rebuilt with every new version of the websocket client registry
+    public GatewayRouteTable<WebsocketClient> getRouteTable() {
+        return routeTable;
     }
 
     public String normalizeCapiContextPath() {
@@ -0,0 +1,88 @@
+package io.surisoft.capi.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.surisoft.capi.kafka.CapiInstance;
+import io.surisoft.capi.kafka.CapiKafkaEvent;
+import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.SlidingWindowCounter;
+import io.surisoft.capi.schema.ThrottleServiceObject;
+import org.cache2k.Cache;
+import org.cache2k.operation.CacheControl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigurationTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private Cache<String, SlidingWindowCounter> throttleCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        throttleCache.close();
+    }
+
+    @Test
+    void testWeightFollowsTheMergedInstances() {
+        throttleCache = new CacheConfiguration(List.of(), "http://localhost:8500").createLocalThrottleCache(1000000, meterRegistry);
+        long now = System.currentTimeMillis();
+        SlidingWindowCounter slidingWindowCounter = new SlidingWindowCounter("orders:dev:consumer", "consumer", 60000);
+        slidingWindowCounter.tryAcquire(100, now);
+        throttleCache.put("orders:dev:consumer", slidingWindowCounter);
+        long initialWeight = CacheControl.of(throttleCache).getTotalWeight();
+        assertEquals(slidingWindowCounter.estimatedSize(), initialWeight);
+
+        long expirationTime = slidingWindowCounter.snapshot(now).getExpirationTime();
+        CapiKafkaEvent capiKafkaEvent = new CapiKafkaEvent(new CapiInstance("instance-a"), throttleCache);
+        for(String instanceId : List.of("instance-b", "instance-c", "instance-b")) {
+            CapiEvent capiEvent = new CapiEvent();
+            capiEvent.setId(instanceId);
+            capiEvent.setInstanceId(instanceId);
+            capiEvent.setType(CapiKafkaEvent.THROTTLING_BATCH_EVENT_TYPE);
+            capiEvent.setThrottleServiceObjects(List.of(new ThrottleServiceObject("orders:dev:consumer", "consumer", 100, 5, expirationTime)));
+            capiKafkaEvent.process(capiEvent);
+        }
+
+        //Two new instances in the window, the repeated one does not weigh more
+        assertTrue(CacheControl.of(throttleCache).getTotalWeight() > initialWeight);
+        assertEquals(slidingWindowCounter.estimatedSize(), CacheControl.of(throttleCache).getTotalWeight());
+        assertEquals(slidingWindowCounter.estimatedSize(), meterRegistry.get("capi_throttle_cache_bytes").gauge().value());
+    }
+
+    @Test
+    void testEvictionsAreCounted() {
+        throttleCache = new CacheConfiguration(List.of(), "http://localhost:8500").createLocalThrottleCache(4000, meterRegistry);
+        for(int i = 0; i < 50; i++) {
+            String cacheKey = "orders:dev:consumer-" + i;
+            throttleCache.put(cacheKey, new SlidingWindowCounter(cacheKey, "consumer-" + i, 60000));
+        }
+
+        assertTrue(CacheControl.of(throttleCache).getTotalWeight() <= 4000);
+        assertTrue(meterRegistry.get("capi_throttle_cache_evictions").counter().count() > 0);
+        assertEquals(0, meterRegistry.get("capi_throttle_cache_expirations").counter().count());
+    }
+
+    @Test
+    void testExpirationsAreCounted() throws InterruptedException {
+        throttleCache = new CacheConfiguration(List.of(), "http://localhost:8500").createLocalThrottleCache(1000000, meterRegistry);
+        throttleCache.put("orders:dev:consumer", new SlidingWindowCounter("orders:dev:consumer", "consumer", 100));
+
+        //The window and the one after it are over within 200ms, the expiry is not sharp
+        long deadline = System.currentTimeMillis() + 10000;
+        while(meterRegistry.get("capi_throttle_cache_expirations").counter().count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, meterRegistry.get("capi_throttle_cache_expirations").counter().count());
+        assertEquals(0, meterRegistry.get("capi_throttle_cache_entries").gauge().value());
+        assertEquals(0, meterRegistry.get("capi_throttle_cache_evictions").counter().count());
+    }
+}
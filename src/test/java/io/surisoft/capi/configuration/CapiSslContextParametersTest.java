@@ -0,0 +1,129 @@
+package io.surisoft.capi.configuration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.jsse.TrustManagersParameters;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.*;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapiSslContextParametersTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private DefaultCamelContext camelContext;
+    private SSLServerSocket serverSocket;
+    private Thread server;
+    private KeyStore trustStore;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        X500Name name = new X500Name("CN=localhost");
+        long now = System.currentTimeMillis();
+        X509Certificate certificate = new JcaX509CertificateConverter().getCertificate(
+                new JcaX509v3CertificateBuilder(name, BigInteger.ONE, new Date(now - 60000), new Date(now + 3600000), name, keyPair.getPublic())
+                        .build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate())));
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("server", keyPair.getPrivate(), PASSWORD, new Certificate[]{certificate});
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+        trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("server", certificate);
+
+        //TLS 1.2 caches the session at the end of the handshake, TLS 1.3 only once a ticket is read
+        serverSocket = (SSLServerSocket) serverContext.getServerSocketFactory().createServerSocket(0);
+        serverSocket.setEnabledProtocols(new String[]{"TLSv1.2"});
+        server = new Thread(() -> {
+            while(!serverSocket.isClosed()) {
+                try(SSLSocket socket = (SSLSocket) serverSocket.accept()) {
+                    socket.startHandshake();
+                    socket.getOutputStream().write(1);
+                } catch (Exception ignored) {
+                    //Closed at the end of the test
+                }
+            }
+        });
+        server.start();
+
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        serverSocket.close();
+        server.join(5000);
+        camelContext.stop();
+    }
+
+    @Test
+    void testSessionsAreResumedAndInvalidated() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CapiSslContextParameters capiSslContextParameters = new CapiSslContextParameters(10, 300, meterRegistry);
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(trustStore);
+        TrustManagersParameters trustManagersParameters = new TrustManagersParameters();
+        trustManagersParameters.setTrustManager(trustManagerFactory.getTrustManagers()[0]);
+        capiSslContextParameters.setTrustManagers(trustManagersParameters);
+        SSLContext sslContext = capiSslContextParameters.createSSLContext(camelContext);
+
+        assertEquals(10, sslContext.getClientSessionContext().getSessionCacheSize());
+        assertEquals(0, capiSslContextParameters.getResumableSessions());
+
+        byte[] firstSessionId = handshake(sslContext);
+        assertEquals(1, capiSslContextParameters.getResumableSessions());
+        assertEquals(1, meterRegistry.get("capi_tls_resumable_sessions").gauge().value());
+        assertArrayEquals(firstSessionId, handshake(sslContext));
+
+        capiSslContextParameters.invalidateSessions();
+        assertEquals(0, capiSslContextParameters.getResumableSessions());
+        assertFalse(Arrays.equals(firstSessionId, handshake(sslContext)));
+
+        //The listeners are notified off the handshaking thread
+        awaitHandshakes(capiSslContextParameters, 3);
+        assertEquals(2, capiSslContextParameters.getFullHandshakes());
+        assertEquals(1, capiSslContextParameters.getResumedHandshakes());
+        assertEquals(2, meterRegistry.get("capi_tls_handshakes").tag("type", "full").counter().count());
+        assertEquals(1, meterRegistry.get("capi_tls_handshakes").tag("type", "resumed").counter().count());
+    }
+
+    private void awaitHandshakes(CapiSslContextParameters capiSslContextParameters, int handshakes) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(capiSslContextParameters.getFullHandshakes() + capiSslContextParameters.getResumedHandshakes() < handshakes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private byte[] handshake(SSLContext sslContext) throws Exception {
+        try(SSLSocket socket = (SSLSocket) sslContext.getSocketFactory().createSocket("localhost", serverSocket.getLocalPort())) {
+            socket.startHandshake();
+            assertEquals(1, socket.getInputStream().read());
+            return socket.getSession().getId();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import io.surisoft.capi.configuration.ConsulHosts;
 import io.surisoft.capi.processor.ContentTypeValidator;
 import io.surisoft.capi.processor.MetricsProcessor;
+import io.surisoft.capi.schema.ClientRegistry;
 import io.surisoft.capi.schema.SSEClient;
 import io.surisoft.capi.schema.Service;
 import io.surisoft.capi.schema.WebsocketClient;
@@ -24,7 +25,6 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.List;
-import java.util.Map;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
@@ -89,7 +89,7 @@ class TestConsulNodeDiscovery {
     OpaService opaService;
 
     @Autowired(required = false)
-    Map<String, WebsocketClient> websocketClientMap;
+    ClientRegistry<WebsocketClient> websocketClientRegistry;
 
     @Autowired
     ContentTypeValidator contentTypeValidator;
@@ -98,10 +98,32 @@ class TestConsulNodeDiscovery {
     ConsulHosts consulHosts;
 
     @Autowired(required = false)
-    Map<String, SSEClient> sseClientMap;
+    ClientRegistry<SSEClient> sseClientRegistry;
 
     WireMockServer wireMockServer;
 
+    private static final String SERVICE_DUMMY_SCALED_RESPONSE = """
+            [
+              {
+                "ServiceID": "dev-1",
+                "ServiceName": "dummy",
+                "ServiceAddress": "localhost",
+                "ServiceMeta": {
+                   "group": "dev"
+                },
+                "ServicePort": 8081
+              },
+              {
+                "ServiceID": "dev-2",
+                "ServiceName": "dummy",
+                "ServiceAddress": "localhost",
+                "ServiceMeta": {
+                   "group": "dev"
+                },
+                "ServicePort": 8082
+              }
+            ]""";
+
     @Test
     void testGetAllServices() throws Exception {
         WireMockRule wireMockServer = new WireMockRule(wireMockConfig().dynamicPort());
@@ -117,7 +139,7 @@ class TestConsulNodeDiscovery {
 
 
 
-        ConsulNodeDiscovery consulNodeDiscovery = new ConsulNodeDiscovery(camelContext, serviceUtils, routeUtils, metricsProcessor, serviceCache, websocketClientMap, sseClientMap, contentTypeValidator, null, null);
+        ConsulNodeDiscovery consulNodeDiscovery = new ConsulNodeDiscovery(camelContext, serviceUtils, routeUtils, metricsProcessor, serviceCache, websocketClientRegistry, sseClientRegistry, contentTypeValidator, null, null);
         consulNodeDiscovery.setOpaService(opaService);
         consulNodeDiscovery.setHttpUtils(httpUtils);
         consulNodeDiscovery.setConsulHosts(consulHosts);
@@ -131,4 +153,59 @@ class TestConsulNodeDiscovery {
 
         wireMockServer.stop();
     }
+
+    @Test
+    void testBlockingQueriesOnlyFetchTheServicesThatChanged() {
+        WireMockServer consulServer = new WireMockServer(wireMockConfig().dynamicPort());
+        consulServer.start();
+        try {
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/services")).willReturn(aResponse().withHeader("X-Consul-Index", "10").withBody(SERVICES_RESPONSE)));
+            //An instance registration moves the catalog index, the services stay the same
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/services?index=10&wait=1s")).willReturn(aResponse().withFixedDelay(1500).withHeader("X-Consul-Index", "11").withBody(SERVICES_RESPONSE)));
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/services?index=11&wait=1s")).willReturn(aResponse().withFixedDelay(5000).withHeader("X-Consul-Index", "11").withBody(SERVICES_RESPONSE)));
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/service/dummy")).willReturn(aResponse().withHeader("X-Consul-Index", "5").withBody(SERVICE_DUMMY_RESPONSE)));
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/service/dummy?index=5&wait=1s")).willReturn(aResponse().withHeader("X-Consul-Index", "6").withBody(SERVICE_DUMMY_SCALED_RESPONSE)));
+            //Consul went back in time, the service is read again from scratch
+            consulServer.stubFor(get(urlEqualTo("/v1/catalog/service/dummy?index=6&wait=1s")).willReturn(aResponse().withFixedDelay(3000).withHeader("X-Consul-Index", "3").withBody(SERVICE_DUMMY_SCALED_RESPONSE)));
+
+            ConsulNodeDiscovery consulNodeDiscovery = createBlockingConsulNodeDiscovery(consulServer.port());
+
+            //The first catalog read fetches every service
+            consulNodeDiscovery.processInfo();
+            Assertions.assertEquals(1, serviceCache.peek("dummy:dev").getMappingList().size());
+
+            //The watch of the service returns before the catalog
+            consulNodeDiscovery.processInfo();
+            Assertions.assertEquals(2, serviceCache.peek("dummy:dev").getMappingList().size());
+
+            //The catalog index moved without new services, nothing is fetched
+            consulNodeDiscovery.processInfo();
+            consulServer.verify(1, getRequestedFor(urlEqualTo("/v1/catalog/service/dummy")));
+
+            //The service index went backwards, so the next read does not block
+            consulNodeDiscovery.processInfo();
+            consulNodeDiscovery.processInfo();
+            consulServer.verify(1, getRequestedFor(urlEqualTo("/v1/catalog/service/dummy?index=6&wait=1s")));
+            consulServer.verify(2, getRequestedFor(urlEqualTo("/v1/catalog/service/dummy")));
+            Assertions.assertEquals(1, serviceCache.peek("dummy:dev").getMappingList().size());
+        } finally {
+            consulServer.stop();
+        }
+    }
+
+    private ConsulNodeDiscovery createBlockingConsulNodeDiscovery(int consulPort) {
+        ConsulHosts.HostConfig hostConfig = new ConsulHosts.HostConfig();
+        hostConfig.setEndpoint("http://localhost:" + consulPort);
+        ConsulHosts blockingConsulHosts = new ConsulHosts();
+        blockingConsulHosts.setHosts(List.of(hostConfig));
+
+        ConsulNodeDiscovery consulNodeDiscovery = new ConsulNodeDiscovery(camelContext, serviceUtils, routeUtils, metricsProcessor, serviceCache, websocketClientRegistry, sseClientRegistry, contentTypeValidator, null, null);
+        consulNodeDiscovery.setOpaService(opaService);
+        consulNodeDiscovery.setHttpUtils(httpUtils);
+        consulNodeDiscovery.setConsulHosts(blockingConsulHosts);
+        consulNodeDiscovery.setCapiContext("/capi/test");
+        consulNodeDiscovery.setCapiRunningMode("full");
+        consulNodeDiscovery.setBlockingQueries(true, 1);
+        return consulNodeDiscovery;
+    }
 }
\ No newline at end of file
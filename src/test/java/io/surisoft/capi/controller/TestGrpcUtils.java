@@ -0,0 +1,71 @@
+package io.surisoft.capi.controller;
+
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.schema.ServiceMeta;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.GrpcUtils;
+import io.undertow.Undertow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Optional;
+
+class TestGrpcUtils {
+
+    private final GrpcUtils grpcUtils = new GrpcUtils(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 1, 0);
+
+    @Test
+    void testGrpcService() {
+        Assertions.assertEquals("helloworld.Greeter", grpcUtils.getGrpcService("/helloworld.Greeter/SayHello"));
+        Assertions.assertEquals("Greeter", grpcUtils.getGrpcService("/Greeter/SayHello/extra"));
+        Assertions.assertNull(grpcUtils.getGrpcService("/helloworld.Greeter"));
+        Assertions.assertNull(grpcUtils.getGrpcService("helloworld.Greeter/SayHello"));
+        Assertions.assertNull(grpcUtils.getGrpcService("/"));
+        Assertions.assertNull(grpcUtils.getGrpcService(null));
+    }
+
+    @Test
+    void testGrpcServices() {
+        Assertions.assertEquals(List.of("helloworld.Greeter", "helloworld.Farewell"), grpcUtils.getGrpcServices(service(" helloworld.Greeter, ,helloworld.Farewell ")));
+        Assertions.assertTrue(grpcUtils.getGrpcServices(service(null)).isEmpty());
+        Assertions.assertNull(grpcUtils.createGrpcClient(service("")));
+    }
+
+    @Test
+    void testGrpcErrorIsTrailersOnly() throws Exception {
+        Undertow undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(exchange -> grpcUtils.sendGrpcError(exchange, Constants.GRPC_STATUS_UNAVAILABLE, "No backend available"))
+                .build();
+        undertow.start();
+        try {
+            HttpClient httpClient = HttpClient.newHttpClient();
+            int port = ((InetSocketAddress) undertow.getListenerInfo().get(0).getAddress()).getPort();
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/helloworld.Greeter/SayHello")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            Assertions.assertEquals(200, response.statusCode());
+            Assertions.assertEquals(Constants.GRPC_CONTENT_TYPE, response.headers().firstValue("Content-Type").orElse(null));
+            Assertions.assertEquals("14", response.headers().firstValue(Constants.GRPC_STATUS_HEADER).orElse(null));
+            Assertions.assertEquals("No backend available", response.headers().firstValue(Constants.GRPC_MESSAGE_HEADER).orElse(null));
+            Assertions.assertTrue(response.body().isEmpty());
+        } finally {
+            undertow.stop();
+        }
+    }
+
+    private Service service(String grpcServices) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setGrpcServices(grpcServices);
+        Service service = new Service();
+        service.setId("greeter:dev");
+        service.setServiceMeta(serviceMeta);
+        return service;
+    }
+}
@@ -1,13 +1,27 @@
 package io.surisoft.capi.controller;
 
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.surisoft.capi.cache.CacheConfiguration;
+import io.surisoft.capi.utils.Constants;
 import io.surisoft.capi.utils.HttpUtils;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.cache2k.Cache;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 class TestHttpUtils {
@@ -53,4 +67,71 @@ class TestHttpUtils {
         endpoint = httpUtils.setHttpConnectTimeout(endpoint, 100);
         Assertions.assertEquals(endpoint, expected);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCachedTokenSkipsVerification() throws Exception {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = jwtProcessor(new Date(System.currentTimeMillis() + 60000));
+        Cache<String, JWTClaimsSet> verifiedTokenCache = verifiedTokenCache();
+        try {
+            HttpUtils cachingHttpUtils = new HttpUtils("", Optional.of(List.of(jwtProcessor)), Optional.of(verifiedTokenCache));
+            JWTClaimsSet jwtClaimsSet = cachingHttpUtils.authorizeRequest("token");
+
+            Assertions.assertSame(jwtClaimsSet, cachingHttpUtils.authorizeRequest("token"));
+            Assertions.assertSame(jwtClaimsSet, cachingHttpUtils.getVerifiedClaims(new DefaultExchange(new DefaultCamelContext()), "token"));
+            Mockito.verify(jwtProcessor, Mockito.times(1)).process("token", null);
+        } finally {
+            verifiedTokenCache.close();
+        }
+    }
+
+    @Test
+    void testCachedTokenExpiresWithTheToken() throws Exception {
+        //The cache keeps entries for a minute, the token expires well before
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = jwtProcessor(new Date(System.currentTimeMillis() + 300));
+        Cache<String, JWTClaimsSet> verifiedTokenCache = verifiedTokenCache();
+        try {
+            HttpUtils cachingHttpUtils = new HttpUtils("", Optional.of(List.of(jwtProcessor)), Optional.of(verifiedTokenCache));
+            cachingHttpUtils.authorizeRequest("token");
+            Assertions.assertEquals(1, verifiedTokenCache.asMap().size());
+
+            Thread.sleep(600);
+
+            Assertions.assertNull(cachingHttpUtils.getVerifiedClaims(new DefaultExchange(new DefaultCamelContext()), "token"));
+            cachingHttpUtils.authorizeRequest("token");
+            Mockito.verify(jwtProcessor, Mockito.times(2)).process("token", null);
+        } finally {
+            verifiedTokenCache.close();
+        }
+    }
+
+    @Test
+    void testClaimsAreReusedWithinAnExchange() throws Exception {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = jwtProcessor(new Date(System.currentTimeMillis() + 60000));
+        //Without a cache only the exchange can spare the second verification
+        HttpUtils exchangeHttpUtils = new HttpUtils("", Optional.of(List.of(jwtProcessor)), Optional.empty());
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+
+        JWTClaimsSet jwtClaimsSet = exchangeHttpUtils.authorizeRequest(exchange, "token");
+
+        Assertions.assertEquals("token", exchange.getProperty(Constants.CAPI_ACCESS_TOKEN, String.class));
+        Assertions.assertSame(jwtClaimsSet, exchangeHttpUtils.getVerifiedClaims(exchange, "token"));
+        Assertions.assertSame(jwtClaimsSet, exchangeHttpUtils.authorizeRequest(exchange, "token"));
+        Assertions.assertNull(exchangeHttpUtils.getVerifiedClaims(exchange, "another-token"));
+        Assertions.assertNull(exchangeHttpUtils.getVerifiedClaims(new DefaultExchange(new DefaultCamelContext()), "token"));
+        Mockito.verify(jwtProcessor, Mockito.times(1)).process("token", null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DefaultJWTProcessor<SecurityContext> jwtProcessor(Date expirationTime) throws Exception {
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = Mockito.mock(DefaultJWTProcessor.class);
+        Mockito.when(jwtProcessor.process("token", null)).thenReturn(new JWTClaimsSet.Builder()
+                .subject("capi")
+                .expirationTime(expirationTime)
+                .build());
+        return jwtProcessor;
+    }
+
+    private Cache<String, JWTClaimsSet> verifiedTokenCache() {
+        return new CacheConfiguration(List.of(), "http://localhost:8500").verifiedTokenCache(100, 60000);
+    }
+}
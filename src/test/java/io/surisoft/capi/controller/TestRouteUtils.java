@@ -1,8 +1,15 @@
 package io.surisoft.capi.controller;
 
+import com.github.tomakehurst.wiremock.WireMockServer;
 import io.surisoft.capi.schema.*;
+import io.surisoft.capi.utils.Constants;
 import io.surisoft.capi.utils.RouteUtils;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Channel;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.processor.loadbalancer.LoadBalancer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,6 +23,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
 @TestPropertySource(
@@ -26,6 +36,9 @@ class TestRouteUtils {
     @Autowired
     RouteUtils routeUtils;
 
+    @Autowired
+    CamelContext camelContext;
+
     @Test
     void testBuildEndpoints() {
 
@@ -74,4 +87,67 @@ class TestRouteUtils {
         String routeId = "unit-test:test:get";
         Assertions.assertEquals("get", routeUtils.getMethodFromRouteId(routeId));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUpdateRouteTargetsOfALiveRoute() throws Exception {
+        WireMockServer oldNode = new WireMockServer(wireMockConfig().dynamicPort());
+        WireMockServer newNode = new WireMockServer(wireMockConfig().dynamicPort());
+        oldNode.start();
+        newNode.start();
+        try {
+            oldNode.stubFor(any(urlPathEqualTo("/")).willReturn(aResponse().withBody("old")));
+            newNode.stubFor(any(urlPathEqualTo("/")).willReturn(aResponse().withBody("new")));
+            Service oldService = createService(oldNode.port());
+            String[] oldEndpoints = routeUtils.buildEndpoints(oldService);
+            camelContext.addRoutes(new RouteBuilder() {
+                @Override
+                public void configure() {
+                    for(String routeId : routeUtils.getAllRouteIdForAGivenService(oldService)) {
+                        from("direct:" + routeId)
+                                .routeId(routeId)
+                                .loadBalance()
+                                .id(routeId + Constants.LOAD_BALANCER_ID_SUFFIX)
+                                .failover(1, false, true, false)
+                                .to(oldEndpoints)
+                                .end();
+                    }
+                }
+            });
+            String getRouteId = oldService.getId() + ":" + HttpMethod.GET.getMethod();
+            ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+            Assertions.assertEquals("old", producerTemplate.requestBody("direct:" + getRouteId, null, String.class));
+
+            Assertions.assertTrue(routeUtils.updateRouteTargets(createService(newNode.port())));
+
+            Assertions.assertEquals("new", producerTemplate.requestBody("direct:" + getRouteId, null, String.class));
+            LoadBalancer loadBalancer = (LoadBalancer) camelContext.getProcessor(getRouteId + Constants.LOAD_BALANCER_ID_SUFFIX);
+            Assertions.assertEquals(1, loadBalancer.getProcessors().size());
+            Assertions.assertInstanceOf(Channel.class, loadBalancer.getProcessors().get(0));
+            oldNode.verify(1, anyRequestedFor(anyUrl()));
+            //The endpoint of the replaced backend is gone from the context
+            Assertions.assertNull(camelContext.hasEndpoint(oldEndpoints[0]));
+        } finally {
+            for(String routeId : routeUtils.getAllRouteIdForAGivenService(createService(0))) {
+                camelContext.getRouteController().stopRoute(routeId);
+                camelContext.removeRoute(routeId);
+            }
+            oldNode.stop();
+            newNode.stop();
+        }
+    }
+
+    private Service createService(int port) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setSchema("http");
+        Mapping mapping = new Mapping();
+        mapping.setHostname("localhost");
+        mapping.setPort(port);
+        mapping.setRootContext("/");
+        Service service = new Service();
+        service.setId("update-targets:dev");
+        service.setName("update-targets");
+        service.setServiceMeta(serviceMeta);
+        service.setMappingList(Set.of(mapping));
+        return service;
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import java.net.http.HttpClient;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
@@ -114,6 +115,43 @@ class TestServiceUtils {
         assertThat(serviceUtils.isMappingChanged(list1, list2)).isTrue();
     }
 
+    @Test
+    void testCanUpdateInPlaceOnlyWhenTheMappingsChanged() {
+        Service existingService = createFailOverService(8080);
+        Service incomingService = createFailOverService(8081);
+        assertThat(serviceUtils.canUpdateInPlace(existingService, incomingService)).isTrue();
+
+        //Same backends, nothing to swap
+        assertThat(serviceUtils.canUpdateInPlace(existingService, createFailOverService(8080))).isFalse();
+
+        //The live routes keep the old meta, so a throttle flag changing with the backends needs a redeploy
+        incomingService.getServiceMeta().setThrottle(true);
+        assertThat(serviceUtils.canUpdateInPlace(existingService, incomingService)).isFalse();
+
+        incomingService = createFailOverService(8081);
+        incomingService.getServiceMeta().setOpaRego("rego");
+        assertThat(serviceUtils.canUpdateInPlace(existingService, incomingService)).isFalse();
+
+        incomingService = createFailOverService(8081);
+        incomingService.setRoundRobinEnabled(true);
+        assertThat(serviceUtils.canUpdateInPlace(existingService, incomingService)).isFalse();
+    }
+
+    private Service createFailOverService(int port) {
+        Mapping mapping = new Mapping();
+        mapping.setHostname("localhost");
+        mapping.setPort(port);
+        mapping.setRootContext("/");
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setType("rest");
+        Service service = new Service();
+        service.setId("in-place:dev");
+        service.setFailOverEnabled(true);
+        service.setServiceMeta(serviceMeta);
+        service.setMappingList(Set.of(mapping));
+        return service;
+    }
+
     @Test
     void testIfValidOpenApiIsEnabled() {
         WireMockRule wireMockServer = new WireMockRule(wireMockConfig().dynamicPort());
@@ -0,0 +1,157 @@
+package io.surisoft.capi.controller;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.surisoft.capi.builder.DirectRouteProcessor;
+import io.surisoft.capi.oidc.Oauth2Constants;
+import io.surisoft.capi.processor.ContentTypeValidator;
+import io.surisoft.capi.processor.MetricsProcessor;
+import io.surisoft.capi.schema.*;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.HttpUtils;
+import io.surisoft.capi.utils.RouteUtils;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.StreamCache;
+import org.cache2k.Cache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class TestStreamingRoute {
+
+    private static final int PAYLOAD_SIZE = 1024 * 1024;
+
+    @Autowired
+    CamelContext camelContext;
+
+    @Autowired
+    RouteUtils routeUtils;
+
+    @Autowired
+    MetricsProcessor metricsProcessor;
+
+    @Autowired
+    ContentTypeValidator contentTypeValidator;
+
+    @Autowired
+    HttpUtils httpUtils;
+
+    @Autowired
+    Cache<String, Service> serviceCache;
+
+    @Test
+    void testStreamingBodiesAreNeverBuffered() throws Exception {
+        WireMockServer backend = new WireMockServer(wireMockConfig().dynamicPort());
+        backend.start();
+        Service service = createStreamingService("streamed", backend.port());
+        String routeId = service.getId() + ":" + HttpMethod.POST.getMethod();
+        try {
+            backend.stubFor(post(urlPathEqualTo("/")).willReturn(aResponse().withBody(new byte[PAYLOAD_SIZE])));
+            deploy(service, routeId);
+
+            Exchange exchange = call(routeId, "/streamed/dev");
+
+            //The backend stream is handed over as is, the caller reads it
+            Object body = exchange.getMessage().getBody();
+            Assertions.assertInstanceOf(InputStream.class, body);
+            Assertions.assertFalse(body instanceof StreamCache);
+            try(InputStream inputStream = (InputStream) body) {
+                Assertions.assertEquals(PAYLOAD_SIZE, inputStream.readAllBytes().length);
+            }
+            //The request stream has no known length, so it is sent chunked instead of being read first
+            backend.verify(1, postRequestedFor(urlPathEqualTo("/")).withHeader("Transfer-Encoding", containing("chunked")));
+            Assertions.assertEquals(PAYLOAD_SIZE, backend.getAllServeEvents().get(0).getRequest().getBody().length);
+        } finally {
+            undeploy(service, routeId);
+            backend.stop();
+        }
+    }
+
+    @Test
+    void testStreamingCallsAreNeverRetried() throws Exception {
+        WireMockServer firstBackend = new WireMockServer(wireMockConfig().dynamicPort());
+        WireMockServer secondBackend = new WireMockServer(wireMockConfig().dynamicPort());
+        firstBackend.start();
+        secondBackend.start();
+        Service service = createStreamingService("unreliable", firstBackend.port(), secondBackend.port());
+        String routeId = service.getId() + ":" + HttpMethod.POST.getMethod();
+        try {
+            for(WireMockServer backend : new WireMockServer[]{firstBackend, secondBackend}) {
+                backend.stubFor(post(urlPathEqualTo("/")).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+            }
+            deploy(service, routeId);
+
+            call(routeId, "/unreliable/dev");
+
+            //A consumed request stream cannot be replayed, the failed call does not go to the other backend
+            Assertions.assertEquals(1, firstBackend.getAllServeEvents().size() + secondBackend.getAllServeEvents().size());
+        } finally {
+            undeploy(service, routeId);
+            firstBackend.stop();
+            secondBackend.stop();
+        }
+    }
+
+    private void deploy(Service service, String routeId) throws Exception {
+        serviceCache.put(service.getId(), service);
+        DirectRouteProcessor directRouteProcessor = new DirectRouteProcessor(camelContext, service, routeUtils, metricsProcessor, routeId, "/capi", null, contentTypeValidator, null);
+        directRouteProcessor.setHttpUtils(httpUtils);
+        directRouteProcessor.setServiceCache(serviceCache);
+        camelContext.addRoutes(directRouteProcessor);
+    }
+
+    private void undeploy(Service service, String routeId) throws Exception {
+        for(String id : new String[]{Constants.CAMEL_REST_PREFIX + routeId, routeId}) {
+            camelContext.getRouteController().stopRoute(id);
+            camelContext.removeRoute(id);
+        }
+        serviceCache.remove(service.getId());
+    }
+
+    private Exchange call(String routeId, String context) {
+        ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+        return producerTemplate.request(Constants.CAMEL_DIRECT + routeId, exchange -> {
+            exchange.getIn().setHeader(Exchange.HTTP_METHOD, HttpMethod.POST.getMethod().toUpperCase());
+            exchange.getIn().setHeader(Oauth2Constants.CAMEL_SERVLET_CONTEXT_PATH, context);
+            exchange.getIn().setBody(new ByteArrayInputStream(new byte[PAYLOAD_SIZE]));
+        });
+    }
+
+    private Service createStreamingService(String name, int... ports) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setSchema("http");
+        serviceMeta.setGroup("dev");
+        serviceMeta.setStreaming(true);
+        Set<Mapping> mappingList = new HashSet<>();
+        for(int port : ports) {
+            Mapping mapping = new Mapping();
+            mapping.setHostname("localhost");
+            mapping.setPort(port);
+            mapping.setRootContext("/");
+            mappingList.add(mapping);
+        }
+        Service service = new Service();
+        service.setId(name + ":dev");
+        service.setName(name);
+        service.setContext("/" + name + "/dev");
+        service.setFailOverEnabled(true);
+        service.setServiceMeta(serviceMeta);
+        service.setMappingList(mappingList);
+        return service;
+    }
+}
@@ -0,0 +1,133 @@
+package io.surisoft.capi.controller;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.surisoft.capi.builder.DirectRouteProcessor;
+import io.surisoft.capi.kafka.ThrottleReplicator;
+import io.surisoft.capi.oidc.Oauth2Constants;
+import io.surisoft.capi.processor.ContentTypeValidator;
+import io.surisoft.capi.processor.MetricsProcessor;
+import io.surisoft.capi.processor.ThrottleProcessor;
+import io.surisoft.capi.schema.*;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.HttpUtils;
+import io.surisoft.capi.utils.RouteUtils;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Set;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class TestThrottleRoute {
+
+    @Autowired
+    CamelContext camelContext;
+
+    @Autowired
+    RouteUtils routeUtils;
+
+    @Autowired
+    MetricsProcessor metricsProcessor;
+
+    @Autowired
+    ContentTypeValidator contentTypeValidator;
+
+    @Autowired
+    HttpUtils httpUtils;
+
+    @Autowired
+    Cache<String, Service> serviceCache;
+
+    @Test
+    void testThrottledCallsAreAnsweredWithoutTheBackend() throws Exception {
+        WireMockServer backend = new WireMockServer(wireMockConfig().dynamicPort());
+        backend.start();
+        Service service = createThrottledService(backend.port());
+        String routeId = service.getId() + ":" + HttpMethod.GET.getMethod();
+        Cache<String, SlidingWindowCounter> throttleCounterCache = new Cache2kBuilder<String, SlidingWindowCounter>(){}
+                .name("throttleRouteCounter-" + hashCode())
+                .eternal(true)
+                .build();
+        try {
+            backend.stubFor(get(urlPathEqualTo("/")).willReturn(aResponse().withBody("backend")));
+            ThrottleProcessor throttleProcessor = new ThrottleProcessor(serviceCache, httpUtils, throttleCounterCache, Mockito.mock(ThrottleReplicator.class), false, new SimpleMeterRegistry());
+            serviceCache.put(service.getId(), service);
+            DirectRouteProcessor directRouteProcessor = new DirectRouteProcessor(camelContext, service, routeUtils, metricsProcessor, routeId, "/capi", null, contentTypeValidator, throttleProcessor);
+            directRouteProcessor.setHttpUtils(httpUtils);
+            directRouteProcessor.setServiceCache(serviceCache);
+            camelContext.addRoutes(directRouteProcessor);
+
+            for(int remaining = 1; remaining >= 0; remaining--) {
+                Exchange allowed = call(routeId);
+                Assertions.assertEquals("backend", allowed.getMessage().getBody(String.class));
+                Assertions.assertEquals(2L, allowed.getMessage().getHeader(Constants.RATE_LIMIT_LIMIT_HEADER));
+                Assertions.assertEquals((long) remaining, allowed.getMessage().getHeader(Constants.RATE_LIMIT_REMAINING_HEADER));
+                Assertions.assertNotNull(allowed.getMessage().getHeader(Constants.RATE_LIMIT_RESET_HEADER));
+            }
+
+            Exchange rejected = call(routeId);
+            Assertions.assertEquals(429, rejected.getMessage().getHeader(Exchange.HTTP_RESPONSE_CODE));
+            Assertions.assertNotNull(rejected.getMessage().getHeader(Constants.RETRY_AFTER_HEADER));
+            Assertions.assertEquals(2L, rejected.getMessage().getHeader(Constants.RATE_LIMIT_LIMIT_HEADER));
+            Assertions.assertEquals(0L, rejected.getMessage().getHeader(Constants.RATE_LIMIT_REMAINING_HEADER));
+            Assertions.assertNotNull(rejected.getMessage().getHeader(Constants.RATE_LIMIT_RESET_HEADER));
+            //The error body of the service is built once and reused by every rejection
+            Assertions.assertSame(throttleProcessor.rejectionBody(service), rejected.getMessage().getBody());
+            Assertions.assertSame(rejected.getMessage().getBody(), call(routeId).getMessage().getBody());
+
+            backend.verify(2, getRequestedFor(urlPathEqualTo("/")));
+        } finally {
+            for(String id : new String[]{Constants.CAMEL_REST_PREFIX + routeId, routeId}) {
+                camelContext.getRouteController().stopRoute(id);
+                camelContext.removeRoute(id);
+            }
+            serviceCache.remove(service.getId());
+            throttleCounterCache.close();
+            backend.stop();
+        }
+    }
+
+    private Exchange call(String routeId) {
+        ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+        return producerTemplate.request(Constants.CAMEL_DIRECT + routeId, exchange -> {
+            exchange.getIn().setHeader(Exchange.HTTP_METHOD, HttpMethod.GET.getMethod().toUpperCase());
+            exchange.getIn().setHeader(Oauth2Constants.CAMEL_SERVLET_CONTEXT_PATH, "/throttled/dev");
+        });
+    }
+
+    private Service createThrottledService(int port) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setSchema("http");
+        serviceMeta.setGroup("dev");
+        serviceMeta.setThrottle(true);
+        serviceMeta.setThrottleGlobal(true);
+        serviceMeta.setThrottleTotalCalls(2);
+        serviceMeta.setThrottleDuration(60000);
+        Mapping mapping = new Mapping();
+        mapping.setHostname("localhost");
+        mapping.setPort(port);
+        mapping.setRootContext("/");
+        Service service = new Service();
+        service.setId("throttled:dev");
+        service.setName("throttled");
+        service.setContext("/throttled/dev");
+        service.setFailOverEnabled(true);
+        service.setServiceMeta(serviceMeta);
+        service.setMappingList(Set.of(mapping));
+        return service;
+    }
+}
@@ -0,0 +1,62 @@
+package io.surisoft.capi.kafka;
+
+import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.ThrottleServiceObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapiEventCodecTest {
+
+    @Test
+    void testThrottlingBatchRoundTrip() {
+        CapiEvent capiEvent = new CapiEvent();
+        capiEvent.setId("7b0f4a56-event");
+        capiEvent.setType(CapiKafkaEvent.THROTTLING_BATCH_EVENT_TYPE);
+        capiEvent.setInstanceId("c2a1-instance");
+        capiEvent.setNodeIndex(-3);
+        capiEvent.setThrottleServiceObjects(List.of(
+                new ThrottleServiceObject("service:consumer", "consumer", 100, 42, 1_700_000_060_000L),
+                new ThrottleServiceObject("service", null, -1, 0, 1_700_000_060_000L)));
+
+        byte[] data = CapiEventCodec.encode(capiEvent);
+        assertTrue(CapiEventCodec.isBinary(data));
+
+        CapiEvent decodedEvent = CapiEventCodec.decode(data);
+        assertEquals("7b0f4a56-event", decodedEvent.getId());
+        assertEquals(CapiKafkaEvent.THROTTLING_BATCH_EVENT_TYPE, decodedEvent.getType());
+        assertEquals("c2a1-instance", decodedEvent.getInstanceId());
+        assertEquals(-3, decodedEvent.getNodeIndex());
+        assertNull(decodedEvent.getKey());
+        assertNull(decodedEvent.getThrottleServiceObject());
+        assertEquals(2, decodedEvent.getThrottleServiceObjects().size());
+
+        ThrottleServiceObject consumerObject = decodedEvent.getThrottleServiceObjects().get(0);
+        assertEquals("service:consumer", consumerObject.getServiceId());
+        assertEquals("consumer", consumerObject.getConsumerKey());
+        assertEquals(100, consumerObject.getTotalCallsAllowed());
+        assertEquals(42, consumerObject.getCurrentCalls());
+        assertEquals(1_700_000_060_000L, consumerObject.getExpirationTime());
+
+        ThrottleServiceObject globalObject = decodedEvent.getThrottleServiceObjects().get(1);
+        assertNull(globalObject.getConsumerKey());
+        assertEquals(-1, globalObject.getTotalCallsAllowed());
+    }
+
+    @Test
+    void testJsonIsNotBinary() {
+        assertFalse(CapiEventCodec.isBinary("{\"id\":\"1\"}".getBytes()));
+        assertThrows(IllegalArgumentException.class, () -> CapiEventCodec.decode("{}".getBytes()));
+    }
+
+    @Test
+    void testTruncatedEvent() {
+        CapiEvent capiEvent = new CapiEvent();
+        capiEvent.setId("7b0f4a56-event");
+        byte[] data = CapiEventCodec.encode(capiEvent);
+        byte[] truncated = java.util.Arrays.copyOf(data, data.length - 2);
+        assertThrows(IllegalArgumentException.class, () -> CapiEventCodec.decode(truncated));
+    }
+}
@@ -0,0 +1,126 @@
+package io.surisoft.capi.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.surisoft.capi.schema.CapiEvent;
+import io.surisoft.capi.schema.SlidingWindowCounter;
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+class ThrottleReplicatorTest {
+
+    private Cache<String, SlidingWindowCounter> throttleCounterCache;
+    private KafkaTemplate<String, CapiEvent> kafkaTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        throttleCounterCache = new Cache2kBuilder<String, SlidingWindowCounter>(){}
+                .name("throttleCounterCache-" + hashCode())
+                .eternal(true)
+                .build();
+        kafkaTemplate = Mockito.mock(KafkaTemplate.class);
+        long now = System.currentTimeMillis();
+        for(String cacheKey : List.of("orders:consumer", "payments:consumer")) {
+            SlidingWindowCounter slidingWindowCounter = new SlidingWindowCounter(cacheKey, "consumer", 60000);
+            slidingWindowCounter.tryAcquire(100, now);
+            slidingWindowCounter.tryAcquire(100, now);
+            throttleCounterCache.put(cacheKey, slidingWindowCounter);
+        }
+    }
+
+    @Test
+    void testChangedKeysAreSentAsOneBatch() {
+        ThrottleReplicator throttleReplicator = new ThrottleReplicator(throttleCounterCache, kafkaTemplate, "capi", new CapiInstance("instance"), 500, false);
+        throttleReplicator.markChanged("orders:consumer");
+        throttleReplicator.markChanged("payments:consumer");
+        throttleReplicator.flush();
+
+        List<CapiEvent> capiEvents = sentEvents(1);
+        assertEquals(CapiKafkaEvent.THROTTLING_BATCH_EVENT_TYPE, capiEvents.get(0).getType());
+        assertEquals(2, capiEvents.get(0).getThrottleServiceObjects().size());
+    }
+
+    @Test
+    void testFullBatchIsSentOffTheRequestThread() throws Exception {
+        ThrottleReplicator throttleReplicator = new ThrottleReplicator(throttleCounterCache, kafkaTemplate, "capi", new CapiInstance("instance"), 1, false);
+        AtomicReference<String> sendingThread = new AtomicReference<>();
+        CountDownLatch sent = new CountDownLatch(2);
+        Mockito.when(kafkaTemplate.send(eq("capi"), (Integer) isNull(), (String) isNull(), any(CapiEvent.class))).thenAnswer(invocation -> {
+            sendingThread.set(Thread.currentThread().getName());
+            sent.countDown();
+            return null;
+        });
+        try {
+            throttleReplicator.markChanged("orders:consumer");
+            throttleReplicator.markChanged("payments:consumer");
+            assertTrue(sent.await(5, TimeUnit.SECONDS));
+            assertEquals("capi-throttle-replication", sendingThread.get());
+            //The partitions are looked up once for both flushes
+            Mockito.verify(kafkaTemplate, Mockito.times(1)).partitionsFor("capi");
+        } finally {
+            throttleReplicator.shutdown();
+        }
+    }
+
+    @Test
+    void testLegacyEventsAreReadableByOlderInstances() throws Exception {
+        ThrottleReplicator throttleReplicator = new ThrottleReplicator(throttleCounterCache, kafkaTemplate, "capi", new CapiInstance("instance"), 500, true);
+        throttleReplicator.markChanged("orders:consumer");
+        throttleReplicator.markChanged("payments:consumer");
+        throttleReplicator.flush();
+
+        CapiEventSerializer capiEventSerializer = new CapiEventSerializer();
+        capiEventSerializer.configure(Map.of(), false);
+        //Older instances read the events with a default ObjectMapper, failing on unknown properties
+        ObjectMapper objectMapper = new ObjectMapper();
+        for(CapiEvent capiEvent : sentEvents(2)) {
+            assertEquals(CapiKafkaEvent.THROTTLING_EVENT_TYPE, capiEvent.getType());
+            LegacyCapiEvent legacyCapiEvent = objectMapper.readValue(capiEventSerializer.serialize("capi", capiEvent), LegacyCapiEvent.class);
+            assertEquals(capiEvent.getKey(), legacyCapiEvent.throttleServiceObject.serviceId);
+            assertEquals(2, legacyCapiEvent.throttleServiceObject.currentCalls);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<CapiEvent> sentEvents(int count) {
+        ArgumentCaptor<CapiEvent> capiEventCaptor = ArgumentCaptor.forClass(CapiEvent.class);
+        Mockito.verify(kafkaTemplate, Mockito.times(count)).send(eq("capi"), (Integer) isNull(), (String) isNull(), capiEventCaptor.capture());
+        Mockito.verify(kafkaTemplate, Mockito.never()).send(any(String.class), any(CapiEvent.class));
+        return capiEventCaptor.getAllValues();
+    }
+
+    //The event and counter as known by the instances before the batches
+    static class LegacyCapiEvent {
+        public String id;
+        public String type;
+        public String key;
+        public String value;
+        public int nodeIndex;
+        public String instanceId;
+        public LegacyThrottleServiceObject throttleServiceObject;
+    }
+
+    static class LegacyThrottleServiceObject {
+        public String serviceId;
+        public String consumerKey;
+        public long totalCallsAllowed;
+        public long currentCalls;
+        public long expirationTime;
+    }
+}
@@ -0,0 +1,52 @@
+package io.surisoft.capi.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.surisoft.capi.schema.Mapping;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutePoolTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RoutePool routePool;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        routePool = new RoutePool(meterRegistry, new DefaultCamelContext());
+    }
+
+    @Test
+    void testGaugesFollowTheRoutedHosts() {
+        Mapping first = mapping("first.domain", 8080);
+        Mapping second = mapping("second.domain", 8080);
+
+        routePool.registerHosts("orders:dev", List.of(first, second));
+        assertEquals(6, meterRegistry.getMeters().size());
+
+        //second.domain left the service
+        routePool.registerHosts("orders:dev", List.of(first));
+        assertEquals(3, meterRegistry.getMeters().size());
+        assertNull(meterRegistry.find("capi_route_pool_leased").tag("host", "second.domain:8080").gauge());
+
+        //first.domain is kept while another service routes to it
+        routePool.registerHosts("payments:dev", List.of(first));
+        routePool.unregisterHosts("orders:dev");
+        assertEquals(0, meterRegistry.get("capi_route_pool_leased").tag("host", "first.domain:8080").gauge().value());
+
+        routePool.unregisterHosts("payments:dev");
+        assertTrue(meterRegistry.getMeters().isEmpty());
+    }
+
+    private Mapping mapping(String hostname, int port) {
+        Mapping mapping = new Mapping();
+        mapping.setHostname(hostname);
+        mapping.setPort(port);
+        return mapping;
+    }
+}
@@ -0,0 +1,115 @@
+package io.surisoft.capi.oidc;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapiJWKSourceTest {
+
+    private static final String JWKS_PATH = "/realms/capi/protocol/openid-connect/certs";
+
+    private WireMockServer wireMockServer;
+    private RSAKey firstKey;
+    private RSAKey secondKey;
+    private CapiJWKSource capiJWKSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+        firstKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        secondKey = new RSAKeyGenerator(2048).keyID("second").generate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if(capiJWKSource != null) {
+            capiJWKSource.close();
+        }
+        wireMockServer.stop();
+    }
+
+    @Test
+    void testKeyIdLookup() {
+        stubKeys(aResponse().withBody(keys(firstKey, secondKey)));
+        capiJWKSource = createSource(60000);
+
+        assertEquals(2, capiJWKSource.getKeyCount());
+        assertEquals(List.of(secondKey.toPublicJWK()), capiJWKSource.get(selector("second"), null));
+        assertEquals(List.of(firstKey.toPublicJWK()), capiJWKSource.get(selector("first"), null));
+    }
+
+    @Test
+    void testUnknownKeyIdIsRefreshedInTheBackground() throws Exception {
+        stubKeys(aResponse().withBody(keys(firstKey)));
+        capiJWKSource = createSource(60000);
+        stubKeys(aResponse().withBody(keys(firstKey, secondKey)));
+
+        //Not found right away, the rotated key shows up once the refetch is done
+        assertTrue(capiJWKSource.get(selector("second"), null).isEmpty());
+        List<JWK> jwkList = List.of();
+        for(int i = 0; i < 50 && jwkList.isEmpty(); i++) {
+            Thread.sleep(100);
+            jwkList = capiJWKSource.get(selector("second"), null);
+        }
+        assertEquals(List.of(secondKey.toPublicJWK()), jwkList);
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo(JWKS_PATH)));
+    }
+
+    @Test
+    void testUnknownKeyIdRefetchIsRateLimited() throws Exception {
+        stubKeys(aResponse().withBody(keys(firstKey)));
+        capiJWKSource = createSource(60000);
+
+        for(int i = 0; i < 20; i++) {
+            assertTrue(capiJWKSource.get(selector("random-" + i), null).isEmpty());
+        }
+        Thread.sleep(500);
+        //The initial load and a single forced refetch
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo(JWKS_PATH)));
+    }
+
+    @Test
+    void testETagAndCacheControl() throws Exception {
+        stubKeys(aResponse().withHeader("ETag", "\"v1\"").withHeader("Cache-Control", "max-age=1").withBody(keys(firstKey)));
+        capiJWKSource = createSource(200);
+        wireMockServer.stubFor(get(urlEqualTo(JWKS_PATH)).withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304).withHeader("Cache-Control", "max-age=1")));
+
+        //max-age=1 brings the refresh forward from the one hour interval
+        Thread.sleep(2500);
+        wireMockServer.verify(moreThanOrExactly(1), getRequestedFor(urlEqualTo(JWKS_PATH)).withHeader("If-None-Match", equalTo("\"v1\"")));
+        assertEquals(1, capiJWKSource.getKeyCount());
+        assertEquals(List.of(firstKey.toPublicJWK()), capiJWKSource.get(selector("first"), null));
+    }
+
+    private CapiJWKSource createSource(long minRefetchInterval) {
+        return new CapiJWKSource(List.of(wireMockServer.baseUrl() + JWKS_PATH), Optional.empty(), 3600000, minRefetchInterval);
+    }
+
+    private void stubKeys(com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder response) {
+        wireMockServer.stubFor(get(urlEqualTo(JWKS_PATH)).willReturn(response));
+    }
+
+    private String keys(JWK... jwks) {
+        return new JWKSet(List.of(jwks)).toPublicJWKSet().toString();
+    }
+
+    private JWKSelector selector(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+}
@@ -0,0 +1,123 @@
+package io.surisoft.capi.processor;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.AsyncProcessorConverterHelper;
+import org.apache.camel.support.DefaultExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyAwareLoadBalancerTest {
+
+    private CamelContext camelContext;
+    private ScheduledExecutorService hedgingExecutor;
+    private ExecutorService callExecutor;
+
+    @BeforeEach
+    void setUp() {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+        hedgingExecutor = Executors.newSingleThreadScheduledExecutor();
+        callExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        hedgingExecutor.shutdownNow();
+        callExecutor.shutdownNow();
+        camelContext.stop();
+    }
+
+    @Test
+    void testHedgedGetAnswersBeforeASlowPrimary() throws Exception {
+        AtomicBoolean slowCall = new AtomicBoolean();
+        Processor backend = exchange -> {
+            if(slowCall.compareAndSet(true, false)) {
+                Thread.sleep(5000);
+                exchange.getMessage().setBody("slow");
+            } else {
+                exchange.getMessage().setBody("fast");
+            }
+        };
+        LatencyAwareLoadBalancer loadBalancer = createLoadBalancer(hedgingExecutor, backend, backend);
+        //Enough answers to know the p95 of the route
+        for(int i = 0; i < 32; i++) {
+            call(loadBalancer, "GET");
+        }
+
+        slowCall.set(true);
+        long start = System.nanoTime();
+        Exchange exchange = call(loadBalancer, "GET");
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals("fast", exchange.getMessage().getBody());
+    }
+
+    @Test
+    void testFailoverToTheOtherBackend() throws Exception {
+        Processor failing = exchange -> {
+            throw new IOException("Connection refused");
+        };
+        Processor working = exchange -> exchange.getMessage().setBody("ok");
+        LatencyAwareLoadBalancer loadBalancer = createLoadBalancer(null, failing, working);
+
+        for(int i = 0; i < 10; i++) {
+            Exchange exchange = call(loadBalancer, "POST");
+            assertNull(exchange.getException());
+            assertEquals("ok", exchange.getMessage().getBody());
+        }
+    }
+
+    @Test
+    void testPowerOfTwoChoicesAvoidsTheSlowBackend() throws Exception {
+        AtomicInteger slowCalls = new AtomicInteger();
+        AtomicInteger fastCalls = new AtomicInteger();
+        Processor slow = exchange -> {
+            slowCalls.incrementAndGet();
+            Thread.sleep(50);
+        };
+        Processor fast = exchange -> fastCalls.incrementAndGet();
+        LatencyAwareLoadBalancer loadBalancer = createLoadBalancer(null, slow, fast);
+
+        for(int i = 0; i < 20; i++) {
+            call(loadBalancer, "POST");
+        }
+
+        //The slow backend is only picked until its latency is known
+        assertEquals(1, slowCalls.get());
+        assertEquals(19, fastCalls.get());
+    }
+
+    private LatencyAwareLoadBalancer createLoadBalancer(ScheduledExecutorService hedgingExecutor, Processor... processors) {
+        LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(1, hedgingExecutor, callExecutor, 10);
+        loadBalancer.setCamelContext(camelContext);
+        for(Processor processor : processors) {
+            loadBalancer.addProcessor(AsyncProcessorConverterHelper.convert(processor));
+        }
+        loadBalancer.start();
+        return loadBalancer;
+    }
+
+    private Exchange call(LatencyAwareLoadBalancer loadBalancer, String method) throws InterruptedException {
+        Exchange exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setHeader(Exchange.HTTP_METHOD, method);
+        CountDownLatch done = new CountDownLatch(1);
+        loadBalancer.process(exchange, doneSync -> done.countDown());
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return exchange;
+    }
+}
@@ -0,0 +1,63 @@
+package io.surisoft.capi.processor;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OpenApiPathMatcherTest {
+
+    private OpenApiPathMatcher openApiPathMatcherUnderTest;
+
+    private final String openApiDefinition = "openapi: \"3.0.0\"\n" +
+            "info:\n" +
+            "  version: 1.0.0\n" +
+            "  title: Matcher\n" +
+            "paths:\n" +
+            "  /:\n" +
+            "    get:\n" +
+            "      operationId: root\n" +
+            "  /pets:\n" +
+            "    get:\n" +
+            "      operationId: listPets\n" +
+            "  /pets/{petId}:\n" +
+            "    get:\n" +
+            "      operationId: showPetById\n" +
+            "  /pets/mine:\n" +
+            "    post:\n" +
+            "      operationId: createMine\n" +
+            "  /pets/{petId}/owners/{ownerId}:\n" +
+            "    delete:\n" +
+            "      operationId: deleteOwner\n";
+
+    @BeforeEach
+    void setUp() {
+        OpenAPI openAPI = new OpenAPIV3Parser().readContents(openApiDefinition).getOpenAPI();
+        openApiPathMatcherUnderTest = new OpenApiPathMatcher(openAPI);
+    }
+
+    @Test
+    void testLiteralPath() {
+        Assertions.assertEquals("listPets", openApiPathMatcherUnderTest.match("/pets/", "GET").getOperationId());
+        Assertions.assertEquals("root", openApiPathMatcherUnderTest.match("/", "get").getOperationId());
+    }
+
+    @Test
+    void testLiteralSegmentPreferredOverParameter() {
+        Assertions.assertEquals("createMine", openApiPathMatcherUnderTest.match("/pets/mine", "POST").getOperationId());
+    }
+
+    @Test
+    void testFallbackToParameterWhenLiteralHasNoOperation() {
+        Assertions.assertEquals("showPetById", openApiPathMatcherUnderTest.match("/pets/mine", "GET").getOperationId());
+        Assertions.assertEquals("deleteOwner", openApiPathMatcherUnderTest.match("pets/1/owners/2", "DELETE").getOperationId());
+    }
+
+    @Test
+    void testNoMatch() {
+        Assertions.assertNull(openApiPathMatcherUnderTest.match("/pets/1/owners", "DELETE"));
+        Assertions.assertNull(openApiPathMatcherUnderTest.match("/pets/1", "PUT"));
+        Assertions.assertNull(openApiPathMatcherUnderTest.match("/cats", "GET"));
+    }
+}
@@ -0,0 +1,75 @@
+package io.surisoft.capi.schema;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientRegistryTest {
+
+    @Test
+    void testBatchIsPublishedAsOneVersion() {
+        ClientRegistry<String> clientRegistry = new ClientRegistry<>();
+        List<Long> versions = new ArrayList<>();
+        clientRegistry.addListener(snapshot -> versions.add(snapshot.version()));
+
+        ClientRegistry.Batch<String> batch = clientRegistry.batch();
+        batch.put("/chat/dev", "chat").put("/events/dev", "events");
+        assertNull(clientRegistry.get("/chat/dev"));
+        assertTrue(batch.commit());
+
+        assertEquals(1, clientRegistry.getVersion());
+        assertEquals("chat", clientRegistry.get("/chat/dev"));
+        assertEquals("events", clientRegistry.get("/events/dev"));
+        assertEquals(List.of(0L, 1L), versions);
+    }
+
+    @Test
+    void testLastChangeWins() {
+        ClientRegistry<String> clientRegistry = new ClientRegistry<>();
+        clientRegistry.put("/chat/dev", "chat");
+        clientRegistry.batch().remove("/chat/dev").put("/chat/dev", "chat-v2").put("/events/dev", "events").remove("/events/dev").commit();
+
+        assertEquals(Map.of("/chat/dev", "chat-v2"), clientRegistry.getClients());
+        assertEquals(2, clientRegistry.getVersion());
+    }
+
+    @Test
+    void testNoChangeKeepsTheSnapshot() {
+        ClientRegistry<String> clientRegistry = new ClientRegistry<>();
+        String client = "chat";
+        clientRegistry.put("/chat/dev", client);
+        ClientRegistry.Snapshot<String> snapshot = clientRegistry.snapshot();
+
+        assertFalse(clientRegistry.batch().put("/chat/dev", client).remove("/events/dev").commit());
+        assertFalse(clientRegistry.batch().commit());
+        assertSame(snapshot, clientRegistry.snapshot());
+        assertNull(clientRegistry.get(null));
+    }
+
+    @Test
+    void testRemoveIfReplacesAllIdsOfAClient() {
+        ClientRegistry<String> clientRegistry = new ClientRegistry<>();
+        clientRegistry.batch().put("helloworld.Greeter", "greeter").put("helloworld.Farewell", "greeter").put("shop.Cart", "cart").commit();
+
+        clientRegistry.batch().removeIf("greeter"::equals).put("helloworld.Greeter", "greeter").commit();
+
+        assertEquals(Map.of("helloworld.Greeter", "greeter", "shop.Cart", "cart"), clientRegistry.getClients());
+        assertEquals(2, clientRegistry.getVersion());
+    }
+
+    @Test
+    void testSnapshotIsImmutable() {
+        ClientRegistry<String> clientRegistry = new ClientRegistry<>();
+        clientRegistry.put("/chat/dev", "chat");
+        Map<String, String> clients = clientRegistry.getClients();
+        clientRegistry.remove("/chat/dev");
+
+        assertEquals("chat", clients.get("/chat/dev"));
+        assertTrue(clientRegistry.getClients().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> clients.put("/events/dev", "events"));
+    }
+}
@@ -0,0 +1,59 @@
+package io.surisoft.capi.schema;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    private static final long LATENCY = 10_000_000;
+
+    @Test
+    void testCallsOverTheLimitAreShed() {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(2, 1, 10, 2.0);
+        assertTrue(concurrencyLimiter.tryAcquire());
+        assertTrue(concurrencyLimiter.tryAcquire());
+        assertFalse(concurrencyLimiter.tryAcquire());
+        concurrencyLimiter.release(LATENCY, false);
+        assertEquals(1, concurrencyLimiter.getInFlight());
+        assertTrue(concurrencyLimiter.tryAcquire());
+    }
+
+    @Test
+    void testLimitGrowsWhileUsedAndFast() {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(4, 1, 10, 2.0);
+        for(int i = 0; i < 100; i++) {
+            while(concurrencyLimiter.tryAcquire()) {
+                //Fill the limit
+            }
+            concurrencyLimiter.release(LATENCY, false);
+            while(concurrencyLimiter.getInFlight() > 0) {
+                concurrencyLimiter.release(LATENCY, false);
+            }
+        }
+        assertEquals(10, concurrencyLimiter.getLimit());
+    }
+
+    @Test
+    void testLimitBacksOffOnSlowAndFailedCalls() {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, 2, 10, 2.0);
+        assertTrue(concurrencyLimiter.tryAcquire());
+        concurrencyLimiter.release(LATENCY, false);
+        assertTrue(concurrencyLimiter.tryAcquire());
+        concurrencyLimiter.release(3 * LATENCY, false);
+        assertEquals(9, concurrencyLimiter.getLimit());
+        for(int i = 0; i < 50; i++) {
+            assertTrue(concurrencyLimiter.tryAcquire());
+            concurrencyLimiter.release(LATENCY, true);
+        }
+        assertEquals(2, concurrencyLimiter.getLimit());
+    }
+
+    @Test
+    void testMaxLimitFromServiceMeta() {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(20, 1, 200, 2.0);
+        concurrencyLimiter.setMaxLimit(5);
+        assertEquals(5, concurrencyLimiter.getLimit());
+        assertEquals(5, concurrencyLimiter.getMaxLimit());
+    }
+}
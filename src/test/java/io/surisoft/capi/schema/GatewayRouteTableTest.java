@@ -0,0 +1,56 @@
+package io.surisoft.capi.schema;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayRouteTableTest {
+
+    private GatewayRouteTable<String> createRouteTable() {
+        Map<String, String> clients = new LinkedHashMap<>();
+        clients.put("/chat/dev", "chat");
+        clients.put("/events/dev", "events");
+        Map<String, String> rootContexts = Map.of("chat", "/ws", "events", "");
+        return GatewayRouteTable.build("/capi", clients, rootContexts::get);
+    }
+
+    @Test
+    void testClientId() {
+        GatewayRouteTable<String> routeTable = createRouteTable();
+        assertEquals("/chat/dev", routeTable.clientId("/capi/chat/dev/room/1"));
+        assertEquals("/chat/dev", routeTable.clientId("/capi/chat/dev"));
+        assertNull(routeTable.clientId("/capi/chat"));
+        assertNull(routeTable.clientId("/capix/chat/dev"));
+        assertNull(routeTable.clientId("/other/chat/dev"));
+        assertNull(routeTable.clientId(null));
+    }
+
+    @Test
+    void testLookup() {
+        GatewayRouteTable<String> routeTable = createRouteTable();
+        assertEquals(2, routeTable.size());
+        assertEquals("chat", routeTable.lookup("/capi/chat/dev/room/1").client());
+        assertNull(routeTable.lookup("/capi/chat/prd/room/1"));
+        assertNull(routeTable.get(null));
+    }
+
+    @Test
+    void testForwardingPath() {
+        GatewayRouteTable<String> routeTable = createRouteTable();
+        assertEquals("/ws/room/1", routeTable.lookup("/capi/chat/dev/room/1").forwardingPath("/capi/chat/dev/room/1"));
+        assertEquals("/ws", routeTable.lookup("/capi/chat/dev").forwardingPath("/capi/chat/dev"));
+        //The service id further down the path is not touched
+        assertEquals("/stream/events/dev", routeTable.lookup("/capi/events/dev/stream/events/dev").forwardingPath("/capi/events/dev/stream/events/dev"));
+        assertEquals("/", routeTable.lookup("/capi/events/dev").forwardingPath("/capi/events/dev"));
+    }
+
+    @Test
+    void testEmpty() {
+        GatewayRouteTable<String> routeTable = GatewayRouteTable.empty("/capi");
+        assertEquals(0, routeTable.size());
+        assertNull(routeTable.lookup("/capi/chat/dev"));
+    }
+}
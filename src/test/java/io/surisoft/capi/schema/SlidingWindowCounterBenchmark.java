@@ -0,0 +1,50 @@
+package io.surisoft.capi.schema;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+//64 threads on a single hot key, run with the main method, surefire does not pick it up
+@State(Scope.Benchmark)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlidingWindowCounterBenchmark {
+
+    private SlidingWindowCounter allowedCounter;
+    private SlidingWindowCounter saturatedCounter;
+    private SlidingWindowCounter leasedCounter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        allowedCounter = new SlidingWindowCounter("orders:consumer", "consumer", 60000);
+        saturatedCounter = new SlidingWindowCounter("orders:consumer", "consumer", 60000);
+        leasedCounter = new SlidingWindowCounter("orders:consumer", "consumer", 60000);
+        saturatedCounter.tryAcquire(1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long tryAcquireAllowed() {
+        return allowedCounter.tryAcquire(Long.MAX_VALUE / 2, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long tryAcquireSaturated() {
+        return saturatedCounter.tryAcquire(1, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public long tryAcquireLeased() {
+        return leasedCounter.tryAcquireLeased(Long.MAX_VALUE / 2, System.currentTimeMillis());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SlidingWindowCounterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
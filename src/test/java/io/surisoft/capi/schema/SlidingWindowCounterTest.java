@@ -0,0 +1,132 @@
+package io.surisoft.capi.schema;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    private static final long WINDOW_DURATION = 1000;
+    private static final long WINDOW_START = 1_000_000;
+
+    SlidingWindowCounter slidingWindowCounter;
+
+    @BeforeEach
+    void setUp() {
+        slidingWindowCounter = new SlidingWindowCounter("service:consumer", "consumer", WINDOW_DURATION);
+    }
+
+    @Test
+    void testLimitWithinWindow() {
+        for(int i = 1; i <= 5; i++) {
+            assertEquals(i, slidingWindowCounter.tryAcquire(5, WINDOW_START + i));
+        }
+        assertEquals(-1, slidingWindowCounter.tryAcquire(5, WINDOW_START + 10));
+    }
+
+    @Test
+    void testPreviousWindowIsWeighted() {
+        for(int i = 0; i < 10; i++) {
+            assertTrue(slidingWindowCounter.tryAcquire(10, WINDOW_START + 900) > -1);
+        }
+        //A quarter into the next window, 75% of the previous calls still count
+        long quarterWindow = WINDOW_START + WINDOW_DURATION + 250;
+        for(int i = 0; i < 3; i++) {
+            assertTrue(slidingWindowCounter.tryAcquire(10, quarterWindow) > -1);
+        }
+        assertEquals(-1, slidingWindowCounter.tryAcquire(10, quarterWindow));
+    }
+
+    @Test
+    void testHotKeyUnderContention() throws InterruptedException {
+        int threads = 64;
+        long totalCallsAllowed = 1000;
+        AtomicLong allowedCalls = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for(int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for(int j = 0; j < 100; j++) {
+                        if(slidingWindowCounter.tryAcquire(totalCallsAllowed, WINDOW_START) > -1) {
+                            allowedCalls.incrementAndGet();
+                        }
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals(totalCallsAllowed, allowedCalls.get());
+    }
+
+    @Test
+    void testMergeIsPerInstanceAndIdempotent() {
+        assertEquals(1, slidingWindowCounter.tryAcquire(10, WINDOW_START));
+        long expirationTime = WINDOW_START + WINDOW_DURATION;
+        assertTrue(slidingWindowCounter.merge("instance-a", new ThrottleServiceObject("service:consumer", "consumer", 10, 4, expirationTime)));
+        assertFalse(slidingWindowCounter.merge("instance-a", new ThrottleServiceObject("service:consumer", "consumer", 10, 4, expirationTime)));
+        assertFalse(slidingWindowCounter.merge("instance-a", new ThrottleServiceObject("service:consumer", "consumer", 10, 2, expirationTime)));
+        assertTrue(slidingWindowCounter.merge("instance-b", new ThrottleServiceObject("service:consumer", "consumer", 10, 3, expirationTime)));
+
+        //1 local, 4 from instance-a and 3 from instance-b
+        assertEquals(9, slidingWindowCounter.tryAcquire(10, WINDOW_START));
+        assertEquals(10, slidingWindowCounter.tryAcquire(10, WINDOW_START));
+        assertEquals(-1, slidingWindowCounter.tryAcquire(10, WINDOW_START));
+
+        ThrottleServiceObject snapshot = slidingWindowCounter.snapshot(WINDOW_START);
+        assertEquals(3, snapshot.getCurrentCalls());
+        assertEquals(expirationTime, snapshot.getExpirationTime());
+    }
+
+    @Test
+    void testLeaseLeavesRoomForOtherInstances() {
+        long expirationTime = WINDOW_START + WINDOW_DURATION;
+        //instance-b already leased 30 of the 100 calls of this window
+        slidingWindowCounter.merge("instance-b", new ThrottleServiceObject("service:consumer", "consumer", 100, 0, expirationTime, 30));
+
+        assertEquals(1, slidingWindowCounter.tryAcquireLeased(100, WINDOW_START));
+        assertEquals(35, slidingWindowCounter.snapshot(WINDOW_START).getLease());
+
+        int allowedCalls = 1;
+        for(int i = 0; i < 200; i++) {
+            if(slidingWindowCounter.tryAcquireLeased(100, WINDOW_START) > -1) {
+                allowedCalls++;
+            }
+        }
+        assertEquals(70, allowedCalls);
+        assertEquals(70, slidingWindowCounter.snapshot(WINDOW_START).getLease());
+    }
+
+    @Test
+    void testResetIsRoundedUpToTheWindowEnd() {
+        assertEquals(1, slidingWindowCounter.resetSeconds(WINDOW_START));
+        assertEquals(1, slidingWindowCounter.resetSeconds(WINDOW_START + WINDOW_DURATION - 1));
+        SlidingWindowCounter minuteCounter = new SlidingWindowCounter("service", null, 60_000);
+        assertEquals(60, minuteCounter.resetSeconds(0));
+        assertEquals(30, minuteCounter.resetSeconds(30_000));
+        assertEquals(30, minuteCounter.resetSeconds(29_001));
+    }
+
+    @Test
+    void testExpiryFollowsTheWindows() {
+        long expiryTime = slidingWindowCounter.expiryTime(WINDOW_START + 10);
+        assertEquals(WINDOW_START + 2 * WINDOW_DURATION, expiryTime);
+        assertTrue(slidingWindowCounter.extendExpiry(expiryTime));
+        assertFalse(slidingWindowCounter.extendExpiry(slidingWindowCounter.expiryTime(WINDOW_START + 500)));
+        assertTrue(slidingWindowCounter.extendExpiry(slidingWindowCounter.expiryTime(WINDOW_START + WINDOW_DURATION)));
+    }
+}
@@ -0,0 +1,38 @@
+package io.surisoft.capi.service;
+
+import io.surisoft.capi.schema.ConsulObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsulNodeDiscoveryTest {
+
+    @Test
+    void testServicesNotFetchedKeepTheirLastKnownInstances() {
+        List<ConsulObject> lastKnownDummy = List.of(consulObject("dummy"));
+        List<ConsulObject> lastKnownOrders = List.of(consulObject("orders"));
+        List<ConsulObject> fetchedOrders = List.of(consulObject("orders"), consulObject("orders"));
+        Map<String, List<ConsulObject>> lastKnownServices = Map.of("dummy", lastKnownDummy, "orders", lastKnownOrders, "removed", List.of(consulObject("removed")));
+
+        //dummy was cancelled at the deadline, orders was fetched and removed is no longer in the catalog
+        Map<String, List<ConsulObject>> hostServices = ConsulNodeDiscovery.keepLastKnownServices(Set.of("dummy", "orders"), Map.of("orders", fetchedOrders), lastKnownServices);
+
+        assertEquals(Map.of("dummy", lastKnownDummy, "orders", fetchedOrders), hostServices);
+    }
+
+    @Test
+    void testServiceNeverFetchedIsLeftOut() {
+        Map<String, List<ConsulObject>> hostServices = ConsulNodeDiscovery.keepLastKnownServices(Set.of("dummy"), Map.of(), null);
+        assertTrue(hostServices.isEmpty());
+    }
+
+    private ConsulObject consulObject(String serviceName) {
+        ConsulObject consulObject = new ConsulObject();
+        consulObject.setServiceName(serviceName);
+        return consulObject;
+    }
+}
@@ -0,0 +1,98 @@
+package io.surisoft.capi.service;
+
+import io.surisoft.capi.schema.Mapping;
+import io.surisoft.capi.schema.Service;
+import org.apache.camel.CamelContext;
+import org.cache2k.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OutlierDetectorTest {
+
+    private static final String SERVICE_ID = "service:group";
+
+    @Mock
+    private CamelContext camelContext;
+    @Mock
+    private Cache<String, Service> serviceCache;
+
+    private OutlierDetector outlierDetector;
+
+    @BeforeEach
+    void setUp() {
+        Set<Mapping> mappingList = new HashSet<>();
+        for(String hostname : new String[]{"host-a", "host-b", "host-c"}) {
+            Mapping mapping = new Mapping();
+            mapping.setHostname(hostname);
+            mapping.setPort(8080);
+            mapping.setRootContext("/");
+            mappingList.add(mapping);
+        }
+        Service service = new Service();
+        service.setId(SERVICE_ID);
+        service.setMappingList(mappingList);
+        when(serviceCache.get(SERVICE_ID)).thenReturn(service);
+        outlierDetector = new OutlierDetector(camelContext, serviceCache, 3, 30000, 300000, 50);
+    }
+
+    @Test
+    void testConsecutiveFailuresEject() {
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", false);
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        assertFalse(outlierDetector.isEjected(SERVICE_ID, "host-a:8080"));
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        assertTrue(outlierDetector.isEjected(SERVICE_ID, "host-a:8080"));
+        assertTrue(outlierDetector.getEjectedHosts(SERVICE_ID).containsKey("host-a:8080"));
+    }
+
+    @Test
+    void testMaxEjectionPercent() {
+        for(int i = 0; i < 3; i++) {
+            outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+            outlierDetector.onResult(SERVICE_ID, "host-b:8080", true);
+        }
+        //Half of three hosts is one host
+        assertTrue(outlierDetector.isEjected(SERVICE_ID, "host-a:8080"));
+        assertFalse(outlierDetector.isEjected(SERVICE_ID, "host-b:8080"));
+        assertEquals(1, outlierDetector.getEjectedHosts(SERVICE_ID).size());
+    }
+
+    @Test
+    void testHostsLeavingTheServiceAreForgotten() {
+        for(int i = 0; i < 3; i++) {
+            outlierDetector.onResult(SERVICE_ID, "host-a:8080", true);
+        }
+        assertTrue(outlierDetector.isEjected(SERVICE_ID, "host-a:8080"));
+
+        //Redeployed without host-a, which no longer counts against the maximum ejection percentage
+        Set<Mapping> mappingList = new HashSet<>();
+        for(String hostname : new String[]{"host-b", "host-c", "host-d"}) {
+            Mapping mapping = new Mapping();
+            mapping.setHostname(hostname);
+            mapping.setPort(8080);
+            mappingList.add(mapping);
+        }
+        outlierDetector.retainHosts(SERVICE_ID, mappingList);
+        assertTrue(outlierDetector.getEjectedHosts(SERVICE_ID).isEmpty());
+        for(int i = 0; i < 3; i++) {
+            outlierDetector.onResult(SERVICE_ID, "host-b:8080", true);
+        }
+        assertTrue(outlierDetector.isEjected(SERVICE_ID, "host-b:8080"));
+
+        outlierDetector.removeService(SERVICE_ID);
+        assertFalse(outlierDetector.isEjected(SERVICE_ID, "host-b:8080"));
+    }
+}
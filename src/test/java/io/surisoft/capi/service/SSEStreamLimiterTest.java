@@ -0,0 +1,77 @@
+package io.surisoft.capi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.surisoft.capi.schema.ClientRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SSEStreamLimiterTest {
+
+    private static final String SERVICE_ID = "events:dev";
+
+    private SimpleMeterRegistry meterRegistry;
+    private SSEStreamLimiter sseStreamLimiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sseStreamLimiter = new SSEStreamLimiter(meterRegistry, new ClientRegistry<>(), 3, 2);
+    }
+
+    @Test
+    void testConsumerLimit() {
+        SSEStreamLimiter.Permit first = sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-a");
+        assertNotNull(first);
+        assertNotNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-a"));
+        assertNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-a"));
+        assertEquals(2, sseStreamLimiter.getActiveStreams(SERVICE_ID));
+
+        first.release();
+        first.release();
+        assertEquals(1, sseStreamLimiter.getConsumerStreams("consumer-a"));
+        assertNotNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-a"));
+    }
+
+    @Test
+    void testServiceLimit() {
+        assertNotNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-a"));
+        assertNotNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-b"));
+        assertNotNull(sseStreamLimiter.tryAcquire(SERVICE_ID, null));
+        assertNull(sseStreamLimiter.tryAcquire(SERVICE_ID, "consumer-c"));
+
+        //A stream refused by the service limit does not count for its consumer
+        assertEquals(0, sseStreamLimiter.getConsumerStreams("consumer-c"));
+        assertEquals(3, meterRegistry.get("capi_sse_active_streams").tag("service", SERVICE_ID).gauge().value());
+    }
+
+    @Test
+    void testSentBytes() {
+        SSEStreamLimiter.Permit permit = sseStreamLimiter.tryAcquire(SERVICE_ID, null);
+        permit.addSentBytes(512);
+        permit.addSentBytes(512);
+        sseStreamLimiter.sampleThroughput();
+
+        assertEquals(1024, sseStreamLimiter.getBytesPerSecond(SERVICE_ID));
+        assertEquals(1024, meterRegistry.get("capi_sse_sent_bytes").tag("service", SERVICE_ID).functionCounter().count());
+
+        sseStreamLimiter.sampleThroughput();
+        assertEquals(0, sseStreamLimiter.getBytesPerSecond(SERVICE_ID));
+    }
+
+    @Test
+    void testMetersOfRemovedServicesAreRemoved() {
+        sseStreamLimiter.tryAcquire(SERVICE_ID, null);
+        sseStreamLimiter.tryAcquire("other:dev", null);
+
+        sseStreamLimiter.retainServices(Set.of("other:dev"));
+
+        assertNull(meterRegistry.find("capi_sse_active_streams").tag("service", SERVICE_ID).gauge());
+        assertNull(meterRegistry.find("capi_sse_sent_bytes").tag("service", SERVICE_ID).functionCounter());
+        assertEquals(1, meterRegistry.get("capi_sse_active_streams").tag("service", "other:dev").gauge().value());
+        assertEquals(0, sseStreamLimiter.getActiveStreams(SERVICE_ID));
+    }
+}
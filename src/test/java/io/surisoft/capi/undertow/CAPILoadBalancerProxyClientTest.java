@@ -0,0 +1,25 @@
+package io.surisoft.capi.undertow;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CAPILoadBalancerProxyClientTest {
+
+    @Test
+    void testHostCountFollowsRemovedHosts() {
+        CAPILoadBalancerProxyClient proxyClient = new CAPILoadBalancerProxyClient(null, null, "orders:dev");
+        proxyClient.addHost(URI.create("http://first:8080"));
+        proxyClient.addHost(URI.create("http://second:8080"));
+        assertEquals(2, proxyClient.getHostCount());
+
+        proxyClient.removeHost(URI.create("http://first:8080"));
+        assertEquals(1, proxyClient.getHostCount());
+
+        //Unknown hosts are ignored
+        proxyClient.removeHost(URI.create("http://third:8080"));
+        assertEquals(1, proxyClient.getHostCount());
+    }
+}
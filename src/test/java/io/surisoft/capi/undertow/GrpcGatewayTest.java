@@ -0,0 +1,179 @@
+package io.surisoft.capi.undertow;
+
+import io.surisoft.capi.configuration.UndertowProperties;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.GrpcClient;
+import io.surisoft.capi.schema.Mapping;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.schema.ServiceMeta;
+import io.surisoft.capi.utils.Constants;
+import io.surisoft.capi.utils.GrpcUtils;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.attribute.ExchangeAttributes;
+import io.undertow.client.ClientCallback;
+import io.undertow.client.ClientConnection;
+import io.undertow.client.ClientExchange;
+import io.undertow.client.ClientRequest;
+import io.undertow.client.UndertowClient;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.server.protocol.http.HttpAttachments;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import io.undertow.util.Methods;
+import io.undertow.util.StringReadChannelListener;
+import io.undertow.util.StringWriteChannelListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xnio.OptionMap;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GrpcGatewayTest {
+
+    private static final HttpString GRPC_STATUS = HttpString.tryFromString(Constants.GRPC_STATUS_HEADER);
+    private static final HttpString GRPC_MESSAGE = HttpString.tryFromString(Constants.GRPC_MESSAGE_HEADER);
+    private Undertow backend;
+    private Undertow gateway;
+    private XnioWorker worker;
+    private ClientConnection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        //A clear text gRPC backend, answering with the status in the trailers
+        backend = Undertow.builder()
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .addHttpListener(0, "localhost")
+                .setHandler(exchange -> exchange.getRequestReceiver().receiveFullString((receiveExchange, message) -> {
+                    HeaderMap trailers = new HeaderMap();
+                    trailers.put(GRPC_STATUS, "0");
+                    trailers.put(GRPC_MESSAGE, "OK " + ExchangeAttributes.protocol().readAttribute(receiveExchange));
+                    receiveExchange.putAttachment(HttpAttachments.RESPONSE_TRAILERS, trailers);
+                    receiveExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, Constants.GRPC_CONTENT_TYPE);
+                    receiveExchange.getResponseSender().send("Hello " + message);
+                }))
+                .build();
+        backend.start();
+
+        GrpcUtils grpcUtils = new GrpcUtils(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), 1, 0);
+        ClientRegistry<GrpcClient> grpcClients = new ClientRegistry<>();
+        grpcClients.put("helloworld.Greeter", grpcUtils.createGrpcClient(service(port(backend))));
+        GrpcGateway grpcGateway = new GrpcGateway(0, Optional.empty(), grpcUtils, grpcClients,
+                new UndertowServerFactory(new UndertowProperties()), Optional.empty());
+        gateway = Undertow.builder()
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .addHttpListener(0, "localhost")
+                .setHandler(grpcGateway::handleRequest)
+                .build();
+        gateway.start();
+
+        //The JDK client drops trailers, gRPC clients speak HTTP/2 with prior knowledge
+        worker = Xnio.getInstance().createWorker(OptionMap.EMPTY);
+        connection = UndertowClient.getInstance().connect(URI.create("h2c-prior://localhost:" + port(gateway)), worker,
+                new DefaultByteBufferPool(false, 8192), OptionMap.create(UndertowOptions.ENABLE_HTTP2, true)).get();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connection.close();
+        worker.shutdown();
+        gateway.stop();
+        backend.stop();
+    }
+
+    @Test
+    void testUnaryCallReachesTheClientWithTheBackendTrailers() throws Exception {
+        GrpcResponse response = call("/helloworld.Greeter/SayHello", "capi");
+
+        assertEquals(200, response.exchange().getResponse().getResponseCode());
+        assertEquals(Constants.GRPC_CONTENT_TYPE, response.exchange().getResponse().getResponseHeaders().getFirst(Headers.CONTENT_TYPE));
+        assertEquals("Hello capi", response.body());
+        //The HTTP/2 client stores the trailers of a response on the exchange, as CAPIProxyHandler reads them
+        HeaderMap trailers = response.exchange().getAttachment(HttpAttachments.REQUEST_TRAILERS);
+        assertNotNull(trailers);
+        assertEquals("0", trailers.getFirst(GRPC_STATUS));
+        assertEquals("OK HTTP/2.0", trailers.getFirst(GRPC_MESSAGE));
+    }
+
+    @Test
+    void testUnknownServiceIsATrailersOnlyError() throws Exception {
+        GrpcResponse response = call("/helloworld.Farewell/SayGoodbye", "capi");
+
+        assertEquals(200, response.exchange().getResponse().getResponseCode());
+        assertEquals(String.valueOf(Constants.GRPC_STATUS_UNIMPLEMENTED), response.exchange().getResponse().getResponseHeaders().getFirst(GRPC_STATUS));
+        assertTrue(response.body().isEmpty());
+    }
+
+    private GrpcResponse call(String path, String message) throws Exception {
+        CompletableFuture<GrpcResponse> future = new CompletableFuture<>();
+        ClientRequest request = new ClientRequest().setMethod(Methods.POST).setPath(path);
+        request.getRequestHeaders().put(Headers.HOST, "localhost");
+        request.getRequestHeaders().put(Headers.CONTENT_TYPE, Constants.GRPC_CONTENT_TYPE);
+        request.getRequestHeaders().put(Headers.CONTENT_LENGTH, message.getBytes(StandardCharsets.UTF_8).length);
+        connection.sendRequest(request, new ClientCallback<>() {
+            @Override
+            public void completed(ClientExchange clientExchange) {
+                clientExchange.setResponseListener(new ClientCallback<>() {
+                    @Override
+                    public void completed(ClientExchange result) {
+                        new StringReadChannelListener(result.getConnection().getBufferPool()) {
+                            @Override
+                            protected void stringDone(String string) {
+                                future.complete(new GrpcResponse(result, string));
+                            }
+
+                            @Override
+                            protected void error(IOException e) {
+                                future.completeExceptionally(e);
+                            }
+                        }.setup(result.getResponseChannel());
+                    }
+
+                    @Override
+                    public void failed(IOException e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+                new StringWriteChannelListener(message).setup(clientExchange.getRequestChannel());
+            }
+
+            @Override
+            public void failed(IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private Service service(int port) {
+        Mapping mapping = new Mapping();
+        mapping.setHostname("localhost");
+        mapping.setPort(port);
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setGrpcServices("helloworld.Greeter");
+        Service service = new Service();
+        service.setId("greeter:dev");
+        service.setServiceMeta(serviceMeta);
+        service.setMappingList(Set.of(mapping));
+        return service;
+    }
+
+    private int port(Undertow undertow) {
+        return ((InetSocketAddress) undertow.getListenerInfo().get(0).getAddress()).getPort();
+    }
+
+    private record GrpcResponse(ClientExchange exchange, String body) {}
+}
@@ -0,0 +1,119 @@
+package io.surisoft.capi.undertow;
+
+import io.surisoft.capi.configuration.UndertowProperties;
+import io.surisoft.capi.exception.AuthorizationException;
+import io.surisoft.capi.schema.ClientRegistry;
+import io.surisoft.capi.schema.NativeClient;
+import io.surisoft.capi.schema.Service;
+import io.surisoft.capi.schema.ServiceMeta;
+import io.surisoft.capi.utils.HttpUtils;
+import io.surisoft.capi.utils.NativeUtils;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeGatewayTest {
+
+    private final AtomicReference<Boolean> proxiedInIoThread = new AtomicReference<>();
+    private final AtomicReference<Boolean> authorizedInIoThread = new AtomicReference<>();
+    private ClientRegistry<NativeClient> nativeClients;
+    private Undertow undertow;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        HttpUtils httpUtils = new HttpUtils("", Optional.empty(), Optional.empty()) {
+            @Override
+            public String processAuthorizationAccessToken(HttpServerExchange httpServerExchange) throws AuthorizationException {
+                authorizedInIoThread.set(httpServerExchange.isInIoThread());
+                return super.processAuthorizationAccessToken(httpServerExchange);
+            }
+        };
+        nativeClients = new ClientRegistry<>();
+        NativeGateway nativeGateway = new NativeGateway(0, nativeClients,
+                new NativeUtils("/capi/*", Optional.empty(), Optional.empty(), Optional.empty()), httpUtils, Optional.empty(),
+                new UndertowServerFactory(new UndertowProperties()), Optional.empty(), Optional.empty(), Optional.empty(),
+                false, List.of(), "", false, "", "/capi/*");
+        undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(nativeGateway::handleRequest)
+                .build();
+        undertow.start();
+        baseUrl = "http://localhost:" + ((InetSocketAddress) undertow.getListenerInfo().get(0).getAddress()).getPort();
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        undertow.stop();
+    }
+
+    @Test
+    void testOpenServiceIsProxiedFromTheIoThread() throws Exception {
+        nativeClients.put("/orders/dev", nativeClient("orders", false));
+
+        HttpResponse<String> response = call("/capi/orders/dev/list");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("orders", response.body());
+        assertTrue(proxiedInIoThread.get());
+        assertNull(authorizedInIoThread.get());
+    }
+
+    @Test
+    void testSecuredServiceIsAuthorizedOnAWorker() throws Exception {
+        nativeClients.put("/orders/dev", nativeClient("orders", true));
+
+        HttpResponse<String> response = call("/capi/orders/dev/list");
+
+        assertEquals(401, response.statusCode());
+        assertFalse(authorizedInIoThread.get());
+        assertNull(proxiedInIoThread.get());
+    }
+
+    @Test
+    void testUnknownServiceIsNotFound() throws Exception {
+        nativeClients.put("/orders/dev", nativeClient("orders", false));
+
+        assertEquals(404, call("/capi/payments/dev/list").statusCode());
+        assertEquals(404, call("/other/orders/dev/list").statusCode());
+        assertNull(proxiedInIoThread.get());
+    }
+
+    private NativeClient nativeClient(String name, boolean secured) {
+        ServiceMeta serviceMeta = new ServiceMeta();
+        serviceMeta.setSecured(secured);
+        Service service = new Service();
+        service.setId(name + ":dev");
+        service.setName(name);
+        service.setContext("/" + name + "/dev");
+        service.setServiceMeta(serviceMeta);
+
+        NativeClient nativeClient = new NativeClient();
+        nativeClient.setServiceId(service.getContext());
+        nativeClient.setService(service);
+        nativeClient.setHttpHandler(exchange -> {
+            proxiedInIoThread.set(exchange.isInIoThread());
+            exchange.getResponseSender().send(name);
+        });
+        return nativeClient;
+    }
+
+    private HttpResponse<String> call(String path) throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,87 @@
+package io.surisoft.capi.undertow;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.surisoft.capi.schema.SSEClient;
+import io.undertow.Undertow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Optional;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SSEFanoutTest {
+
+    private WireMockServer wireMockServer;
+    private SSEFanout sseFanout;
+    private Undertow undertow;
+    private HttpClient httpClient;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        wireMockServer = new WireMockServer(wireMockConfig().dynamicPort());
+        wireMockServer.start();
+        SSEClient sseClient = new SSEClient();
+        sseClient.setApiId("/events/dev");
+        sseClient.setFanout(true);
+        sseClient.setUpstreams(List.of(URI.create(wireMockServer.baseUrl())));
+
+        sseFanout = new SSEFanout(new SimpleMeterRegistry(), Optional.empty(), 100, 60000);
+        undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(exchange -> sseFanout.subscribe(exchange, sseClient, "/stream"))
+                .build();
+        undertow.start();
+        baseUrl = "http://localhost:" + ((InetSocketAddress) undertow.getListenerInfo().get(0).getAddress()).getPort();
+        httpClient = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sseFanout.shutdown();
+        undertow.stop();
+        wireMockServer.stop();
+    }
+
+    @Test
+    void testEventsAreForwarded() throws Exception {
+        wireMockServer.stubFor(get(urlEqualTo("/stream")).willReturn(aResponse()
+                .withHeader("Content-Type", "text/event-stream")
+                .withBody("event: greeting\ndata: hello\n\n")));
+
+        HttpResponse<String> response = subscribe();
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("data:hello"));
+    }
+
+    @Test
+    void testFailedUpstreamIsNotCalledAgainBeforeTheRetryDelay() throws Exception {
+        wireMockServer.stubFor(get(urlEqualTo("/stream")).willReturn(aResponse().withStatus(503)));
+
+        //The first subscriber is already streaming, it is told to wait before reconnecting
+        HttpResponse<String> firstResponse = subscribe();
+        assertEquals(200, firstResponse.statusCode());
+        assertTrue(firstResponse.body().contains("retry:60000"));
+
+        HttpResponse<String> secondResponse = subscribe();
+        assertEquals(503, secondResponse.statusCode());
+        assertEquals("60", secondResponse.headers().firstValue("Retry-After").orElse(null));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/stream")));
+    }
+
+    private HttpResponse<String> subscribe() throws Exception {
+        return httpClient.send(HttpRequest.newBuilder(URI.create(baseUrl + "/events/dev/stream")).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}